@@ -0,0 +1,47 @@
+package nablarch.common.code.benchmark;
+
+import java.util.List;
+
+import org.openjdk.jol.info.GraphLayout;
+
+import nablarch.common.code.Code;
+import nablarch.core.cache.StaticDataLoader;
+
+/**
+ * ロードしたコードが保持するヒープのサイズを、ロードの設定毎に出力する。<br/>
+ * <br/>
+ * コードから参照されるローダ自体のサイズは除外する。
+ * ヒープ外の領域に格納するローダ(mapped)は、ヒープ外の領域のサイズを含まない。
+ */
+public final class CodeFootprint {
+
+    /** 隠蔽コンストラクタ。 */
+    private CodeFootprint() {
+    }
+
+    /**
+     * メインメソッド。
+     *
+     * @param args コード数、1コードあたりのコード値の数、言語数、パターンカラムの数、オプション名称カラムの数
+     */
+    public static void main(String[] args) {
+        int codes = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        int valuesPerCode = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+        int languages = args.length > 2 ? Integer.parseInt(args[2]) : 2;
+        int patterns = args.length > 3 ? Integer.parseInt(args[3]) : 5;
+        int options = args.length > 4 ? Integer.parseInt(args[4]) : 2;
+
+        SyntheticCodeMaster master = new SyntheticCodeMaster(codes, valuesPerCode, languages, patterns, options);
+        System.out.printf("codes=%d, valuesPerCode=%d, languages=%d, patterns=%d, options=%d%n",
+                codes, valuesPerCode, languages, patterns, options);
+        for (String mode : new String[] {"default", "compact", "mapped"}) {
+            StaticDataLoader<Code> loader = LoaderModes.createLoader(master, mode);
+            List<Code> loaded = loader.loadAll();
+            long loaderSize = GraphLayout.parseInstance(loader).totalSize();
+            long totalSize = GraphLayout.parseInstance(loader, loaded).totalSize();
+            long codesSize = totalSize - loaderSize;
+            System.out.printf("%-10s total=%,d bytes, per code=%,d bytes%n",
+                    mode, codesSize, codesSize / loaded.size());
+        }
+    }
+}
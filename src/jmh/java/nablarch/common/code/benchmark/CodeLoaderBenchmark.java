@@ -0,0 +1,79 @@
+package nablarch.common.code.benchmark;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import nablarch.common.code.BasicCodeLoader;
+import nablarch.common.code.Code;
+
+/**
+ * {@link BasicCodeLoader}のロード処理のベンチマーク。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Dnablarch.log.filePath=classpath:benchmark-log.properties")
+public class CodeLoaderBenchmark {
+
+    /** コード数 */
+    @Param({"1000", "10000"})
+    public int codes;
+
+    /** 1コードあたりのコード値の数 */
+    @Param("20")
+    public int valuesPerCode;
+
+    /** 言語数 */
+    @Param("2")
+    public int languages;
+
+    /** パターンカラムの数 */
+    @Param("5")
+    public int patterns;
+
+    /** オプション名称カラムの数 */
+    @Param("2")
+    public int options;
+
+    /** ロードの設定 */
+    @Param({"default", "streaming", "compact", "bitmask"})
+    public String mode;
+
+    /** ベンチマーク対象のローダ */
+    private BasicCodeLoader loader;
+
+    /** getValueで取得するコードID */
+    private String codeId;
+
+    @Setup
+    public void setUp() {
+        SyntheticCodeMaster master = new SyntheticCodeMaster(codes, valuesPerCode, languages, patterns, options);
+        loader = master.createLoader(LoaderModes.of(mode));
+        codeId = SyntheticCodeMaster.codeId(codes / 2);
+    }
+
+    @Benchmark
+    public List<Code> loadAll() {
+        return loader.loadAll();
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public Code getValue() {
+        return loader.getValue(codeId);
+    }
+}
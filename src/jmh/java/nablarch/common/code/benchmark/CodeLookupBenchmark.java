@@ -0,0 +1,151 @@
+package nablarch.common.code.benchmark;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import nablarch.common.code.BasicCodeLoader;
+import nablarch.common.code.Code;
+import nablarch.common.code.CodeLookupStatistics;
+import nablarch.common.code.CodePatternIndex;
+import nablarch.common.code.ExtendedCode;
+
+/**
+ * ロード済みの{@link Code}の参照処理のベンチマーク。<br/>
+ * <br/>
+ * 画面表示や入力チェックなど、リクエスト毎に呼び出される処理を対象とする。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Dnablarch.log.filePath=classpath:benchmark-log.properties")
+public class CodeLookupBenchmark {
+
+    /** 1コードあたりのコード値の数 */
+    @Param("50")
+    public int valuesPerCode;
+
+    /** 言語数 */
+    @Param("2")
+    public int languages;
+
+    /** パターンカラムの数 */
+    @Param("10")
+    public int patterns;
+
+    /** ロードの設定 */
+    @Param({"default", "compact", "mapped"})
+    public String mode;
+
+    /**
+     * 参照回数の集計の設定。<br/>
+     * <br/>
+     * "off"は集計しない(コードをラップしない)、"all"は全ての参照を計数、"sampled"は64回に1回計数する。
+     */
+    @Param({"off", "all", "sampled"})
+    public String statistics;
+
+    /** 参照対象のコード */
+    private Code code;
+
+    /** 参照する言語 */
+    private Locale locale;
+
+    /** 参照するコード値 */
+    private String value;
+
+    /** 参照するパターン */
+    private String pattern;
+
+    /** 参照するオプション名称カラム */
+    private String optionColumnName;
+
+    /** 参照するパターンのハンドル */
+    private int patternHandle;
+
+    /** 全てのコードのパターンの索引 */
+    private CodePatternIndex patternIndex;
+
+    @Setup
+    public void setUp() {
+        SyntheticCodeMaster master = new SyntheticCodeMaster(10, valuesPerCode, languages, patterns, 2);
+        code = LoaderModes.createLoader(master, mode).getValue(SyntheticCodeMaster.codeId(5));
+        if (!"off".equals(statistics)) {
+            CodeLookupStatistics lookupStatistics = new CodeLookupStatistics();
+            if ("sampled".equals(statistics)) {
+                lookupStatistics.setSamplingInterval(64);
+            }
+            code = lookupStatistics.wrap(code);
+        }
+        locale = SyntheticCodeMaster.locale(languages - 1);
+        value = SyntheticCodeMaster.value(valuesPerCode / 2);
+        // 最後のパターンを大文字小文字を変えて指定する
+        pattern = master.getPatternColumnNames()[patterns - 1].toLowerCase();
+        optionColumnName = master.getOptionNameColumnNames()[1];
+        patternHandle = ((ExtendedCode) code).patternHandle(pattern);
+
+        BasicCodeLoader indexedLoader = master.createLoader(LoaderModes.of("default"));
+        indexedLoader.setBuildPatternIndex(true);
+        indexedLoader.loadAll();
+        patternIndex = indexedLoader.getPatternIndex();
+    }
+
+    @Benchmark
+    public boolean contains() {
+        return code.contains(value);
+    }
+
+    @Benchmark
+    public boolean containsPattern() {
+        return code.contains(pattern, value);
+    }
+
+    @Benchmark
+    public boolean containsPatternHandle() {
+        return ((ExtendedCode) code).isInPattern(patternHandle, value);
+    }
+
+    @Benchmark
+    public boolean containsPatternIndex() {
+        return patternIndex.contains(SyntheticCodeMaster.codeId(5), pattern, value);
+    }
+
+    @Benchmark
+    public String getName() {
+        return code.getName(value, locale);
+    }
+
+    @Benchmark
+    public String getShortName() {
+        return code.getShortName(value, locale);
+    }
+
+    @Benchmark
+    public String getOptionalName() {
+        return code.getOptionalName(value, optionColumnName, locale);
+    }
+
+    @Benchmark
+    public List<String> getValues() {
+        return code.getValues(locale);
+    }
+
+    @Benchmark
+    public List<String> getValuesPattern() {
+        return code.getValues(pattern, locale);
+    }
+}
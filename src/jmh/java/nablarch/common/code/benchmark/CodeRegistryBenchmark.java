@@ -0,0 +1,99 @@
+package nablarch.common.code.benchmark;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import nablarch.common.code.BasicCodeLoader;
+import nablarch.common.code.Code;
+import nablarch.common.code.CodeRegistry;
+import nablarch.core.cache.BasicStaticDataCache;
+import nablarch.core.cache.StaticDataCache;
+
+/**
+ * 複数スレッドからのキャッシュの参照処理のベンチマーク。<br/>
+ * <br/>
+ * {@link CodeRegistry}と{@link BasicStaticDataCache}について、参照のみの場合と、
+ * 1スレッドが全件の再ロードを繰り返す間の参照のスループットを比較する。
+ * 参照のスケーラビリティはスレッド数を変えて比較する(例: -t 1、-t 4)。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Dnablarch.log.filePath=classpath:benchmark-log.properties")
+public class CodeRegistryBenchmark {
+
+    /** コード数 */
+    @Param("1000")
+    public int codes;
+
+    /** キャッシュの実装 */
+    @Param({"registry", "basic"})
+    public String cache;
+
+    /** ベンチマーク対象のキャッシュ */
+    private StaticDataCache<Code> target;
+
+    @Setup
+    public void setUp() {
+        SyntheticCodeMaster master = new SyntheticCodeMaster(codes, 20, 2, 5, 2);
+        BasicCodeLoader loader = master.createLoader(LoaderModes.of("default"));
+        if ("registry".equals(cache)) {
+            CodeRegistry registry = new CodeRegistry();
+            registry.setLoader(loader);
+            registry.initialize();
+            target = registry;
+        } else if ("basic".equals(cache)) {
+            BasicStaticDataCache<Code> basicCache = new BasicStaticDataCache<Code>();
+            basicCache.setLoader(loader);
+            basicCache.setLoadOnStartup(true);
+            basicCache.initialize();
+            target = basicCache;
+        } else {
+            throw new IllegalArgumentException("unknown cache. cache = " + cache);
+        }
+    }
+
+    /**
+     * ランダムなコードを参照する。
+     *
+     * @return コード
+     */
+    private Code readRandom() {
+        return target.getValue(SyntheticCodeMaster.codeId(ThreadLocalRandom.current().nextInt(codes)));
+    }
+
+    @Benchmark
+    public Code read() {
+        return readRandom();
+    }
+
+    @Benchmark
+    @Group("readWhileReload")
+    @GroupThreads(3)
+    public Code readDuringReload() {
+        return readRandom();
+    }
+
+    @Benchmark
+    @Group("readWhileReload")
+    @GroupThreads(1)
+    public void reload() {
+        target.refresh();
+    }
+}
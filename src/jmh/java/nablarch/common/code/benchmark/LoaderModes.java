@@ -0,0 +1,64 @@
+package nablarch.common.code.benchmark;
+
+import nablarch.common.code.BasicCodeLoader;
+import nablarch.common.code.Code;
+import nablarch.common.code.MappedCodeLoader;
+import nablarch.core.cache.StaticDataLoader;
+
+/**
+ * ベンチマークのパラメータで指定するローダの設定。
+ */
+final class LoaderModes {
+
+    /** 隠蔽コンストラクタ。 */
+    private LoaderModes() {
+    }
+
+    /**
+     * 設定名に対応するローダの設定を取得する。
+     *
+     * @param mode 設定名
+     * @return ローダの設定
+     */
+    static SyntheticCodeMaster.LoaderConfigurator of(final String mode) {
+        return new SyntheticCodeMaster.LoaderConfigurator() {
+            @Override
+            public void configure(BasicCodeLoader loader) {
+                if ("default".equals(mode)) {
+                    return;
+                }
+                if ("streaming".equals(mode)) {
+                    loader.setStreamingLoad(true);
+                    loader.setFetchSize(1000);
+                } else if ("compact".equals(mode)) {
+                    loader.setCompactCode(true);
+                } else if ("bitmask".equals(mode)) {
+                    loader.setPatternBitmask(true);
+                } else if ("parallel".equals(mode)) {
+                    loader.setLoadParallelism(Runtime.getRuntime().availableProcessors());
+                } else {
+                    throw new IllegalArgumentException("unknown mode. mode = " + mode);
+                }
+            }
+        };
+    }
+
+    /**
+     * 設定名に対応するローダを作成する。<br/>
+     * <br/>
+     * 設定名が"mapped"の場合は、デフォルト設定の{@link BasicCodeLoader}をラップした{@link MappedCodeLoader}を作成する。
+     *
+     * @param master コードマスタ
+     * @param mode 設定名
+     * @return ローダ
+     */
+    static StaticDataLoader<Code> createLoader(SyntheticCodeMaster master, String mode) {
+        if ("mapped".equals(mode)) {
+            MappedCodeLoader loader = new MappedCodeLoader();
+            loader.setCodeLoader(master.createLoader(of("default")));
+            loader.initialize();
+            return loader;
+        }
+        return master.createLoader(of(mode));
+    }
+}
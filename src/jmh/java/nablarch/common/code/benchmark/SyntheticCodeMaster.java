@@ -0,0 +1,262 @@
+package nablarch.common.code.benchmark;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Locale;
+
+import org.h2.jdbcx.JdbcDataSource;
+
+import nablarch.common.code.BasicCodeLoader;
+import nablarch.common.code.schema.CodeNameSchema;
+import nablarch.common.code.schema.CodePatternSchema;
+import nablarch.core.db.connection.BasicDbConnectionFactoryForDataSource;
+import nablarch.core.db.statement.BasicStatementFactory;
+import nablarch.core.db.transaction.JdbcTransactionFactory;
+import nablarch.core.db.transaction.SimpleDbTransactionManager;
+
+/**
+ * ベンチマーク用の合成コードマスタ。<br/>
+ * <br/>
+ * H2のインメモリデータベースに、指定された規模のコードパターンテーブルとコード名称テーブルを作成する。
+ * コードIDは{@link #codeId(int)}、コード値は{@link #value(int)}の形式で採番する。
+ * パターンは、コード値の序数をパターンの序数+2で割り切れる場合に有効とする。
+ */
+public final class SyntheticCodeMaster {
+
+    /** 言語 */
+    private static final String[] LANGS = {
+            "ja", "en", "zh", "ko", "fr", "de", "es", "it", "pt", "ru", "th", "vi"};
+
+    /** データソース */
+    private final JdbcDataSource dataSource;
+
+    /** パターンカラムの名前 */
+    private final String[] patternColumnNames;
+
+    /** オプション名称カラムの名前 */
+    private final String[] optionNameColumnNames;
+
+    /**
+     * コンストラクタ。
+     *
+     * @param codes コード数
+     * @param valuesPerCode 1コードあたりのコード値の数
+     * @param languages 言語数
+     * @param patterns パターンカラムの数
+     * @param options オプション名称カラムの数
+     */
+    public SyntheticCodeMaster(int codes, int valuesPerCode, int languages, int patterns, int options) {
+        if (languages > LANGS.length) {
+            throw new IllegalArgumentException("languages must be less than or equal to " + LANGS.length);
+        }
+        patternColumnNames = columnNames("PATTERN", patterns);
+        optionNameColumnNames = columnNames("OPTION", options);
+
+        dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:code_" + codes + '_' + valuesPerCode + '_' + languages
+                + '_' + patterns + '_' + options + ";DB_CLOSE_DELAY=-1");
+        try {
+            createTables(codes, valuesPerCode, languages);
+        } catch (SQLException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * コードIDを取得する。
+     *
+     * @param index コードの序数
+     * @return コードID
+     */
+    public static String codeId(int index) {
+        return String.format("C%06d", index);
+    }
+
+    /**
+     * コード値を取得する。
+     *
+     * @param index コード値の序数
+     * @return コード値
+     */
+    public static String value(int index) {
+        return String.format("%04d", index);
+    }
+
+    /**
+     * 言語を取得する。
+     *
+     * @param index 言語の序数
+     * @return 言語
+     */
+    public static Locale locale(int index) {
+        return new Locale(LANGS[index]);
+    }
+
+    /**
+     * パターンカラムの名前を取得する。
+     *
+     * @return パターンカラムの名前
+     */
+    public String[] getPatternColumnNames() {
+        return patternColumnNames.clone();
+    }
+
+    /**
+     * オプション名称カラムの名前を取得する。
+     *
+     * @return オプション名称カラムの名前
+     */
+    public String[] getOptionNameColumnNames() {
+        return optionNameColumnNames.clone();
+    }
+
+    /**
+     * このコードマスタを参照するコードローダを作成する。<br/>
+     * <br/>
+     * 作成したコードローダは初期化済みの状態で返す。
+     *
+     * @param configurator 初期化前にコードローダを設定する処理。不要な場合はnull
+     * @return コードローダ
+     */
+    public BasicCodeLoader createLoader(LoaderConfigurator configurator) {
+        BasicDbConnectionFactoryForDataSource connectionFactory = new BasicDbConnectionFactoryForDataSource();
+        connectionFactory.setDataSource(dataSource);
+        connectionFactory.setStatementFactory(new BasicStatementFactory());
+
+        SimpleDbTransactionManager dbManager = new SimpleDbTransactionManager();
+        dbManager.setConnectionFactory(connectionFactory);
+        dbManager.setTransactionFactory(new JdbcTransactionFactory());
+        dbManager.setDbTransactionName("code-benchmark");
+
+        CodePatternSchema codePatternSchema = new CodePatternSchema();
+        codePatternSchema.setTableName("CODE_PATTERN");
+        codePatternSchema.setIdColumnName("CODE_ID");
+        codePatternSchema.setValueColumnName("VALUE");
+        codePatternSchema.setPatternColumnNames(patternColumnNames);
+
+        CodeNameSchema codeNameSchema = new CodeNameSchema();
+        codeNameSchema.setTableName("CODE_NAME");
+        codeNameSchema.setIdColumnName("CODE_ID");
+        codeNameSchema.setValueColumnName("VALUE");
+        codeNameSchema.setLangColumnName("LANG");
+        codeNameSchema.setSortOrderColumnName("SORT_ORDER");
+        codeNameSchema.setNameColumnName("NAME");
+        codeNameSchema.setShortNameColumnName("SHORT_NAME");
+        codeNameSchema.setOptionNameColumnNames(optionNameColumnNames);
+
+        BasicCodeLoader loader = new BasicCodeLoader();
+        loader.setDbManager(dbManager);
+        loader.setCodePatternSchema(codePatternSchema);
+        loader.setCodeNameSchema(codeNameSchema);
+        if (configurator != null) {
+            configurator.configure(loader);
+        }
+        loader.initialize();
+        return loader;
+    }
+
+    /**
+     * 初期化前にコードローダを設定するインタフェース。
+     */
+    public interface LoaderConfigurator {
+
+        /**
+         * コードローダを設定する。
+         *
+         * @param loader コードローダ
+         */
+        void configure(BasicCodeLoader loader);
+    }
+
+    /**
+     * 連番のカラム名を作成する。
+     *
+     * @param prefix カラム名の接頭辞
+     * @param count カラム数
+     * @return カラム名
+     */
+    private static String[] columnNames(String prefix, int count) {
+        String[] names = new String[count];
+        for (int i = 0; i < count; i++) {
+            names[i] = String.format("%s%02d", prefix, i + 1);
+        }
+        return names;
+    }
+
+    /**
+     * テーブルを作成し、データを登録する。
+     *
+     * @param codes コード数
+     * @param valuesPerCode 1コードあたりのコード値の数
+     * @param languages 言語数
+     * @throws SQLException データベースアクセスエラー
+     */
+    private void createTables(int codes, int valuesPerCode, int languages) throws SQLException {
+        Connection connection = dataSource.getConnection();
+        try {
+            connection.setAutoCommit(false);
+            Statement ddl = connection.createStatement();
+            ddl.execute("DROP TABLE IF EXISTS CODE_PATTERN");
+            ddl.execute("DROP TABLE IF EXISTS CODE_NAME");
+
+            StringBuilder patternDdl = new StringBuilder(
+                    "CREATE TABLE CODE_PATTERN (CODE_ID VARCHAR(10) NOT NULL, VALUE VARCHAR(10) NOT NULL");
+            StringBuilder patternInsert = new StringBuilder("INSERT INTO CODE_PATTERN VALUES (?, ?");
+            for (String patternColumnName : patternColumnNames) {
+                patternDdl.append(", ").append(patternColumnName).append(" CHAR(1) NOT NULL");
+                patternInsert.append(", ?");
+            }
+            ddl.execute(patternDdl.append(", PRIMARY KEY (CODE_ID, VALUE))").toString());
+
+            StringBuilder nameDdl = new StringBuilder(
+                    "CREATE TABLE CODE_NAME (CODE_ID VARCHAR(10) NOT NULL, VALUE VARCHAR(10) NOT NULL, "
+                            + "LANG VARCHAR(2) NOT NULL, SORT_ORDER INT NOT NULL, "
+                            + "NAME VARCHAR(200), SHORT_NAME VARCHAR(200)");
+            StringBuilder nameInsert = new StringBuilder("INSERT INTO CODE_NAME VALUES (?, ?, ?, ?, ?, ?");
+            for (String optionNameColumnName : optionNameColumnNames) {
+                nameDdl.append(", ").append(optionNameColumnName).append(" VARCHAR(200)");
+                nameInsert.append(", ?");
+            }
+            ddl.execute(nameDdl.append(", PRIMARY KEY (CODE_ID, VALUE, LANG))").toString());
+            ddl.close();
+
+            PreparedStatement insertPattern = connection.prepareStatement(patternInsert.append(")").toString());
+            PreparedStatement insertName = connection.prepareStatement(nameInsert.append(")").toString());
+            for (int c = 0; c < codes; c++) {
+                String codeId = codeId(c);
+                for (int v = 0; v < valuesPerCode; v++) {
+                    String value = value(v);
+                    insertPattern.setString(1, codeId);
+                    insertPattern.setString(2, value);
+                    for (int p = 0; p < patternColumnNames.length; p++) {
+                        insertPattern.setString(p + 3, v % (p + 2) == 0 ? "1" : "0");
+                    }
+                    insertPattern.addBatch();
+
+                    for (int l = 0; l < languages; l++) {
+                        insertName.setString(1, codeId);
+                        insertName.setString(2, value);
+                        insertName.setString(3, LANGS[l]);
+                        // 言語毎にソート順を変える
+                        insertName.setInt(4, l % 2 == 0 ? v : valuesPerCode - v);
+                        insertName.setString(5, "name-" + codeId + '-' + value + '-' + LANGS[l]);
+                        insertName.setString(6, "short-" + value + '-' + LANGS[l]);
+                        for (int o = 0; o < optionNameColumnNames.length; o++) {
+                            insertName.setString(o + 7, "option" + o + '-' + value + '-' + LANGS[l]);
+                        }
+                        insertName.addBatch();
+                    }
+                }
+                insertPattern.executeBatch();
+                insertName.executeBatch();
+            }
+            insertPattern.close();
+            insertName.close();
+            connection.commit();
+        } finally {
+            connection.close();
+        }
+    }
+}
@@ -0,0 +1,200 @@
+package nablarch.common.code;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * {@link ExtendedCode}の実装の基底クラス。<br/>
+ * <br/>
+ * パターン名とオプション名称のカラム名の解決、値が存在しない場合の例外の送出など、
+ * コードの保持方法に依存しない参照処理を実装する。
+ * サブクラスは、ハンドルを指定した検索と値が存在しない場合にnullを返す検索を実装する。
+ */
+abstract class AbstractExtendedCode implements ExtendedCode {
+
+    /** コードID */
+    private final String codeId;
+
+    /**
+     * コンストラクタ。
+     *
+     * @param codeId コードID
+     */
+    AbstractExtendedCode(String codeId) {
+        this.codeId = codeId;
+    }
+
+    /**
+     * 言語が存在するか否かを判定する。<br/>
+     * <br/>
+     * フォールバック先の言語が存在する場合も、言語が存在するものとする。
+     *
+     * @param locale 言語
+     * @return 言語が存在する場合true
+     */
+    abstract boolean hasLocale(Locale locale);
+
+    /**
+     * オプション名称からコード値を逆引きする。
+     *
+     * @param optionalName オプション名称
+     * @param optionHandle オプション名称のハンドル({@link #optionHandle(String)}で取得した値)
+     * @param locale 言語
+     * @return コード値。見つからない場合はnull
+     */
+    abstract String findValueByOptionalName(String optionalName, int optionHandle, Locale locale);
+
+    /**
+     * 言語が存在することを検証する。
+     *
+     * @param locale 言語
+     * @throws IllegalArgumentException 言語が存在しない場合
+     */
+    private void checkLocale(Locale locale) {
+        if (!hasLocale(locale)) {
+            throw new IllegalArgumentException("locale was not found. "
+                    + "code id = " + codeId
+                    + ", locale = " + locale);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public String getCodeId() {
+        return codeId;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public boolean contains(String pattern, String value) {
+        int patternHandle = patternHandle(pattern);
+        if (patternHandle < 0) {
+            throw new IllegalArgumentException("pattern was not found. "
+                    + "code id = " + codeId
+                    + ", pattern = " + pattern);
+        }
+        return isInPattern(patternHandle, value);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public boolean isInPattern(String pattern, String value) {
+        return isInPattern(patternHandle(pattern), value);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public String getName(String value, Locale locale) {
+        String name = findName(value, locale);
+        if (name == null) {
+            checkLocale(locale);
+            throw new IllegalArgumentException("name was not found. "
+                    + "code id = " + codeId
+                    + ", locale = " + locale
+                    + ", value = " + value);
+        }
+        return name;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public String getShortName(String value, Locale locale) {
+        String shortName = findShortName(value, locale);
+        if (shortName == null) {
+            checkLocale(locale);
+            throw new IllegalArgumentException("short name was not found. "
+                    + "code id = " + codeId
+                    + ", locale = " + locale
+                    + ", value = " + value);
+        }
+        return shortName;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public String getOptionalName(String value, String optionColumnName, Locale locale) {
+        int optionHandle = optionHandle(optionColumnName);
+        String optionName = findOptionalName(value, optionHandle, locale);
+        if (optionName == null) {
+            checkLocale(locale);
+            if (optionHandle < 0) {
+                throw new IllegalArgumentException("option name was not found. "
+                        + "code id = " + codeId
+                        + ", locale = " + locale
+                        + ", value = " + value);
+            }
+            throw new IllegalArgumentException("option name was not found. "
+                    + "code id = " + codeId
+                    + ", locale = " + locale
+                    + ", value = " + value
+                    + ", option name = " + optionColumnName);
+        }
+        return optionName;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public String findOptionalName(String value, String optionColumnName, Locale locale) {
+        return findOptionalName(value, optionHandle(optionColumnName), locale);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public List<String> getValues(Locale locale) {
+        List<String> values = findValues(locale);
+        if (values == null) {
+            checkLocale(locale);
+        }
+        return values;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public List<String> getValues(String pattern, Locale locale) {
+        List<String> values = findValues(pattern, locale);
+        if (values == null) {
+            checkLocale(locale);
+            throw new IllegalArgumentException("pattern was not found. "
+                    + "code id = " + codeId
+                    + ", locale = " + locale
+                    + ", pattern = " + pattern);
+        }
+        return values;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public List<String> findValues(String pattern, Locale locale) {
+        return findValues(patternHandle(pattern), locale);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public Comparator<String> getComparator(Locale locale) {
+        checkLocale(locale);
+        return new SortOrderComparator(this, locale);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public String findValueByOptionalName(String optionalName, String optionColumnName, Locale locale) {
+        int optionHandle = optionHandle(optionColumnName);
+        if (optionHandle < 0) {
+            return null;
+        }
+        return findValueByOptionalName(optionalName, optionHandle, locale);
+    }
+}
@@ -1,6 +1,10 @@
 package nablarch.common.code;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -8,6 +12,21 @@ import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -15,22 +34,28 @@ import nablarch.common.code.schema.CodeNameSchema;
 import nablarch.common.code.schema.CodePatternSchema;
 import nablarch.core.cache.StaticDataLoader;
 import nablarch.core.db.connection.AppDbConnection;
+import nablarch.core.db.statement.ResultSetIterator;
 import nablarch.core.db.statement.SqlPStatement;
-import nablarch.core.db.statement.SqlResultSet;
-import nablarch.core.db.statement.SqlRow;
 import nablarch.core.db.transaction.SimpleDbTransactionExecutor;
 import nablarch.core.db.transaction.SimpleDbTransactionManager;
+import nablarch.core.log.Logger;
+import nablarch.core.log.LoggerManager;
 import nablarch.core.repository.initialization.Initializable;
 import nablarch.core.util.I18NUtil;
-import nablarch.core.util.map.CaseInsensitiveMap;
 
 /**
- * データベースからコードをロードするクラス。
+ * データベースからコードをロードするクラス。<br/>
+ * <br/>
+ * ロードするコードは{@link ExtendedCode}を実装しているため、
+ * 例外を送出しない参照メソッドなどを使用する場合は{@link ExtendedCode}にキャストして使用する。
  * 
  * @author Koichi Asano
  */
 public class BasicCodeLoader implements StaticDataLoader<Code>, Initializable {
 
+    /** ロガー */
+    private static final Logger LOGGER = LoggerManager.get(BasicCodeLoader.class);
+
     /** 使用するテーブル名／カラム名 */
     private Map<String, String> dbSchema = new HashMap<String, String>();
 
@@ -53,6 +78,131 @@ public class BasicCodeLoader implements StaticDataLoader<Code>, Initializable {
      */
     private String selectOneCodeStatement;
 
+    /**
+     * 前回のロード以降に更新されたコードをロードするSQL文。
+     */
+    private String selectChangedStatement;
+
+    /** 更新されたコードをロードするSQL文のバインド変数の数 */
+    private int changedStatementParamCount;
+
+    /** 検索結果の行の変換処理 */
+    private CodeRowDecoder rowDecoder;
+
+    /** ロード済みの行のバージョンの最大値 */
+    private volatile Object highWaterMark;
+
+    /**
+     * 複数のコードをIN句でまとめてロードするSQL文。
+     */
+    private String selectCodesStatement;
+
+    /** 複数のコードをまとめてロードする際に、1つのSQL文でロードするコードIDの数 */
+    private int bulkLoadChunkSize = 100;
+
+    /**
+     * 全てのコードIDをロードするSQL文。
+     */
+    private String selectCodeIdsStatement;
+
+    /**
+     * コードIDの範囲を指定してコードをロードするSQL文。
+     */
+    private String selectCodeRangeStatement;
+
+    /** 全件ロードの並列度 */
+    private int loadParallelism = 1;
+
+    /** パターンに含まれることを表すパターンカラムの値 */
+    private String patternTrueValue = "1";
+
+    /** パターンのビットマスクをSQLで作成するか否か */
+    private boolean patternBitmask = false;
+
+    /** 言語毎のフォールバック先の言語(優先順) */
+    private Map<Locale, List<Locale>> localeFallbackChains = Collections.emptyMap();
+
+    /** 全件ロードを前方向カーソルで逐次処理するか否か */
+    private boolean streamingLoad = false;
+
+    /** ストリーミングロード時のフェッチサイズ(0以下の場合はJDBCドライバのデフォルト) */
+    private int fetchSize = 0;
+
+    /** コードをコンパクトな配列表現で保持するか否か */
+    private boolean compactCode = false;
+
+    /** スナップショットファイルのパス */
+    private String snapshotFilePath;
+
+    /** スナップショットの使用前に、データベースと一致しているか確認するか否か */
+    private boolean snapshotStaleCheck = true;
+
+    /** 結合した行の状態(行数とバージョンの最大値)を取得するSQL文 */
+    private String selectTableStateStatement;
+
+    /** スナップショットのカラム構成を表す文字列 */
+    private String snapshotLayout;
+
+    /** 次回の全件ロードでスナップショットを読み込むか否か */
+    private final AtomicBoolean snapshotPending = new AtomicBoolean();
+
+    /** 言語毎に持つ値を、言語が最初に参照された時に構築するか否か */
+    private boolean lazyLangValues = false;
+
+    /** 言語毎に持つ値を遅延構築する場合でも、コードの構築時に値を構築する言語 */
+    private Set<Locale> eagerLocales = Collections.emptySet();
+
+    /** ロードする言語(nullの場合は全ての言語をロードする) */
+    private List<String> loadLocales;
+
+    /** ロードするコードID */
+    private List<String> includeCodeIds = Collections.emptyList();
+
+    /** ロードするコードIDの前方一致条件 */
+    private List<String> includeCodeIdPrefixes = Collections.emptyList();
+
+    /** ロードしないコードID */
+    private List<String> excludeCodeIds = Collections.emptyList();
+
+    /** ロードしないコードIDの前方一致条件 */
+    private List<String> excludeCodeIdPrefixes = Collections.emptyList();
+
+    /** 全件ロード時にパターンの索引を作成するか否か */
+    private boolean buildPatternIndex = false;
+
+    /** 最後の全件ロードで作成したパターンの索引 */
+    private volatile CodePatternIndex patternIndex;
+
+    /** ロード処理の計測結果を受け取るリスナ(計測しない場合はnull) */
+    private CodeLoaderMetricsListener metricsListener;
+
+    /** ロードしたコードの参照回数を集計する統計情報(集計しない場合はnull) */
+    private CodeLookupStatistics lookupStatistics;
+
+    /** 非同期のロードを実行するExecutor(設定されていない場合はnull) */
+    private Executor asyncExecutor;
+
+    /** 非同期のロードの並列度(Executorを設定しない場合に作成するスレッドプールのスレッド数) */
+    private int asyncParallelism = 4;
+
+    /** Executorが設定されていない場合に、最初の非同期ロード時に作成するスレッドプール */
+    private ExecutorService ownedAsyncExecutor;
+
+    /** 全件ロードを並列化する場合に、最初の全件ロード時に作成するスレッドプール */
+    private ExecutorService loadAllExecutor;
+
+    /** 実行中のコードIDとロードのMap */
+    private final ConcurrentMap<String, FutureTask<Code>> inFlightLoads = new ConcurrentHashMap<String, FutureTask<Code>>();
+
+    /** 実行中の全件ロード(実行中でない場合はnull) */
+    private final AtomicReference<FutureTask<List<Code>>> inFlightLoadAll = new AtomicReference<FutureTask<List<Code>>>();
+
+    /** 全てのSQL文に付加するロード対象の絞り込み条件(置き換え文字は置き換え前) */
+    private List<String> filterConditions = Collections.emptyList();
+
+    /** ロード対象の絞り込み条件のバインド変数 */
+    private Object[] filterParams = new Object[0];
+
     /**
      * コード名称テーブルのスキーマ情報を設定する。
      * 
@@ -66,6 +216,11 @@ public class BasicCodeLoader implements StaticDataLoader<Code>, Initializable {
         dbSchema.put("codeNameSortOrder", codeNameSchema.getSortOrderColumnName());
         dbSchema.put("codeNameName", codeNameSchema.getNameColumnName());
         dbSchema.put("codeNameShortName", codeNameSchema.getShortNameColumnName());
+        if (codeNameSchema.getVersionColumnName() != null) {
+            dbSchema.put("codeNameVersion", codeNameSchema.getVersionColumnName());
+        } else {
+            dbSchema.remove("codeNameVersion");
+        }
         optionNameColumnNames = codeNameSchema.getOptionNameColumnNames();
     }
 
@@ -78,125 +233,1417 @@ public class BasicCodeLoader implements StaticDataLoader<Code>, Initializable {
         dbSchema.put("codePattern", codePatternSchema.getTableName());
         dbSchema.put("codePatternId", codePatternSchema.getIdColumnName());
         dbSchema.put("codePatternValue", codePatternSchema.getValueColumnName());
+        if (codePatternSchema.getVersionColumnName() != null) {
+            dbSchema.put("codePatternVersion", codePatternSchema.getVersionColumnName());
+        } else {
+            dbSchema.remove("codePatternVersion");
+        }
         patternColumnNames = codePatternSchema.getPatternColumnNames();
     }
 
     /**
-     * データベーストランザクションマネージャを設定する。
+     * データベーストランザクションマネージャを設定する。
+     *
+     * @param dbManager データベーストランザクションマネージャ
+     */
+    public void setDbManager(SimpleDbTransactionManager dbManager) {
+        this.dbManager = dbManager;
+    }
+
+    /**
+     * 全件ロードを前方向カーソルで逐次処理するか否かを設定する。<br/>
+     * <br/>
+     * trueを設定した場合、{@link #loadAll()}は検索結果を{@link nablarch.core.db.statement.SqlResultSet}に保持せず、
+     * コードIDが切り替わるたびにコードを構築し、構築済みのコードの行データを即座に解放する。
+     * デフォルトはfalse。
+     *
+     * @param streamingLoad 逐次処理する場合true
+     */
+    public void setStreamingLoad(boolean streamingLoad) {
+        this.streamingLoad = streamingLoad;
+    }
+
+    /**
+     * ストリーミングロード時のフェッチサイズを設定する。<br/>
+     * <br/>
+     * 0以下の場合はJDBCドライバのデフォルトのフェッチサイズを使用する。
+     *
+     * @param fetchSize フェッチサイズ
+     */
+    public void setFetchSize(int fetchSize) {
+        this.fetchSize = fetchSize;
+    }
+
+    /**
+     * コードをコンパクトな配列表現で保持するか否かを設定する。<br/>
+     * <br/>
+     * trueを設定した場合、コード値毎のMapやSetを作成せず、
+     * コード値の序数をインデックスとする配列とビットセットでコードを保持する。
+     * 多数のコードを保持する場合のヒープ使用量を削減できる。
+     * デフォルトはfalse。
+     *
+     * @param compactCode コンパクトな配列表現で保持する場合true
+     */
+    public void setCompactCode(boolean compactCode) {
+        this.compactCode = compactCode;
+    }
+
+    /**
+     * スナップショットファイルのパスを設定する。<br/>
+     * <br/>
+     * 設定した場合、{@link #loadAll()}でデータベースからロードした行データをスナップショットファイルに保存する。
+     * {@link #initialize()}後の最初の{@link #loadAll()}では、スナップショットファイルが存在すればデータベースを検索せずに
+     * スナップショットファイルからコードを構築し、ハイウォーターマークもスナップショット作成時の値に復元する。
+     * 2回目以降の{@link #loadAll()}は常にデータベースからロードする。<br/>
+     * <br/>
+     * スナップショットファイルが破損している場合や、カラム構成が異なる場合はデータベースからロードする。
+     * デフォルトはnull(スナップショットを使用しない)。
+     *
+     * @param snapshotFilePath スナップショットファイルのパス
+     * @see #setSnapshotStaleCheck(boolean)
+     */
+    public void setSnapshotFilePath(String snapshotFilePath) {
+        this.snapshotFilePath = snapshotFilePath;
+    }
+
+    /**
+     * スナップショットの使用前に、データベースと一致しているか確認するか否かを設定する。<br/>
+     * <br/>
+     * trueを設定した場合、スナップショットを使用する前に結合した行数とバージョンカラムの最大値を1回のSQL文で取得し、
+     * スナップショット作成時の値と異なる場合はスナップショットを使用せずにデータベースからロードする。<br/>
+     * falseを設定した場合、起動時にデータベースにアクセスせずにスナップショットを使用する。
+     * この場合、バージョンカラムを設定していれば、{@link #loadChanged()}でスナップショット作成以降の更新を反映できる。<br/>
+     * <br/>
+     * バージョンカラムを設定している場合は、{@link #initialize()}でバージョンカラムの最大値を取得し、
+     * 比較できない型(数値、日時、文字列以外)や、2つのバージョンカラムで比較できない型の組み合わせの場合は例外を送出する。<br/>
+     * バージョンカラムを設定していない場合は行数のみを比較するため、
+     * 行数が変わらない更新(名称の変更など)を検知できない。
+     * この場合は{@link #initialize()}で警告ログを出力する。
+     * 行数が変わらない更新がある環境では、バージョンカラムを設定すること。
+     * デフォルトはtrue。
+     *
+     * @param snapshotStaleCheck データベースと一致しているか確認する場合true
+     */
+    public void setSnapshotStaleCheck(boolean snapshotStaleCheck) {
+        this.snapshotStaleCheck = snapshotStaleCheck;
+    }
+
+    /**
+     * 言語毎に持つ値を、言語が最初に参照された時に構築するか否かを設定する。<br/>
+     * <br/>
+     * trueを設定した場合、コードの構築時には行データを言語毎に配列で保持するのみとし、
+     * 名称や略称、オプション名称、パターン毎のコード値のListは、言語が最初に参照された時に構築する。
+     * 多数の言語をロードしても一部の言語しか参照しない場合に、起動時間とヒープ使用量を削減できる。
+     * {@link #setEagerLocales(List)}で設定した言語は、コードの構築時に値を構築する。<br/>
+     * <br/>
+     * {@link #setCompactCode(boolean)}でコンパクトな配列表現を使用する場合は、本設定は使用しない。
+     * デフォルトはfalse。
+     *
+     * @param lazyLangValues 言語が最初に参照された時に値を構築する場合true
+     */
+    public void setLazyLangValues(boolean lazyLangValues) {
+        this.lazyLangValues = lazyLangValues;
+    }
+
+    /**
+     * 言語毎に持つ値を遅延構築する場合でも、コードの構築時に値を構築する言語を設定する。<br/>
+     * <br/>
+     * 頻繁に参照する言語を設定すると、最初の参照時に値を構築する処理を起動時に済ませることができる。
+     * {@link #setLazyLangValues(boolean)}にtrueを設定していない場合は、全ての言語をコードの構築時に構築する。
+     *
+     * @param eagerLocales コードの構築時に値を構築する言語
+     */
+    public void setEagerLocales(List<String> eagerLocales) {
+        Set<Locale> locales = new HashSet<Locale>();
+        for (String lang : eagerLocales) {
+            locales.add(I18NUtil.createLocale(lang));
+        }
+        this.eagerLocales = locales;
+    }
+
+    /**
+     * ロードする言語を設定する。<br/>
+     * <br/>
+     * 設定した場合、コード名称テーブルの言語カラムの値が設定した言語のいずれかと一致する行のみを、
+     * 生成するSQL文の条件(バインド変数)で絞り込んでロードする。
+     * 設定していない言語の名称は参照できないため、言語のフォールバックと併用する場合は、フォールバック先の言語も設定すること。
+     * デフォルトはnull(全ての言語をロードする)。<br/>
+     * <br/>
+     * 本設定は{@link #initialize()}で生成するSQL文に反映される。
+     *
+     * @param loadLocales ロードする言語(コード名称テーブルの言語カラムの値)
+     * @throws IllegalArgumentException 空のListを設定した場合
+     */
+    public void setLoadLocales(List<String> loadLocales) {
+        if (loadLocales != null && loadLocales.isEmpty()) {
+            throw new IllegalArgumentException("loadLocales must not be empty.");
+        }
+        this.loadLocales = loadLocales == null ? null : new ArrayList<String>(loadLocales);
+    }
+
+    /**
+     * ロードするコードIDを設定する。<br/>
+     * <br/>
+     * {@link #setIncludeCodeIdPrefixes(List)}と併用した場合は、いずれかに一致するコードをロードする。
+     * 設定した場合、条件に一致しないコードは全件ロードの結果に含まれず、{@link #getValue(Object)}はnullを返す。
+     * 絞り込みは生成するSQL文の条件(バインド変数)で行う。
+     * デフォルトは空(全てのコードをロードする)。<br/>
+     * <br/>
+     * 本設定は{@link #initialize()}で生成するSQL文に反映される。
+     *
+     * @param includeCodeIds ロードするコードID
+     */
+    public void setIncludeCodeIds(List<String> includeCodeIds) {
+        this.includeCodeIds = new ArrayList<String>(includeCodeIds);
+    }
+
+    /**
+     * ロードするコードIDの前方一致条件を設定する。<br/>
+     * <br/>
+     * コードIDが設定した文字列のいずれかで始まるコードをロードする。
+     * 条件はLIKE述語でエスケープして評価するため、"%"や"_"も通常の文字として扱う。
+     *
+     * @param includeCodeIdPrefixes ロードするコードIDの前方一致条件
+     * @see #setIncludeCodeIds(List)
+     */
+    public void setIncludeCodeIdPrefixes(List<String> includeCodeIdPrefixes) {
+        this.includeCodeIdPrefixes = new ArrayList<String>(includeCodeIdPrefixes);
+    }
+
+    /**
+     * ロードしないコードIDを設定する。<br/>
+     * <br/>
+     * ロードするコードIDの条件に一致する場合でも、ロードしない。
+     * デフォルトは空。<br/>
+     * <br/>
+     * 本設定は{@link #initialize()}で生成するSQL文に反映される。
+     *
+     * @param excludeCodeIds ロードしないコードID
+     */
+    public void setExcludeCodeIds(List<String> excludeCodeIds) {
+        this.excludeCodeIds = new ArrayList<String>(excludeCodeIds);
+    }
+
+    /**
+     * ロードしないコードIDの前方一致条件を設定する。<br/>
+     * <br/>
+     * コードIDが設定した文字列のいずれかで始まるコードはロードしない。
+     *
+     * @param excludeCodeIdPrefixes ロードしないコードIDの前方一致条件
+     * @see #setExcludeCodeIds(List)
+     */
+    public void setExcludeCodeIdPrefixes(List<String> excludeCodeIdPrefixes) {
+        this.excludeCodeIdPrefixes = new ArrayList<String>(excludeCodeIdPrefixes);
+    }
+
+    /**
+     * 全件ロード時にパターンの索引を作成するか否かを設定する。<br/>
+     * <br/>
+     * trueを設定した場合、{@link #loadAll()}でコードの構築と同時に、
+     * 全てのコードのパターンに含まれるコード値をビットセットで保持する{@link CodePatternIndex}を作成する。
+     * 作成した索引は{@link #getPatternIndex()}で取得できる。
+     * デフォルトはfalse。
+     *
+     * @param buildPatternIndex パターンの索引を作成する場合true
+     */
+    public void setBuildPatternIndex(boolean buildPatternIndex) {
+        this.buildPatternIndex = buildPatternIndex;
+    }
+
+    /**
+     * 最後の全件ロードで作成したパターンの索引を取得する。<br/>
+     * <br/>
+     * 索引は{@link #loadAll()}でのみ作成し、{@link #getValue(Object)}や{@link #loadChanged()}では更新しない。
+     *
+     * @return パターンの索引。索引を作成していない場合はnull
+     * @see #setBuildPatternIndex(boolean)
+     */
+    public CodePatternIndex getPatternIndex() {
+        return patternIndex;
+    }
+
+    /**
+     * ロード処理の計測結果を受け取るリスナを設定する。<br/>
+     * <br/>
+     * 設定した場合、ロード処理のフェーズ毎の処理時間、行数、コードの数およびヒープ使用量の推定値を計測し、
+     * ロードの完了時にリスナに通知する。
+     * 設定しない場合、または{@link NopCodeLoaderMetricsListener}を設定した場合は計測を行わない。
+     * デフォルトはnull(計測しない)。
+     *
+     * @param metricsListener 計測結果を受け取るリスナ
+     * @see LoggingCodeLoaderMetricsListener
+     */
+    public void setMetricsListener(CodeLoaderMetricsListener metricsListener) {
+        this.metricsListener = metricsListener instanceof NopCodeLoaderMetricsListener ? null : metricsListener;
+    }
+
+    /**
+     * ロードしたコードの参照回数を集計する統計情報を設定する。<br/>
+     * <br/>
+     * 設定した場合、ロードしたコードを参照回数を計数するコードでラップして返す。
+     * 設定しない場合はコードをラップしないため、参照処理の性能に影響しない。
+     * デフォルトはnull(集計しない)。
+     *
+     * @param lookupStatistics 参照回数を集計する統計情報
+     */
+    public void setLookupStatistics(CodeLookupStatistics lookupStatistics) {
+        this.lookupStatistics = lookupStatistics;
+    }
+
+    /**
+     * 複数のコードをまとめてロードする際に、1つのSQL文でロードするコードIDの数を設定する。<br/>
+     * <br/>
+     * 本設定は{@link #initialize()}で生成するSQL文に反映される。デフォルトは100。
+     *
+     * @param bulkLoadChunkSize 1つのSQL文でロードするコードIDの数
+     * @see #getValues(Collection)
+     */
+    public void setBulkLoadChunkSize(int bulkLoadChunkSize) {
+        if (bulkLoadChunkSize < 1) {
+            throw new IllegalArgumentException("bulkLoadChunkSize must be greater than 0. "
+                    + "bulkLoadChunkSize = " + bulkLoadChunkSize);
+        }
+        this.bulkLoadChunkSize = bulkLoadChunkSize;
+    }
+
+    /**
+     * 全件ロードの並列度を設定する。<br/>
+     * <br/>
+     * 2以上を設定した場合、{@link #loadAll()}はコードIDを並列度の数の範囲に分割し、
+     * 範囲毎に別スレッド(別コネクション)でロードとコードの構築を行う。
+     * データベースの接続数は並列度の分だけ必要となる。
+     * 範囲毎のスレッドは最初の全件ロード時に作成し、以降の全件ロードで再利用する({@link #dispose()}で停止する)。<br/>
+     * <br/>
+     * 並列化した場合、コードIDの取得と範囲毎のロードはそれぞれ別のトランザクションで実行するため、
+     * ロード結果はある一時点のデータベースの状態とは限らない。
+     * ロード中に更新された場合、更新前のコードと更新後のコードが混在したり、
+     * コードIDの取得後に追加されたコードがロードされなかったりすることがある。
+     * 更新と同時にロードする環境で一貫した状態が必要な場合は、並列化しないこと。
+     * デフォルトは1(並列化しない)。
+     *
+     * @param loadParallelism 全件ロードの並列度
+     */
+    public synchronized void setLoadParallelism(int loadParallelism) {
+        if (loadParallelism < 1) {
+            throw new IllegalArgumentException("loadParallelism must be greater than 0. "
+                    + "loadParallelism = " + loadParallelism);
+        }
+        if (loadAllExecutor != null && loadParallelism != this.loadParallelism) {
+            // スレッド数が異なるため、次回の全件ロード時に作成し直す
+            loadAllExecutor.shutdown();
+            loadAllExecutor = null;
+        }
+        this.loadParallelism = loadParallelism;
+    }
+
+    /**
+     * 非同期のロードを実行するExecutorを設定する。<br/>
+     * <br/>
+     * {@link #getValueAsync(Object)}および{@link #loadAllAsync()}のロードは、本Executorで実行する。
+     * 仮想スレッドを使用できるJDKでは、仮想スレッドでタスクを実行するExecutorを設定することで、
+     * データベースの応答を待つ間にプラットフォームスレッドを占有しない。
+     * ロードはそれぞれデータベースの接続を使用するため、同時に実行するロードの数は接続数以下に制限すること。<br/>
+     * <br/>
+     * 設定しない場合は、最初の非同期ロード時に{@link #setAsyncParallelism(int)}の並列度と同じ数の
+     * デーモンスレッドを持つ固定サイズのスレッドプールを作成して使用する。
+     * 並列度を超える非同期ロードは、実行中のロードが完了するまで待機する。
+     * 作成したスレッドプールは{@link #dispose()}で停止する。設定したExecutorは本クラスでは停止しない。
+     *
+     * @param asyncExecutor 非同期のロードを実行するExecutor
+     */
+    public synchronized void setAsyncExecutor(Executor asyncExecutor) {
+        this.asyncExecutor = asyncExecutor;
+    }
+
+    /**
+     * 非同期のロードの並列度を設定する。<br/>
+     * <br/>
+     * {@link #setAsyncExecutor(Executor)}を設定しない場合に作成するスレッドプールのスレッド数。
+     * 同時に実行する非同期のロードの数(使用するデータベースの接続数)は、本並列度以下に制限される。
+     * {@link #loadAllAsync()}の実行中も他の非同期ロードを実行できるよう、全件ロードの並列度とは別に設定する。
+     * デフォルトは4。
+     *
+     * @param asyncParallelism 非同期のロードの並列度
+     */
+    public void setAsyncParallelism(int asyncParallelism) {
+        if (asyncParallelism < 1) {
+            throw new IllegalArgumentException("asyncParallelism must be greater than 0. "
+                    + "asyncParallelism = " + asyncParallelism);
+        }
+        this.asyncParallelism = asyncParallelism;
+    }
+
+    /**
+     * パターンに含まれることを表すパターンカラムの値を設定する。<br/>
+     * <br/>
+     * デフォルトは"1"。
+     *
+     * @param patternTrueValue パターンに含まれることを表すパターンカラムの値
+     */
+    public void setPatternTrueValue(String patternTrueValue) {
+        if (patternTrueValue == null) {
+            throw new IllegalArgumentException("patternTrueValue must not be null.");
+        }
+        this.patternTrueValue = patternTrueValue;
+    }
+
+    /**
+     * パターンのビットマスクをSQLで作成するか否かを設定する。<br/>
+     * <br/>
+     * trueを設定した場合、パターンカラム毎の値を取得せず、
+     * パターンカラムの値がパターンに含まれることを表す値と一致するか否かをSQLのCASE式で判定し、
+     * パターンの序数をビット位置とする数値にまとめて取得する。
+     * パターンカラムが多い場合に、ロード時に生成する文字列を削減できる。
+     * デフォルトはfalse。<br/>
+     * <br/>
+     * 本設定は{@link #initialize()}で生成するSQL文に反映される。
+     *
+     * @param patternBitmask パターンのビットマスクをSQLで作成する場合true
+     */
+    public void setPatternBitmask(boolean patternBitmask) {
+        this.patternBitmask = patternBitmask;
+    }
+
+    /**
+     * 言語のフォールバックを設定する。<br/>
+     * <br/>
+     * キーに言語、値にフォールバック先の言語を指定する(例: ja_JP→ja、ja→en)。
+     * フォールバック先の言語にもフォールバックが設定されている場合は、順に辿って解決する。<br/>
+     * コードの構築時に、コードに存在しない言語を最初に見つかったフォールバック先の言語の値に関連付けるため、
+     * 参照時には例外を発生させずに1回のMap参照で値を取得できる。
+     *
+     * @param localeFallbacks 言語とフォールバック先の言語のMap
+     * @throws IllegalArgumentException フォールバックが循環している場合
+     */
+    public void setLocaleFallbacks(Map<String, String> localeFallbacks) {
+        Map<Locale, List<Locale>> chains = new HashMap<Locale, List<Locale>>();
+        for (String lang : localeFallbacks.keySet()) {
+            List<Locale> chain = new ArrayList<Locale>();
+            String fallback = localeFallbacks.get(lang);
+            while (fallback != null) {
+                Locale fallbackLocale = I18NUtil.createLocale(fallback);
+                if (fallback.equals(lang) || chain.contains(fallbackLocale)) {
+                    throw new IllegalArgumentException("locale fallback is circular. "
+                            + "locale = " + lang
+                            + ", fallbacks = " + chain);
+                }
+                chain.add(fallbackLocale);
+                fallback = localeFallbacks.get(fallback);
+            }
+            chains.put(I18NUtil.createLocale(lang), Collections.unmodifiableList(chain));
+        }
+        this.localeFallbackChains = chains;
+    }
+
+    /**
+     * {@inheritDoc}<br/>
+     * <br/>
+     * 
+     * 本機能ではインデックスは提供しないためnullを返す。
+     */
+    public Object generateIndexKey(String indexName, Code value) {
+        return null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public Object getId(Code value) {
+        return value.getCodeId();
+    }
+
+    /**
+     * {@inheritDoc}<br/>
+     * <br/>
+     * 
+     * 本機能ではインデックスは提供しないためnullを返す。
+     */
+    public List<String> getIndexNames() {
+        return null;
+    }
+
+    /**
+     * {@inheritDoc}<br/>
+     * <br/>
+     * 同じコードIDのロードが実行中の場合は、新たにロードせずに実行中のロードの完了を待ち、その結果を返す。
+     * キャッシュのクリア直後などに多数のスレッドが同じコードを同時にロードしても、
+     * SQL文の実行とコードの構築は1回にまとめられ、全てのスレッドが同じコードを共有する。
+     * 実行中のロードで例外が発生した場合は、待機していた全てのスレッドに同じ例外を送出する。
+     */
+    public Code getValue(final Object id) {
+        String codeId = id.toString();
+        if (!isTargetCodeId(codeId)) {
+            return null;
+        }
+        FutureTask<Code> load = inFlightLoads.get(codeId);
+        if (load == null) {
+            FutureTask<Code> newLoad = newValueLoad(codeId);
+            load = inFlightLoads.putIfAbsent(codeId, newLoad);
+            if (load == null) {
+                // 呼び出し元のスレッドでロードする
+                newLoad.run();
+                load = newLoad;
+            }
+        }
+        return getResult(load);
+    }
+
+    /**
+     * 1つのコードを非同期でロードする。<br/>
+     * <br/>
+     * ロードは{@link #setAsyncExecutor(Executor)}で設定したExecutorで実行し、呼び出し元のスレッドは待機しない。
+     * 同じコードIDのロードが実行中の場合は、新たにロードせずに実行中のロードの結果を返す。
+     * このため、同じコードIDに対する同時の呼び出しは1回のSQL文の実行にまとめられる。<br/>
+     * <br/>
+     * 返却するFutureは、同じロードを待つ全ての呼び出し元で共有する。
+     * 取り消すと、他の呼び出し元も結果を取得できなくなるため注意すること。
+     *
+     * @param id コードID
+     * @return ロード結果のFuture。コードが存在しない場合の結果はnull。
+     *         ロードで発生した例外は{@link Future#get()}で{@link ExecutionException}にラップして送出する
+     */
+    public Future<Code> getValueAsync(Object id) {
+        String codeId = id.toString();
+        FutureTask<Code> load = inFlightLoads.get(codeId);
+        if (load != null) {
+            return load;
+        }
+        FutureTask<Code> newLoad = newValueLoad(codeId);
+        load = inFlightLoads.putIfAbsent(codeId, newLoad);
+        if (load != null) {
+            return load;
+        }
+        try {
+            asyncExecutor().execute(newLoad);
+        } catch (RejectedExecutionException e) {
+            inFlightLoads.remove(codeId, newLoad);
+            throw e;
+        }
+        return newLoad;
+    }
+
+    /**
+     * 1つのコードのロードを作成する。<br/>
+     * <br/>
+     * 作成したロードは、完了時に実行中のロードのMapから自身を削除する。
+     *
+     * @param codeId コードID
+     * @return ロード
+     */
+    private FutureTask<Code> newValueLoad(final String codeId) {
+        return new FutureTask<Code>(new Callable<Code>() {
+            public Code call() {
+                return loadValue(codeId);
+            }
+        }) {
+            @Override
+            protected void done() {
+                inFlightLoads.remove(codeId, this);
+            }
+        };
+    }
+
+    /**
+     * 全てのコードを非同期でロードする。<br/>
+     * <br/>
+     * ロードは{@link #setAsyncExecutor(Executor)}で設定したExecutorで実行し、呼び出し元のスレッドは待機しない。
+     * 全件ロードが実行中の場合は、新たにロードせずに実行中のロードの結果を返す。
+     * 返却するFutureの扱いは{@link #getValueAsync(Object)}と同じ。
+     *
+     * @return ロード結果のFuture
+     */
+    public Future<List<Code>> loadAllAsync() {
+        while (true) {
+            FutureTask<List<Code>> load = inFlightLoadAll.get();
+            if (load != null) {
+                return load;
+            }
+            FutureTask<List<Code>> newLoad = new FutureTask<List<Code>>(new Callable<List<Code>>() {
+                public List<Code> call() {
+                    return loadAll();
+                }
+            }) {
+                @Override
+                protected void done() {
+                    inFlightLoadAll.compareAndSet(this, null);
+                }
+            };
+            if (inFlightLoadAll.compareAndSet(null, newLoad)) {
+                try {
+                    asyncExecutor().execute(newLoad);
+                } catch (RejectedExecutionException e) {
+                    inFlightLoadAll.compareAndSet(newLoad, null);
+                    throw e;
+                }
+                return newLoad;
+            }
+        }
+    }
+
+    /**
+     * 非同期のロードを実行するExecutorを取得する。<br/>
+     * <br/>
+     * 設定されていない場合は、非同期のロードの並列度と同じ数のスレッドを持つ固定サイズのスレッドプールを作成する。
+     * 同時に実行するロードの数(使用するデータベースの接続数)を並列度以下に制限するため。
+     *
+     * @return 非同期のロードを実行するExecutor
+     */
+    private synchronized Executor asyncExecutor() {
+        if (asyncExecutor != null) {
+            return asyncExecutor;
+        }
+        if (ownedAsyncExecutor == null) {
+            ownedAsyncExecutor = Executors.newFixedThreadPool(asyncParallelism, new ThreadFactory() {
+                private final AtomicInteger threadNumber = new AtomicInteger();
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "code-loader-async-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        return ownedAsyncExecutor;
+    }
+
+    /**
+     * 本クラスが作成したスレッドプールを停止する。<br/>
+     * <br/>
+     * アプリケーションの終了時に呼び出すこと。
+     * 実行中のロードは完了まで実行し、新たな非同期ロードは受け付けない。
+     * 停止後に非同期ロードを呼び出した場合は、スレッドプールを作成し直す。
+     * 全件ロードを並列化するスレッドプールも同様に停止し、次回の全件ロード時に作成し直す。
+     * {@link #setAsyncExecutor(Executor)}で設定したExecutorは停止しない。
+     */
+    public synchronized void dispose() {
+        if (ownedAsyncExecutor != null) {
+            ownedAsyncExecutor.shutdown();
+            ownedAsyncExecutor = null;
+        }
+        if (loadAllExecutor != null) {
+            loadAllExecutor.shutdown();
+            loadAllExecutor = null;
+        }
+    }
+
+    /**
+     * 全件ロードを並列化するスレッドプールを取得する。作成されていない場合は、全件ロードの並列度と同じ数のスレッドで作成する。
+     *
+     * @return 全件ロードを並列化するスレッドプール
+     */
+    private synchronized ExecutorService loadAllExecutor() {
+        if (loadAllExecutor == null) {
+            loadAllExecutor = Executors.newFixedThreadPool(loadParallelism, new ThreadFactory() {
+                private final AtomicInteger threadNumber = new AtomicInteger();
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "code-loader-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        return loadAllExecutor;
+    }
+
+    /**
+     * 1つのコードをロードする。
+     *
+     * @param codeId コードID
+     * @return コード。存在しない場合はnull
+     */
+    private Code loadValue(String codeId) {
+        if (!isTargetCodeId(codeId)) {
+            return null;
+        }
+        CodeLoaderMetricsListener listener = metricsListener;
+        long start = listener == null ? 0L : System.nanoTime();
+        List<Code> createdCodes = loadCodes(null, selectOneCodeStatement, codeId).build();
+        Code code = createdCodes.size() == 1 ? createdCodes.get(0) : null;
+        if (listener != null) {
+            listener.valueLoaded(codeId, System.nanoTime() - start, code != null);
+        }
+        return code;
+    }
+
+    /**
+     * {@inheritDoc}<br/>
+     * <br/>
+     * 
+     * 本機能ではインデックスは提供しないためnullを返す。
+     */
+    public List<Code> getValues(String indexName, Object key) {
+        return null;
+    }
+
+    /**
+     * 複数のコードをまとめてロードする。<br/>
+     * <br/>
+     * コードIDを{@link #setBulkLoadChunkSize(int)}で設定した件数毎にIN句にまとめ、
+     * 1つのトランザクションでロードする。
+     * 存在しないコードIDは無視する。
+     *
+     * @param ids コードIDのCollection
+     * @return ロードしたコードのList(コードIDの昇順)
+     */
+    public List<Code> getValues(Collection<?> ids) {
+        Set<String> sortedIds = new TreeSet<String>();
+        for (Object id : ids) {
+            if (isTargetCodeId(id.toString())) {
+                sortedIds.add(id.toString());
+            }
+        }
+        if (sortedIds.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        List<Object[]> paramsList = new ArrayList<Object[]>();
+        Object[] params = null;
+        int index = 0;
+        for (String id : sortedIds) {
+            if (params == null) {
+                params = new Object[bulkLoadChunkSize];
+                index = 0;
+            }
+            params[index++] = id;
+            if (index == bulkLoadChunkSize) {
+                paramsList.add(params);
+                params = null;
+            }
+        }
+        if (params != null) {
+            // SQL文を使いまわすため、最後のチャンクの余りは最後のコードIDで埋める
+            Arrays.fill(params, index, params.length, params[index - 1]);
+            paramsList.add(params);
+        }
+        CodeLoadMetrics.Collector collector = newCollector("getValues");
+        List<Code> codes = loadCodes(new CodeListBuilder(false, null, collector), selectCodesStatement, paramsList,
+                collector).build();
+        fireLoadCompleted(collector);
+        return codes;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public List<Code> loadAll() {
+        CodePatternIndex.Builder indexBuilder = buildPatternIndex ? new CodePatternIndex.Builder(patternColumnNames) : null;
+        if (snapshotPending.compareAndSet(true, false)) {
+            CodeLoadMetrics.Collector snapshotCollector = newCollector("snapshot");
+            List<Code> codes = loadSnapshot(indexBuilder, snapshotCollector);
+            if (codes != null) {
+                publishPatternIndex(indexBuilder);
+                fireLoadCompleted(snapshotCollector);
+                return codes;
+            }
+        }
+
+        CodeLoadMetrics.Collector collector = newCollector("loadAll");
+        boolean retainRows = snapshotFilePath != null;
+        List<CodeListBuilder> builders;
+        if (loadParallelism > 1) {
+            builders = loadAllParallel(retainRows, indexBuilder, collector);
+        } else {
+            builders = Collections.singletonList(loadCodes(new CodeListBuilder(retainRows, indexBuilder, collector),
+                    selectAllStatement, Collections.singletonList(new Object[0]), collector));
+        }
+
+        List<Code> codes = new ArrayList<Code>();
+        List<CodeRow> rows = retainRows ? new ArrayList<CodeRow>() : null;
+        Object maxVersion = null;
+        for (CodeListBuilder builder : builders) {
+            maxVersion = CodeVersion.max(maxVersion, builder.getMaxVersion());
+            codes.addAll(builder.build());
+            if (retainRows) {
+                rows.addAll(builder.getRows());
+            }
+        }
+        updateHighWaterMark(maxVersion);
+        if (retainRows) {
+            writeSnapshot(rows, maxVersion);
+        }
+        publishPatternIndex(indexBuilder);
+        fireLoadCompleted(collector);
+        return Collections.unmodifiableList(codes);
+    }
+
+    /**
+     * 計測値を収集するオブジェクトを作成する。
+     *
+     * @param operation 処理の種類
+     * @return 計測値を収集するオブジェクト。リスナが設定されていない場合はnull
+     */
+    private CodeLoadMetrics.Collector newCollector(String operation) {
+        return metricsListener == null ? null : new CodeLoadMetrics.Collector(operation);
+    }
+
+    /**
+     * 計測結果をリスナに通知する。
+     *
+     * @param collector 計測値を収集したオブジェクト(計測しない場合はnull)
+     */
+    private void fireLoadCompleted(CodeLoadMetrics.Collector collector) {
+        if (collector != null) {
+            metricsListener.loadCompleted(collector.toMetrics(patternColumnNames.length));
+        }
+    }
+
+    /**
+     * 計測する場合のみ、現在時刻を取得する。
+     *
+     * @param collector 計測値を収集するオブジェクト(計測しない場合はnull)
+     * @return 現在時刻(ナノ秒)。計測しない場合は0
+     */
+    private static long nanoTime(CodeLoadMetrics.Collector collector) {
+        return collector == null ? 0L : System.nanoTime();
+    }
+
+    /**
+     * パターンの索引を作成して公開する。
+     *
+     * @param indexBuilder 索引を作成するビルダ(索引を作成しない場合はnull)
+     */
+    private void publishPatternIndex(CodePatternIndex.Builder indexBuilder) {
+        if (indexBuilder != null) {
+            patternIndex = indexBuilder.build();
+        }
+    }
+
+    /**
+     * スナップショットファイルからコードを構築する。
+     *
+     * @param indexBuilder パターンの索引を作成するビルダ(索引を作成しない場合はnull)
+     * @param collector 計測値を収集するオブジェクト(計測しない場合はnull)。ファイルの読み込み時間はSQL文の実行時間として計測する
+     * @return コードのList。スナップショットを使用できない場合はnull
+     */
+    private List<Code> loadSnapshot(CodePatternIndex.Builder indexBuilder, CodeLoadMetrics.Collector collector) {
+        long start = nanoTime(collector);
+        File file = new File(snapshotFilePath);
+        CodeSnapshot snapshot;
+        try {
+            snapshot = CodeSnapshot.read(file, snapshotLayout);
+        } catch (IOException e) {
+            LOGGER.logWarn("failed to read code snapshot. codes are loaded from database. file = " + file, e);
+            return null;
+        }
+        if (snapshot == null) {
+            return null;
+        }
+        if (snapshotStaleCheck && isSnapshotStale(snapshot)) {
+            LOGGER.logInfo("code snapshot is stale. codes are loaded from database. file = " + file);
+            return null;
+        }
+
+        long read = nanoTime(collector);
+        CodeListBuilder builder = new CodeListBuilder(false, indexBuilder, collector);
+        builder.addAll(snapshot.getRows());
+        if (collector != null) {
+            collector.addStatement(read - start, 0L, System.nanoTime() - read, snapshot.getRows().size());
+        }
+        updateHighWaterMark(CodeVersion.normalize(snapshot.getMaxVersion()));
+        return builder.build();
+    }
+
+    /**
+     * スナップショットがデータベースと一致していないか判定する。<br/>
+     * <br/>
+     * 結合した行数とバージョンカラムの最大値を比較する。
+     * バージョンカラムを設定していない場合は、行数のみを比較する(行数が変わらない更新は検知できない)。
+     *
+     * @param snapshot スナップショット
+     * @return 一致していない場合true
+     */
+    private boolean isSnapshotStale(CodeSnapshot snapshot) {
+        CodeTableState state = loadTableState();
+        Object maxVersion = state.getMaxVersion();
+        Object snapshotMaxVersion = CodeVersion.normalize(snapshot.getMaxVersion());
+        return state.getRowCount() != snapshot.getRowCount()
+                || (maxVersion == null ? snapshotMaxVersion != null
+                                       : snapshotMaxVersion == null
+                                         || CodeVersion.compare(maxVersion, snapshotMaxVersion) != 0);
+    }
+
+    /**
+     * コードパターンテーブルとコード名称テーブルを結合した行の状態を取得する。<br/>
+     * <br/>
+     * 行数とバージョンカラムの最大値を1回のSQL文で取得する。
+     *
+     * @return 行の状態
+     */
+    CodeTableState loadTableState() {
+        return new SimpleDbTransactionExecutor<CodeTableState>(dbManager) {
+            @Override
+            public CodeTableState execute(AppDbConnection connection) {
+                SqlPStatement statement = connection.prepareStatement(selectTableStateStatement);
+                setParams(statement);
+                ResultSetIterator rows = statement.executeQuery();
+                try {
+                    if (!rows.next()) {
+                        return new CodeTableState(0, null);
+                    }
+                    long rowCount = ((Number) rows.getObject(1)).longValue();
+                    Object maxVersion = null;
+                    for (int i = 2; i <= rowDecoder.getVersionColumnCount() + 1; i++) {
+                        maxVersion = CodeVersion.max(maxVersion, CodeVersion.normalize(rows.getObject(i)));
+                    }
+                    return new CodeTableState(rowCount, maxVersion);
+                } finally {
+                    rows.close();
+                }
+            }
+        }.doTransaction();
+    }
+
+    /**
+     * バージョンカラムが設定されているか否かを判定する。
+     *
+     * @return バージョンカラムが設定されている場合true
+     */
+    boolean hasVersionColumn() {
+        return selectChangedStatement != null;
+    }
+
+    /**
+     * スナップショットファイルを書き込む。<br/>
+     * <br/>
+     * 書き込みに失敗した場合はログを出力し、ロードは継続する。
+     *
+     * @param rows 行データ(コードIDでソート済み)
+     * @param maxVersion 行のバージョンの最大値
+     */
+    private void writeSnapshot(List<CodeRow> rows, Object maxVersion) {
+        File file = new File(snapshotFilePath);
+        try {
+            CodeSnapshot.write(file, snapshotLayout, rows, maxVersion);
+        } catch (IOException e) {
+            LOGGER.logWarn("failed to write code snapshot. file = " + file, e);
+        }
+    }
+
+    /**
+     * コードIDの範囲で分割し、複数のスレッド(コネクション)で並列に全てのコードをロードする。
+     *
+     * @param retainRows ロードした行データを保持する場合true
+     * @param indexBuilder パターンの索引を作成するビルダ(索引を作成しない場合はnull)
+     * @param collector 計測値を収集するオブジェクト(計測しない場合はnull)
+     * @return 範囲毎のビルダのList(コードIDの昇順)
+     */
+    private List<CodeListBuilder> loadAllParallel(final boolean retainRows,
+            final CodePatternIndex.Builder indexBuilder, final CodeLoadMetrics.Collector collector) {
+        List<String> codeIds = new SimpleDbTransactionExecutor<List<String>>(dbManager) {
+            @Override
+            public List<String> execute(AppDbConnection connection) {
+                List<String> ids = new ArrayList<String>();
+                SqlPStatement statement = connection.prepareStatement(selectCodeIdsStatement);
+                setParams(statement);
+                ResultSetIterator rows = statement.executeQuery();
+                try {
+                    while (rows.next()) {
+                        ids.add(rows.getString(1));
+                    }
+                } finally {
+                    rows.close();
+                }
+                return ids;
+            }
+        }.doTransaction();
+        if (codeIds.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        int partitionCount = Math.min(loadParallelism, codeIds.size());
+        ExecutorService executor = loadAllExecutor();
+        List<Future<CodeListBuilder>> futures = new ArrayList<Future<CodeListBuilder>>();
+        try {
+            for (int i = 0; i < partitionCount; i++) {
+                final String from = codeIds.get(codeIds.size() * i / partitionCount);
+                final String to = codeIds.get(codeIds.size() * (i + 1) / partitionCount - 1);
+                futures.add(executor.submit(new Callable<CodeListBuilder>() {
+                    public CodeListBuilder call() {
+                        return loadCodes(new CodeListBuilder(retainRows, indexBuilder, collector),
+                                selectCodeRangeStatement, Collections.singletonList(new Object[] {from, to}), collector);
+                    }
+                }));
+            }
+
+            List<CodeListBuilder> builders = new ArrayList<CodeListBuilder>(partitionCount);
+            for (Future<CodeListBuilder> future : futures) {
+                builders.add(getResult(future));
+            }
+            return builders;
+        } finally {
+            // 失敗した場合は、残りの範囲のロードを取り消す
+            for (Future<CodeListBuilder> future : futures) {
+                future.cancel(true);
+            }
+        }
+    }
+
+    /**
+     * 非同期処理の結果を取得する。<br/>
+     * <br/>
+     * 非同期処理で発生した実行時例外およびエラーは、そのまま送出する。
+     *
+     * @param future 非同期処理の結果
+     * @param <T> 結果の型
+     * @return 結果
+     */
+    private static <T> T getResult(Future<T> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted while loading codes.", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException("failed to load codes.", cause);
+        }
+    }
+
+    /**
+     * 前回のロード以降に更新されたコードをロードする。<br/>
+     * <br/>
+     * コード名称テーブルまたはコードパターンテーブルのバージョンカラムの値が、
+     * ローダが保持している最大値(ハイウォーターマーク)より大きい行を含むコードを、
+     * コードを構成する全ての行とともにロードする。
+     * ロード後、ハイウォーターマークをロードした行のバージョンの最大値に更新する。<br/>
+     * ハイウォーターマークを保持していない場合は、{@link #loadAll()}と同様に全てのコードをロードする。<br/>
+     * <br/>
+     * 行が削除されたことは検知できないため、コードや値を削除した場合は全件をロードし直す必要がある。<br/>
+     * <br/>
+     * バージョンカラムの値は、コミット順に大きくなる整数である必要がある。
+     * ハイウォーターマーク以下の値で後からコミットされた更新はロードされないため、
+     * 更新日時や、コミット前に採番するシーケンスの値をバージョンとして使用してはならない。
+     * コミット順の値は、例えばバージョンを管理する1行のテーブルを更新と同じトランザクションで
+     * インクリメントして取得する(行ロックにより更新が直列化される)ことで割り当てられる。
+     *
+     * @return 更新されたコードのList。更新されたコードがない場合は空のList
+     * @throws IllegalStateException バージョンカラムが設定されていない場合や、バージョンカラムの値が整数でない場合
+     */
+    public synchronized List<Code> loadChanged() {
+        if (selectChangedStatement == null) {
+            throw new IllegalStateException("version column was not configured. "
+                    + "set versionColumnName to CodeNameSchema or CodePatternSchema.");
+        }
+        Object since = highWaterMark;
+        if (since == null) {
+            return loadAll();
+        }
+        CodeVersion.checkCommitOrdered(since);
+        Object[] params = new Object[changedStatementParamCount];
+        Arrays.fill(params, since);
+        CodeLoadMetrics.Collector collector = newCollector("loadChanged");
+        CodeListBuilder builder = loadCodes(collector, selectChangedStatement, params);
+        updateHighWaterMark(builder.getMaxVersion());
+        List<Code> codes = builder.build();
+        fireLoadCompleted(collector);
+        return codes;
+    }
+
+    /**
+     * ロード済みの行のバージョンの最大値(ハイウォーターマーク)を取得する。
+     *
+     * @return ハイウォーターマーク。バージョンカラムを含む行をロードしていない場合はnull
+     */
+    public Object getHighWaterMark() {
+        return highWaterMark;
+    }
+
+    /**
+     * ハイウォーターマークを保持していない場合に、ハイウォーターマークを設定する。<br/>
+     * <br/>
+     * 設定した値以前の更新は、{@link #loadChanged()}でロードされない。
+     *
+     * @param version ハイウォーターマーク
+     */
+    synchronized void initializeHighWaterMark(Object version) {
+        if (highWaterMark == null) {
+            updateHighWaterMark(version);
+        }
+    }
+
+    /**
+     * ハイウォーターマークを、現在の値より大きい場合のみ更新する。
+     *
+     * @param version ロードした行のバージョンの最大値(正規化済み)
+     */
+    private synchronized void updateHighWaterMark(Object version) {
+        if (version != null && (highWaterMark == null || CodeVersion.compare(version, highWaterMark) > 0)) {
+            highWaterMark = version;
+        }
+    }
+
+    /**
+     * SQL文を実行し、検索結果からコードを構築する。
+     *
+     * @param collector 計測値を収集するオブジェクト(計測しない場合はnull)
+     * @param sql SQL文
+     * @param params バインド変数
+     * @return 検索結果を追加したビルダ
+     */
+    private CodeListBuilder loadCodes(CodeLoadMetrics.Collector collector, String sql, Object... params) {
+        return loadCodes(new CodeListBuilder(false, null, collector), sql, Collections.singletonList(params),
+                collector);
+    }
+
+    /**
+     * バインド変数の組毎にSQL文を実行し、検索結果からコードを構築する。<br/>
+     * <br/>
+     * 全てのSQL文は1つのトランザクションで実行する。
+     * 各SQL文の検索結果に含まれるコードIDは重複していてはならない。<br/>
+     * 検索結果の各行は、{@link #initialize()}で解決したカラムの位置で値を取得して変換する。
+     * ストリーミングロードが有効な場合は前方向カーソルで逐次処理し、
+     * 検索結果全体をメモリ上に保持しない。
+     *
+     * @param handler 検索結果の行データを追加するハンドラ
+     * @param sql SQL文
+     * @param paramsList バインド変数の組のList
+     * @param collector 計測値を収集するオブジェクト(計測しない場合はnull)
+     * @param <H> ハンドラの型
+     * @return 検索結果の行データを追加したハンドラ
+     */
+    private <H extends CodeRowHandler> H loadCodes(final H handler, final String sql,
+            final List<Object[]> paramsList, final CodeLoadMetrics.Collector collector) {
+        new SimpleDbTransactionExecutor<Void>(dbManager) {
+            @Override
+            public Void execute(AppDbConnection connection) {
+                for (Object[] params : paramsList) {
+                    SqlPStatement statement = connection.prepareStatement(sql);
+                    setParams(statement, params);
+                    if (streamingLoad && fetchSize > 0) {
+                        statement.setFetchSize(fetchSize);
+                    }
+                    CodeRowDecoder decoder = rowDecoder;
+                    List<CodeRow> retrieved = streamingLoad ? null : new ArrayList<CodeRow>();
+                    long start = nanoTime(collector);
+                    ResultSetIterator rows = statement.executeQuery();
+                    long executed = nanoTime(collector);
+                    long handleNanos = 0L;
+                    long rowCount = 0L;
+                    try {
+                        while (rows.next()) {
+                            CodeRow row = decoder.decode(rows);
+                            rowCount++;
+                            if (retrieved == null) {
+                                long handleStart = nanoTime(collector);
+                                handler.add(row);
+                                handleNanos += nanoTime(collector) - handleStart;
+                            } else {
+                                retrieved.add(row);
+                            }
+                        }
+                    } finally {
+                        rows.close();
+                    }
+                    long fetched = nanoTime(collector);
+                    long fetchNanos = fetched - executed - handleNanos;
+                    if (retrieved != null) {
+                        for (CodeRow row : retrieved) {
+                            handler.add(row);
+                        }
+                        handleNanos = nanoTime(collector) - fetched;
+                    }
+                    if (collector != null) {
+                        collector.addStatement(executed - start, fetchNanos, handleNanos, rowCount);
+                    }
+                }
+                return null;
+            }
+        }.doTransaction();
+        return handler;
+    }
+
+    /**
+     * コードIDがロード対象の絞り込み条件に一致するか否かを判定する。<br/>
+     * <br/>
+     * 条件に一致しないコードIDはデータベースを検索せずに除外するために使用する。
+     *
+     * @param codeId コードID
+     * @return 一致する場合true
+     */
+    private boolean isTargetCodeId(String codeId) {
+        if ((!includeCodeIds.isEmpty() || !includeCodeIdPrefixes.isEmpty())
+                && !includeCodeIds.contains(codeId) && !startsWithAny(codeId, includeCodeIdPrefixes)) {
+            return false;
+        }
+        return !excludeCodeIds.contains(codeId) && !startsWithAny(codeId, excludeCodeIdPrefixes);
+    }
+
+    /**
+     * 文字列がいずれかの接頭辞で始まるか否かを判定する。
+     *
+     * @param value 文字列
+     * @param prefixes 接頭辞
+     * @return いずれかの接頭辞で始まる場合true
+     */
+    private static boolean startsWithAny(String value, List<String> prefixes) {
+        for (String prefix : prefixes) {
+            if (value.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * ロード対象の絞り込み条件のバインド変数と、指定したバインド変数を順に設定する。<br/>
+     * <br/>
+     * 文字列は{@link SqlPStatement#setString(int, String)}、それ以外は{@link SqlPStatement#setObject(int, Object)}で設定する。
+     *
+     * @param statement SQL文
+     * @param params 絞り込み条件の後に設定するバインド変数
+     */
+    private void setParams(SqlPStatement statement, Object... params) {
+        Object[] allParams = new Object[filterParams.length + params.length];
+        System.arraycopy(filterParams, 0, allParams, 0, filterParams.length);
+        System.arraycopy(params, 0, allParams, filterParams.length, params.length);
+        for (int i = 0; i < allParams.length; i++) {
+            if (allParams[i] instanceof String) {
+                statement.setString(i + 1, (String) allParams[i]);
+            } else {
+                statement.setObject(i + 1, allParams[i]);
+            }
+        }
+    }
+
+    /**
+     * 全てのコードの行データをロードする。<br/>
+     * <br/>
+     * コードを構築せずに行データを処理するローダ({@link MappedCodeLoader})が使用する。
+     *
+     * @param handler 行データを追加するハンドラ
+     */
+    void loadAllRows(CodeRowHandler handler) {
+        loadCodes(handler, selectAllStatement, Collections.singletonList(new Object[0]), null);
+    }
+
+    /**
+     * 1つのコードの行データをロードする。
      *
-     * @param dbManager データベーストランザクションマネージャ
+     * @param id コードID
+     * @param handler 行データを追加するハンドラ
      */
-    public void setDbManager(SimpleDbTransactionManager dbManager) {
-        this.dbManager = dbManager;
+    void loadCodeRows(String id, CodeRowHandler handler) {
+        if (!isTargetCodeId(id)) {
+            return;
+        }
+        loadCodes(handler, selectOneCodeStatement, Collections.singletonList(new Object[] {id}), null);
     }
 
     /**
-     * {@inheritDoc}<br/>
-     * <br/>
-     * 
-     * 本機能ではインデックスは提供しないためnullを返す。
+     * パターンカラム名を取得する。
+     *
+     * @return パターンカラム名
      */
-    public Object generateIndexKey(String indexName, Code value) {
-        return null;
+    String[] getPatternColumnNames() {
+        return patternColumnNames;
     }
 
     /**
-     * {@inheritDoc}
+     * オプション名称のカラム名を取得する。
+     *
+     * @return オプション名称のカラム名
      */
-    public Object getId(Code value) {
-        return value.getCodeId();
+    String[] getOptionNameColumnNames() {
+        return optionNameColumnNames;
     }
 
     /**
-     * {@inheritDoc}<br/>
-     * <br/>
-     * 
-     * 本機能ではインデックスは提供しないためnullを返す。
+     * 言語のフォールバック先の言語を取得する。
+     *
+     * @param locale 言語
+     * @return フォールバック先の言語(優先順)。フォールバックが設定されていない場合は空のList
      */
-    public List<String> getIndexNames() {
-        return null;
+    List<Locale> getLocaleFallbacks(Locale locale) {
+        List<Locale> chain = localeFallbackChains.get(locale);
+        return chain == null ? Collections.<Locale>emptyList() : chain;
     }
 
     /**
-     * {@inheritDoc}
+     * コードIDでソートされたデータベースの検索結果からコードのListを構築するクラス。<br/>
+     * <br/>
+     * コードIDが切り替わった時点でコードを構築し、構築に使用した行データは保持しない。
+     * ただし、スナップショットを作成する場合は行データを保持する。
      */
-    public Code getValue(final Object id) {
+    private final class CodeListBuilder implements CodeRowHandler {
 
-        SqlResultSet resultSet = new SimpleDbTransactionExecutor<SqlResultSet>(
-                dbManager) {
-            @Override
-            public SqlResultSet execute(AppDbConnection connection) {
-                SqlPStatement statement = connection.prepareStatement(
-                        selectOneCodeStatement);
-                statement.setString(1, id.toString());
-                return statement.retrieve();
+        /** 追加された全ての行データ(保持しない場合はnull) */
+        private final List<CodeRow> rows;
+
+        /** 構築済みのコード */
+        private final List<Code> codes = new ArrayList<Code>();
+
+        /** 構築中のコードを構成するデータ */
+        private final List<CodeRow> data = new ArrayList<CodeRow>();
+
+        /** 構築中のコードID */
+        private String codeId = "";
+
+        /** 追加された行のバージョンの最大値 */
+        private Object maxVersion;
+
+        /** パターンの索引を作成するビルダ(索引を作成しない場合はnull) */
+        private final CodePatternIndex.Builder indexBuilder;
+
+        /** 計測値を収集するオブジェクト(計測しない場合はnull) */
+        private final CodeLoadMetrics.Collector collector;
+
+        /**
+         * コンストラクタ。
+         *
+         * @param retainRows 追加された行データを保持する場合true
+         * @param indexBuilder パターンの索引を作成するビルダ(索引を作成しない場合はnull)
+         * @param collector 計測値を収集するオブジェクト(計測しない場合はnull)
+         */
+        private CodeListBuilder(boolean retainRows, CodePatternIndex.Builder indexBuilder,
+                CodeLoadMetrics.Collector collector) {
+            rows = retainRows ? new ArrayList<CodeRow>() : null;
+            this.indexBuilder = indexBuilder;
+            this.collector = collector;
+        }
+
+        /**
+         * 検索結果の行を全て追加する。
+         *
+         * @param rows 検索結果
+         */
+        private void addAll(Iterable<CodeRow> rows) {
+            for (CodeRow row : rows) {
+                add(row);
             }
-        }.doTransaction();
+        }
 
-        List<Code> createdCodes = createResult(resultSet);
-        if (createdCodes.size() == 1) {
-            return createdCodes.get(0);
-        } else {
-            return null;
+        /**
+         * {@inheritDoc}
+         */
+        public void add(CodeRow row) {
+            String currentCodeId = row.getCodeId();
+            if (!codeId.equals(currentCodeId)) {
+                flush();
+                codeId = currentCodeId;
+            }
+            data.add(row);
+            if (rows != null) {
+                rows.add(row);
+            }
+            updateMaxVersion(row.getVersion());
+        }
+
+        /**
+         * バージョンの最大値を更新する。
+         *
+         * @param version 行のバージョン
+         */
+        private void updateMaxVersion(Object version) {
+            maxVersion = CodeVersion.max(maxVersion, CodeVersion.normalize(version));
+        }
+
+        /**
+         * 構築中のコードを構築済みのコードに追加する。
+         */
+        private void flush() {
+            if (data.size() > 0) {
+                long start = nanoTime(collector);
+                codes.add(createCode(codeId, data));
+                if (collector != null) {
+                    collector.addCode(codeId, data, System.nanoTime() - start);
+                }
+                if (indexBuilder != null) {
+                    indexBuilder.add(codeId, data);
+                }
+                data.clear();
+            }
+        }
+
+        /**
+         * 追加された行のバージョンの最大値を取得する。
+         *
+         * @return バージョンの最大値。バージョンを持つ行がない場合はnull
+         */
+        private Object getMaxVersion() {
+            return maxVersion;
+        }
+
+        /**
+         * 追加された全ての行データを取得する。
+         *
+         * @return 行データ(保持しない場合はnull)
+         */
+        private List<CodeRow> getRows() {
+            return rows;
+        }
+
+        /**
+         * コードのListを構築する。
+         *
+         * @return コードのList
+         */
+        private List<Code> build() {
+            flush();
+            return Collections.unmodifiableList(codes);
         }
     }
 
     /**
-     * {@inheritDoc}<br/>
-     * <br/>
-     * 
-     * 本機能ではインデックスは提供しないためnullを返す。
+     * 設定に応じた表現でコードを作成する。
+     *
+     * @param codeId コードID
+     * @param data コードを構成するデータのList
+     * @return コード
      */
-    public List<Code> getValues(String indexName, Object key) {
-        return null;
+    private Code createCode(String codeId, List<CodeRow> data) {
+        Code code = compactCode ? new CompactCode(this, codeId, data) : new BasicCode(codeId, data);
+        return lookupStatistics == null ? code : lookupStatistics.wrap(code);
     }
 
     /**
-     * {@inheritDoc}
+     * コードに存在しない言語のうち、フォールバックが設定されている言語を、
+     * フォールバック先の言語の値に関連付ける。
+     *
+     * @param valuesMap 言語と言語毎に持つ値のMap
+     * @param <T> 言語毎に持つ値の型
      */
-    public List<Code> loadAll() {
-        SqlResultSet resultSet = new SimpleDbTransactionExecutor<SqlResultSet>(
-                dbManager) {
-            @Override
-            public SqlResultSet execute(AppDbConnection connection) {
-                SqlPStatement statement = connection.prepareStatement(
-                        selectAllStatement);
-                SqlResultSet results = statement.retrieve();
-                return results;
+    <T> void linkFallbackLocales(Map<Locale, T> valuesMap) {
+        if (localeFallbackChains.isEmpty()) {
+            return;
+        }
+        Map<Locale, T> linked = new HashMap<Locale, T>();
+        for (Map.Entry<Locale, List<Locale>> chain : localeFallbackChains.entrySet()) {
+            if (valuesMap.containsKey(chain.getKey())) {
+                continue;
             }
-        }.doTransaction();
-        return createResult(resultSet);
+            for (Locale fallback : chain.getValue()) {
+                T value = valuesMap.get(fallback);
+                if (value != null) {
+                    linked.put(chain.getKey(), value);
+                    break;
+                }
+            }
+        }
+        valuesMap.putAll(linked);
     }
 
     /**
-     * データベースの検索結果からBasicCodeのListを作成する。
-     * 
-     * @param queryResults データベースの検索結果
-     * @return BasicCodeのList
+     * 大文字小文字を区別せずに名前の配列から名前を検索する。
+     *
+     * @param names 検索対象の名前の配列
+     * @param name 検索する名前
+     * @return 見つかった位置。見つからない場合は-1
      */
-    private List<Code> createResult(SqlResultSet queryResults) {
-        List<Code> basicCodeList = new ArrayList<Code>();
-
-        String codeId = "";
-        List<SqlRow> data = new ArrayList<SqlRow>();
-        
-        for (SqlRow row : queryResults) {
-            String currentCodeId = row.getString(dbSchema.get("codeNameId"));
-            if (!codeId.equals(currentCodeId)) {
-                if (data.size() > 0) {
-                    basicCodeList.add(new BasicCode(codeId, data));
-                    data.clear();
-                }
-                codeId = currentCodeId;
-            }
-            data.add(row);
+    static int indexOfIgnoreCase(String[] names, String name) {
+        if (name == null) {
+            return -1;
         }
-
-        if (data.size() > 0) {
-            basicCodeList.add(new BasicCode(codeId, data));
+        for (int i = 0; i < names.length; i++) {
+            if (names[i].equalsIgnoreCase(name)) {
+                return i;
+            }
         }
-
-        return Collections.unmodifiableList(basicCodeList);
+        return -1;
     }
 
     /**
@@ -204,37 +1651,85 @@ public class BasicCodeLoader implements StaticDataLoader<Code>, Initializable {
      */
     private void initializeStatements() {
 
-        StringBuilder codePatternColumns = new StringBuilder();
-        for (String patternColumnName : patternColumnNames) {
-            codePatternColumns.append("$codePattern$.");
-            codePatternColumns.append(patternColumnName);
-            codePatternColumns.append(", ");
+        initializeFilter();
+
+        List<String> selectColumns = new ArrayList<String>();
+
+        int[] patternIndexes;
+        if (patternBitmask) {
+            String trueValueLiteral = "'" + patternTrueValue.replace("'", "''") + "'";
+            patternIndexes = new int[CodeRow.newPatternFlags(patternColumnNames.length).length];
+            StringBuilder flagsColumn = new StringBuilder();
+            for (int i = 0; i < patternColumnNames.length; i++) {
+                int bit = i % CodeRow.PATTERNS_PER_FLAG;
+                flagsColumn.append(bit == 0 ? "(" : " + ");
+                flagsColumn.append("CASE WHEN $codePattern$.");
+                flagsColumn.append(patternColumnNames[i]);
+                flagsColumn.append(" = ");
+                flagsColumn.append(trueValueLiteral);
+                flagsColumn.append(" THEN ");
+                flagsColumn.append(1L << bit);
+                flagsColumn.append(" ELSE 0 END");
+                if (bit == CodeRow.PATTERNS_PER_FLAG - 1 || i == patternColumnNames.length - 1) {
+                    flagsColumn.append(")");
+                    patternIndexes[i / CodeRow.PATTERNS_PER_FLAG] = addColumn(selectColumns, flagsColumn.toString());
+                    flagsColumn.setLength(0);
+                }
+            }
+        } else {
+            patternIndexes = new int[patternColumnNames.length];
+            for (int i = 0; i < patternColumnNames.length; i++) {
+                patternIndexes[i] = addColumn(selectColumns, "$codePattern$." + patternColumnNames[i]);
+            }
         }
 
-        StringBuilder optionNameColumns = new StringBuilder();
-        for (String optionNameColumn : optionNameColumnNames) {
-            codePatternColumns.append("$codeName$.");
-            codePatternColumns.append(optionNameColumn);
-            codePatternColumns.append(", ");
+        int[] optionNameIndexes = new int[optionNameColumnNames.length];
+        for (int i = 0; i < optionNameColumnNames.length; i++) {
+            optionNameIndexes[i] = addColumn(selectColumns, "$codeName$." + optionNameColumnNames[i]);
         }
-        
-        String preSelectStatement =
-           "SELECT "
-                + codePatternColumns
-                + optionNameColumns
-                + "$codeName$.$codeNameId$, "
-                + "$codeName$.$codeNameValue$, "
-                + "$codeName$.$codeNameLang$, "
-                + "$codeName$.$codeNameName$, "
-                + "$codeName$.$codeNameShortName$ "
+
+        int idIndex = addColumn(selectColumns, "$codeName$.$codeNameId$");
+        int valueIndex = addColumn(selectColumns, "$codeName$.$codeNameValue$");
+        int langIndex = addColumn(selectColumns, "$codeName$.$codeNameLang$");
+        int nameIndex = addColumn(selectColumns, "$codeName$.$codeNameName$");
+        int shortNameIndex = addColumn(selectColumns, "$codeName$.$codeNameShortName$");
+
+        List<Integer> versionIndexes = new ArrayList<Integer>();
+        List<String> changedIdQueries = new ArrayList<String>();
+        StringBuilder preStateStatement = new StringBuilder("SELECT COUNT(*)");
+        if (dbSchema.containsKey("codePatternVersion")) {
+            versionIndexes.add(addColumn(selectColumns, "$codePattern$.$codePatternVersion$"));
+            preStateStatement.append(", MAX($codePattern$.$codePatternVersion$)");
+            changedIdQueries.add("SELECT $codePattern$.$codePatternId$ FROM $codePattern$ "
+                    + "WHERE $codePattern$.$codePatternVersion$ > ?");
+        }
+        if (dbSchema.containsKey("codeNameVersion")) {
+            versionIndexes.add(addColumn(selectColumns, "$codeName$.$codeNameVersion$"));
+            preStateStatement.append(", MAX($codeName$.$codeNameVersion$)");
+            changedIdQueries.add("SELECT $codeName$.$codeNameId$ FROM $codeName$ "
+                    + "WHERE $codeName$.$codeNameVersion$ > ?");
+        }
+
+        rowDecoder = new CodeRowDecoder(patternBitmask, patternTrueValue,
+                patternColumnNames.length, patternIndexes, optionNameIndexes,
+                idIndex, valueIndex, langIndex, nameIndex, shortNameIndex, versionIndexes);
+
+        StringBuilder preSelectStatement = new StringBuilder("SELECT ");
+        for (int i = 0; i < selectColumns.size(); i++) {
+            if (i > 0) {
+                preSelectStatement.append(", ");
+            }
+            preSelectStatement.append(selectColumns.get(i));
+        }
+        String preFromStatement = " "
           + "FROM $codePattern$ "
               + "INNER JOIN $codeName$ "
                   + "ON $codePattern$.$codePatternId$ = $codeName$.$codeNameId$ "
                   + "AND $codePattern$.$codePatternValue$ = $codeName$.$codeNameValue$ ";
-
-        String preWhereStatement =
-            "WHERE "
-                + "$codePattern$.$codePatternId$ = ? ";
+        preSelectStatement.append(preFromStatement);
+        preStateStatement.append(preFromStatement);
+        preStateStatement.append(createWhereStatement(null));
+        selectTableStateStatement = replaceStatement(preStateStatement.toString());
 
         String preOrderByStatement =
             "ORDER BY "
@@ -242,12 +1737,156 @@ public class BasicCodeLoader implements StaticDataLoader<Code>, Initializable {
               + "$codeName$.$codeNameLang$, "
               + "$codeName$.$codeNameSortOrder$ ";
 
-        String selectStatement = replaceStatement(preSelectStatement);
-        String whereStatement = replaceStatement(preWhereStatement);
+        String selectStatement = replaceStatement(preSelectStatement.toString());
         String orderByStatement = replaceStatement(preOrderByStatement);
 
-        selectAllStatement = selectStatement + orderByStatement;
-        selectOneCodeStatement = selectStatement + whereStatement + orderByStatement;
+        selectAllStatement = selectStatement
+                + replaceStatement(createWhereStatement(null))
+                + orderByStatement;
+        selectOneCodeStatement = selectStatement
+                + replaceStatement(createWhereStatement("$codePattern$.$codePatternId$ = ?"))
+                + orderByStatement;
+
+        selectCodeIdsStatement = replaceStatement(
+                "SELECT DISTINCT $codeName$.$codeNameId$ FROM $codeName$ "
+                        + createWhereStatement(null)
+                        + "ORDER BY $codeName$.$codeNameId$");
+        selectCodeRangeStatement = selectStatement
+                + replaceStatement(createWhereStatement("$codePattern$.$codePatternId$ >= ? "
+                        + "AND $codePattern$.$codePatternId$ <= ?"))
+                + orderByStatement;
+
+        StringBuilder preInStatement = new StringBuilder("$codePattern$.$codePatternId$ IN (");
+        for (int i = 0; i < bulkLoadChunkSize; i++) {
+            preInStatement.append(i == 0 ? "?" : ", ?");
+        }
+        preInStatement.append(")");
+        selectCodesStatement = selectStatement
+                + replaceStatement(createWhereStatement(preInStatement.toString()))
+                + orderByStatement;
+
+        if (changedIdQueries.isEmpty()) {
+            selectChangedStatement = null;
+            changedStatementParamCount = 0;
+        } else {
+            StringBuilder preChangedCondition = new StringBuilder(
+                    "$codePattern$.$codePatternId$ IN (");
+            for (int i = 0; i < changedIdQueries.size(); i++) {
+                if (i > 0) {
+                    preChangedCondition.append(" UNION ");
+                }
+                preChangedCondition.append(changedIdQueries.get(i));
+            }
+            preChangedCondition.append(")");
+            selectChangedStatement = selectStatement
+                    + replaceStatement(createWhereStatement(preChangedCondition.toString()))
+                    + orderByStatement;
+            changedStatementParamCount = changedIdQueries.size();
+        }
+    }
+
+    /**
+     * ロード対象の絞り込み条件とバインド変数を初期化する。<br/>
+     * <br/>
+     * 絞り込み条件はコード名称テーブルのカラムのみを参照する。
+     * コード名称テーブルのみを検索するSQL文にも同じ条件を付加するためである。
+     */
+    private void initializeFilter() {
+        List<String> conditions = new ArrayList<String>();
+        List<Object> params = new ArrayList<Object>();
+        if (loadLocales != null) {
+            StringBuilder condition = new StringBuilder("$codeName$.$codeNameLang$ IN (");
+            for (int i = 0; i < loadLocales.size(); i++) {
+                condition.append(i == 0 ? "?" : ", ?");
+                params.add(loadLocales.get(i));
+            }
+            condition.append(")");
+            conditions.add(condition.toString());
+        }
+        if (!includeCodeIds.isEmpty() || !includeCodeIdPrefixes.isEmpty()) {
+            conditions.add("(" + createCodeIdCondition(includeCodeIds, includeCodeIdPrefixes, false, params) + ")");
+        }
+        if (!excludeCodeIds.isEmpty() || !excludeCodeIdPrefixes.isEmpty()) {
+            conditions.add(createCodeIdCondition(excludeCodeIds, excludeCodeIdPrefixes, true, params));
+        }
+        filterConditions = conditions;
+        filterParams = params.toArray();
+    }
+
+    /**
+     * コードIDの一致条件と前方一致条件を作成し、バインド変数を追加する。<br/>
+     * <br/>
+     * 一致させる場合は各条件をORで、除外する場合は各条件の否定をANDで結合する。
+     *
+     * @param codeIds コードID
+     * @param prefixes コードIDの前方一致条件
+     * @param exclude 条件に一致するコードを除外する場合true
+     * @param params バインド変数の追加先
+     * @return 条件(置き換え文字は置き換え前)
+     */
+    private static String createCodeIdCondition(List<String> codeIds, List<String> prefixes,
+            boolean exclude, List<Object> params) {
+        List<String> conditions = new ArrayList<String>();
+        if (!codeIds.isEmpty()) {
+            StringBuilder condition = new StringBuilder("$codeName$.$codeNameId$ ");
+            condition.append(exclude ? "NOT IN (" : "IN (");
+            for (int i = 0; i < codeIds.size(); i++) {
+                condition.append(i == 0 ? "?" : ", ?");
+                params.add(codeIds.get(i));
+            }
+            condition.append(")");
+            conditions.add(condition.toString());
+        }
+        for (String prefix : prefixes) {
+            conditions.add("$codeName$.$codeNameId$ " + (exclude ? "NOT LIKE" : "LIKE") + " ? ESCAPE '\\'");
+            params.add(prefix.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_") + "%");
+        }
+        StringBuilder joined = new StringBuilder();
+        for (int i = 0; i < conditions.size(); i++) {
+            if (i > 0) {
+                joined.append(exclude ? " AND " : " OR ");
+            }
+            joined.append(conditions.get(i));
+        }
+        return joined.toString();
+    }
+
+    /**
+     * ロード対象の絞り込み条件と指定した条件をANDで結合したWHERE句を作成する。<br/>
+     * <br/>
+     * バインド変数は絞り込み条件、指定した条件の順に設定する必要がある。
+     *
+     * @param condition 絞り込み条件に追加する条件(追加しない場合はnull)
+     * @return WHERE句(置き換え文字は置き換え前)。条件がない場合は空文字
+     */
+    private String createWhereStatement(String condition) {
+        List<String> conditions = new ArrayList<String>(filterConditions);
+        if (condition != null) {
+            conditions.add(condition);
+        }
+        if (conditions.isEmpty()) {
+            return "";
+        }
+        StringBuilder where = new StringBuilder("WHERE ");
+        for (int i = 0; i < conditions.size(); i++) {
+            if (i > 0) {
+                where.append("AND ");
+            }
+            where.append(conditions.get(i)).append(' ');
+        }
+        return where.toString();
+    }
+
+    /**
+     * SELECT句にカラムを追加する。
+     *
+     * @param selectColumns SELECT句のカラム
+     * @param column 追加するカラム
+     * @return 追加したカラムの位置(1始まり)
+     */
+    private static int addColumn(List<String> selectColumns, String column) {
+        selectColumns.add(column);
+        return selectColumns.size();
     }
 
     /**
@@ -255,6 +1894,23 @@ public class BasicCodeLoader implements StaticDataLoader<Code>, Initializable {
      */
     public void initialize() {
         initializeStatements();
+        snapshotLayout = "patterns=" + Arrays.toString(patternColumnNames)
+                + ";options=" + Arrays.toString(optionNameColumnNames);
+        if (!filterConditions.isEmpty()) {
+            // 絞り込み条件が異なるスナップショットは使用しない
+            snapshotLayout += ";filter=" + filterConditions + Arrays.toString(filterParams);
+        }
+        snapshotPending.set(snapshotFilePath != null);
+        if (snapshotFilePath != null && snapshotStaleCheck) {
+            if (hasVersionColumn()) {
+                // スナップショットに保存できないバージョンの型は、常に不一致と判定されるため起動時に検出する
+                loadTableState();
+            } else {
+                LOGGER.logWarn("version column was not configured. snapshot stale check compares only the row count, "
+                        + "so updates that do not change the row count are not detected. "
+                        + "set versionColumnName to CodeNameSchema or CodePatternSchema.");
+            }
+        }
     }
 
     /**
@@ -279,7 +1935,7 @@ public class BasicCodeLoader implements StaticDataLoader<Code>, Initializable {
      * ロードするコードの実装。
      * 
      */
-    private final class BasicCode implements Code {
+    private final class BasicCode extends AbstractExtendedCode {
 
         /**
          * コンストラクタ。
@@ -289,190 +1945,236 @@ public class BasicCodeLoader implements StaticDataLoader<Code>, Initializable {
          * @param data コードを構成するデータのList。<br/>
          *              データは言語を第1の条件としてソートされている必要がある。
          */
-        private BasicCode(String codeId, List<SqlRow> data) {
-            
-            this.codeId = codeId;
-
-            parLangValuesMap = new HashMap<Locale, PerLangValues>();
-     
-            List<SqlRow> langData = new ArrayList<SqlRow>();
-            String lang = "";
-
-            for (SqlRow row : data) {
-                String currentLang = row.getString(dbSchema.get("codeNameLang"));
-                if (!lang.equals(currentLang)) {
-                    if (langData.size() > 0) {
-                        PerLangValues value = new PerLangValues(langData);
-                        parLangValuesMap.put(I18NUtil.createLocale(lang), value);
-                        langData.clear();
-                    }
+        private BasicCode(String codeId, List<CodeRow> data) {
+            super(codeId);
 
-                    lang = currentLang;
-                }
-                langData.add(row);
-            }
-
-            PerLangValues value = new PerLangValues(langData);
-            parLangValuesMap.put(I18NUtil.createLocale(lang), value);
+            parLangValuesMap = new HashMap<Locale, LangValuesSlot>();
 
             // containsの情報は、全言語文取得
             values = new HashSet<String>();
-            patternValuesMap = new CaseInsensitiveMap<Set<String>>();
-            for (PerLangValues parLangValues : parLangValuesMap.values()) {
-                values.addAll(parLangValues.values);
-
-                for (String pattern : patternColumnNames) {
-                    pattern = pattern.toLowerCase();
-                    if (!patternValuesMap.containsKey(pattern)) {
-                        patternValuesMap.put(pattern, new HashSet<String>());
+            patternValueSets = new ArrayList<Set<String>>(patternColumnNames.length);
+            for (int i = 0; i < patternColumnNames.length; i++) {
+                patternValueSets.add(new HashSet<String>());
+            }
+
+            int langStart = 0;
+            for (int i = 0; i < data.size(); i++) {
+                CodeRow row = data.get(i);
+                values.add(row.getValue());
+                for (int j = 0; j < patternColumnNames.length; j++) {
+                    if (row.isPatternValid(j)) {
+                        patternValueSets.get(j).add(row.getValue());
                     }
-                    patternValuesMap.get(pattern).addAll(parLangValues.patternMap.get(pattern));
                 }
-            }
 
+                if (i == data.size() - 1 || !row.getLang().equals(data.get(i + 1).getLang())) {
+                    List<CodeRow> langData = data.subList(langStart, i + 1);
+                    Locale locale = I18NUtil.createLocale(row.getLang());
+                    if (lazyLangValues && !eagerLocales.contains(locale)) {
+                        // 構築元のListは再利用されるため、行データを複製して保持する
+                        parLangValuesMap.put(locale, new LangValuesSlot(langData.toArray(new CodeRow[langData.size()])));
+                    } else {
+                        parLangValuesMap.put(locale, new LangValuesSlot(new PerLangValues(langData)));
+                    }
+                    langStart = i + 1;
+                }
+            }
 
+            linkFallbackLocales(parLangValuesMap);
         }
 
-        /** コードID */
-        private final String codeId;
-
         /** 言語と言語毎に持つ値のMap */
-        private final Map<Locale, PerLangValues> parLangValuesMap;
+        private final Map<Locale, LangValuesSlot> parLangValuesMap;
 
         /** コードに含まれるコード値のセット */
         private final Set<String> values;
 
-        /** パターンに含まれる値のセット */
-        private final Map<String, Set<String>> patternValuesMap;
+        /** パターン毎の、パターンに含まれる値のセット(パターンカラムの並び) */
+        private final List<Set<String>> patternValueSets;
 
         /**
          * {@inheritDoc}
          */
-        public String getCodeId() {
-            return codeId;
+        public boolean contains(String value) {
+            return values.contains(value);
+        }
+        
+        /**
+         * {@inheritDoc}
+         */
+        public int patternHandle(String pattern) {
+            return indexOfIgnoreCase(patternColumnNames, pattern);
         }
 
         /**
          * {@inheritDoc}
          */
-        public boolean contains(String value) {
-            return values.contains(value);
+        public int optionHandle(String optionColumnName) {
+            return indexOfIgnoreCase(optionNameColumnNames, optionColumnName);
         }
-        
+
         /**
          * {@inheritDoc}
          */
-        public boolean contains(String pattern, String value) {
-            Set<String> patternValues = patternValuesMap.get(pattern);
-            if (patternValues == null) {
-                throw new IllegalArgumentException("pattern was not found. "
-                        + "code id = " + codeId
-                        + ", pattern = " + pattern);
+        public boolean isInPattern(int patternHandle, String value) {
+            if (patternHandle < 0 || patternHandle >= patternValueSets.size()) {
+                return false;
             }
-            return patternValues.contains(value);
+            return patternValueSets.get(patternHandle).contains(value);
+        }
+
+        /**
+         * 言語毎に持つ値を取得する。値が構築されていない場合は構築する。
+         *
+         * @param locale 言語
+         * @return 言語毎に持つ値。言語が存在しない場合はnull
+         */
+        private PerLangValues findPerLangValues(Locale locale) {
+            LangValuesSlot slot = parLangValuesMap.get(locale);
+            return slot == null ? null : slot.get();
         }
 
         /**
          * {@inheritDoc}
          */
-        public String getName(String value, Locale locale) {
-            PerLangValues perLangValues = parLangValuesMap.get(locale);
-            if (perLangValues == null) {
-                throw new IllegalArgumentException("locale was not found. "
-                        + "code id = " + codeId
-                        + ", locale = " + locale);
-            }
-            String name = perLangValues.names.get(value);
-            if (name == null) {
-                throw new IllegalArgumentException("name was not found. "
-                        + "code id = " + codeId
-                        + ", locale = " + locale
-                        + ", value = " + value);
-            }
-            return name;
+        @Override
+        boolean hasLocale(Locale locale) {
+            return parLangValuesMap.containsKey(locale);
         }
 
         /**
          * {@inheritDoc}
          */
-        public String getShortName(String value, Locale locale) {
-            PerLangValues parLangValues = parLangValuesMap.get(locale);
-            if (parLangValues == null) {
-                throw new IllegalArgumentException("locale was not found. "
-                        + "code id = " + codeId
-                        + ", locale = " + locale);
-            }
-            String shortName = parLangValues.shortNames.get(value);
-            if (shortName == null) {
-                throw new IllegalArgumentException("short name was not found. "
-                        + "code id = " + codeId
-                        + ", locale = " + locale
-                        + ", value = " + value);
-            }
-            return shortName;
+        public String findName(String value, Locale locale) {
+            PerLangValues perLangValues = findPerLangValues(locale);
+            return perLangValues == null ? null : perLangValues.names.get(value);
         }
 
         /**
          * {@inheritDoc}
          */
-        public String getOptionalName(String value, String optionColumnName,
-                Locale locale) {
-            PerLangValues parLangValues = parLangValuesMap.get(locale);
-            if (parLangValues == null) {
-                throw new IllegalArgumentException("locale was not found. "
-                        + "code id = " + codeId
-                        + ", locale = " + locale);
-            }
-            Map<String, String> valueMap = parLangValues.optionNamesMap.get(optionColumnName);
+        public String findShortName(String value, Locale locale) {
+            PerLangValues perLangValues = findPerLangValues(locale);
+            return perLangValues == null ? null : perLangValues.shortNames.get(value);
+        }
 
-            if (valueMap == null) {
-                throw new IllegalArgumentException("option name was not found. "
-                        + "code id = " + codeId
-                        + ", locale = " + locale
-                        + ", value = " + value);
-            }
-            String optionName = valueMap.get(value);
-            if (optionName == null) {
-                throw new IllegalArgumentException("option name was not found. "
-                        + "code id = " + codeId
-                        + ", locale = " + locale
-                        + ", value = " + value
-                        + ", option name = " + optionColumnName);
+        /**
+         * {@inheritDoc}
+         */
+        public String findOptionalName(String value, int optionHandle, Locale locale) {
+            PerLangValues perLangValues = findPerLangValues(locale);
+            if (perLangValues == null || optionHandle < 0 || optionHandle >= perLangValues.optionNamesList.size()) {
+                return null;
             }
-            return optionName;
+            return perLangValues.optionNamesList.get(optionHandle).get(value);
         }
 
         /**
          * {@inheritDoc}
          */
-        public List<String> getValues(Locale locale) {
-            PerLangValues parLangValues = parLangValuesMap.get(locale);
-            if (parLangValues == null) {
-                throw new IllegalArgumentException("locale was not found. "
-                        + "code id = " + codeId
-                        + ", locale = " + locale);
-            }
-            return parLangValues.values;
+        public List<String> findValues(Locale locale) {
+            PerLangValues perLangValues = findPerLangValues(locale);
+            return perLangValues == null ? null : perLangValues.values;
         }
 
         /**
          * {@inheritDoc}
          */
-        public List<String> getValues(String pattern, Locale locale) {
-            PerLangValues parLangValues = parLangValuesMap.get(locale);
-            if (parLangValues == null) {
-                throw new IllegalArgumentException("locale was not found. "
-                        + "code id = " + codeId
-                        + ", locale = " + locale);
+        public List<String> findValues(int patternHandle, Locale locale) {
+            PerLangValues perLangValues = findPerLangValues(locale);
+            if (perLangValues == null || patternHandle < 0 || patternHandle >= perLangValues.patternLists.size()) {
+                return null;
             }
-            List<String> values = parLangValues.patternMap.get(pattern);
-            if (values == null) {
-                throw new IllegalArgumentException("pattern was not found. "
-                        + "code id = " + codeId
-                        + ", locale = " + locale
-                        + ", pattern = " + pattern);
+            return perLangValues.patternLists.get(patternHandle);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        public int indexOf(String value, Locale locale) {
+            PerLangValues perLangValues = findPerLangValues(locale);
+            Integer position = perLangValues == null ? null : perLangValues.positions.get(value);
+            return position == null ? -1 : position;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        public String findValueByName(String name, Locale locale) {
+            PerLangValues perLangValues = findPerLangValues(locale);
+            return perLangValues == null ? null : perLangValues.getReverseIndex().findValueByName(name);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        public String findValueByShortName(String shortName, Locale locale) {
+            PerLangValues perLangValues = findPerLangValues(locale);
+            return perLangValues == null ? null : perLangValues.getReverseIndex().findValueByShortName(shortName);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        String findValueByOptionalName(String optionalName, int optionHandle, Locale locale) {
+            PerLangValues perLangValues = findPerLangValues(locale);
+            return perLangValues == null ? null
+                    : perLangValues.getReverseIndex().findValueByOptionalName(optionalName, optionHandle);
+        }
+    }
+
+    /**
+     * 言語毎に持つ値を、最初に参照された時に構築して保持するクラス。<br/>
+     * <br/>
+     * 構築した値はvolatileフィールドで公開するため、複数のスレッドから同時に参照しても
+     * 値の構築は1回のみ行われ、構築途中の値が参照されることはない。
+     * 構築後は行データへの参照を解放する。
+     */
+    private final class LangValuesSlot {
+
+        /** 値の構築に使用する行データ(構築後はnull) */
+        private CodeRow[] rows;
+
+        /** 構築した値 */
+        private volatile PerLangValues langValues;
+
+        /**
+         * 値を参照時に構築するコンストラクタ。
+         *
+         * @param rows 値の構築に使用する行データ
+         */
+        private LangValuesSlot(CodeRow[] rows) {
+            this.rows = rows;
+        }
+
+        /**
+         * 構築済みの値を保持するコンストラクタ。
+         *
+         * @param langValues 言語毎に持つ値
+         */
+        private LangValuesSlot(PerLangValues langValues) {
+            this.langValues = langValues;
+        }
+
+        /**
+         * 言語毎に持つ値を取得する。値が構築されていない場合は構築する。
+         *
+         * @return 言語毎に持つ値
+         */
+        private PerLangValues get() {
+            PerLangValues result = langValues;
+            if (result == null) {
+                synchronized (this) {
+                    result = langValues;
+                    if (result == null) {
+                        result = new PerLangValues(Arrays.asList(rows));
+                        langValues = result;
+                        rows = null;
+                    }
+                }
             }
-            return values;
+            return result;
         }
     }
 
@@ -487,9 +2189,9 @@ public class BasicCodeLoader implements StaticDataLoader<Code>, Initializable {
         private final List<String> values;
 
         /**
-         * パターン毎のコード値のListを保持するMap。
+         * パターン毎のコード値のList(パターンカラムの並び)。
          */
-        private final Map<String, List<String>> patternMap;
+        private final List<List<String>> patternLists;
 
         /**
          * 名称を保持するMap。<br/>
@@ -510,13 +2212,25 @@ public class BasicCodeLoader implements StaticDataLoader<Code>, Initializable {
         private final Map<String, String> shortNames;
 
         /**
-         * コードのオプション名称を保持するMap。<br/>
+         * オプション名称カラム毎に、コードのオプション名称を保持するMap(オプション名称カラムの並び)。<br/>
          * <br/>
          * key:コード値<br/>
          * value:コードのオプション名称<br/>
          * 
          */
-        private final Map<String, Map<String, String>> optionNamesMap;
+        private final List<Map<String, String>> optionNamesList;
+
+        /**
+         * ソート順での位置を保持するMap。<br/>
+         * <br/>
+         * key:コード値<br/>
+         * value:valuesでの位置<br/>
+         * 
+         */
+        private final Map<String, Integer> positions;
+
+        /** 名称などからコード値を逆引きする索引(最初の逆引き時に作成する) */
+        private volatile ReverseIndex reverseIndex;
 
 
         /**
@@ -525,56 +2239,83 @@ public class BasicCodeLoader implements StaticDataLoader<Code>, Initializable {
          * @param data コードを構成するデータのList。<br/>
          *              データはソート順を第1の条件としてソートされている必要がある。
          */
-        private PerLangValues(List<SqlRow> data) {
+        private PerLangValues(List<CodeRow> data) {
 
             List<String> tmpValues = new ArrayList<String>();
 
             Map<String, String> tmpNames = new HashMap<String, String>();
             Map<String, String> tmpShortNames = new HashMap<String, String>();
+            Map<String, Integer> tmpPositions = new HashMap<String, Integer>();
 
-            Map<String, Map<String, String>> tmpOptionNamesMap = new CaseInsensitiveMap<Map<String, String>>();
-            for (String optionName : optionNameColumnNames) {
-                tmpOptionNamesMap.put(optionName.toLowerCase(), new HashMap<String, String>());
+            List<Map<String, String>> tmpOptionNamesList = new ArrayList<Map<String, String>>(optionNameColumnNames.length);
+            for (int i = 0; i < optionNameColumnNames.length; i++) {
+                tmpOptionNamesList.add(new HashMap<String, String>());
             }
 
-            Map<String, List<String>> tmpPatternMap = new CaseInsensitiveMap<List<String>>();
-            for (String patternName : patternColumnNames) {
-                tmpPatternMap.put(patternName.toLowerCase(), new ArrayList<String>());
+            List<List<String>> tmpPatternLists = new ArrayList<List<String>>(patternColumnNames.length);
+            for (int i = 0; i < patternColumnNames.length; i++) {
+                tmpPatternLists.add(new ArrayList<String>());
             }
 
-            for (SqlRow row : data) {
-                String value = row.getString(dbSchema.get("codeNameValue"));
+            for (CodeRow row : data) {
+                String value = row.getValue();
+                tmpPositions.put(value, tmpValues.size());
                 tmpValues.add(value);
-                tmpNames.put(value, row.getString(dbSchema.get("codeNameName")));
-                tmpShortNames.put(value, row.getString(dbSchema.get("codeNameShortName")));
+                tmpNames.put(value, row.getName());
+                tmpShortNames.put(value, row.getShortName());
 
-                for (String optionName : optionNameColumnNames) {
-                    tmpOptionNamesMap.get(optionName).put(value, row.getString(optionName));
+                for (int i = 0; i < optionNameColumnNames.length; i++) {
+                    tmpOptionNamesList.get(i).put(value, row.getOptionName(i));
                 }
 
-                for (String patternName : patternColumnNames) {
-
-                    String patternIsValid = row.getString(patternName);
-                    if ("1".equals(patternIsValid)) {
-                        tmpPatternMap.get(patternName).add(value);
+                for (int i = 0; i < patternColumnNames.length; i++) {
+                    if (row.isPatternValid(i)) {
+                        tmpPatternLists.get(i).add(value);
                     }
                 }
 
             }
 
-            for (Map.Entry<String, Map<String, String>> entry : tmpOptionNamesMap.entrySet()) {
-                entry.setValue(Collections.unmodifiableMap(entry.getValue()));
+            for (int i = 0; i < tmpOptionNamesList.size(); i++) {
+                tmpOptionNamesList.set(i, Collections.unmodifiableMap(tmpOptionNamesList.get(i)));
             }
 
-            for (Map.Entry<String, List<String>> entry : tmpPatternMap.entrySet()) {
-                entry.setValue(Collections.unmodifiableList(entry.getValue()));
+            for (int i = 0; i < tmpPatternLists.size(); i++) {
+                tmpPatternLists.set(i, Collections.unmodifiableList(tmpPatternLists.get(i)));
             }
 
             this.values = Collections.unmodifiableList(tmpValues);
             this.names = Collections.unmodifiableMap(tmpNames);
             this.shortNames = Collections.unmodifiableMap(tmpShortNames);
-            this.optionNamesMap = Collections.unmodifiableMap(tmpOptionNamesMap);
-            this.patternMap = tmpPatternMap;
+            this.positions = tmpPositions;
+            this.optionNamesList = tmpOptionNamesList;
+            this.patternLists = tmpPatternLists;
+        }
+
+        /**
+         * 名称などからコード値を逆引きする索引を取得する。索引が作成されていない場合は作成する。
+         *
+         * @return 逆引きする索引
+         */
+        private ReverseIndex getReverseIndex() {
+            ReverseIndex result = reverseIndex;
+            if (result == null) {
+                synchronized (this) {
+                    result = reverseIndex;
+                    if (result == null) {
+                        result = new ReverseIndex(optionNameColumnNames.length);
+                        String[] optionNames = new String[optionNameColumnNames.length];
+                        for (String value : values) {
+                            for (int i = 0; i < optionNameColumnNames.length; i++) {
+                                optionNames[i] = optionNamesList.get(i).get(value);
+                            }
+                            result.add(value, names.get(value), shortNames.get(value), optionNames);
+                        }
+                        reverseIndex = result;
+                    }
+                }
+            }
+            return result;
         }
     }
 }
@@ -0,0 +1,30 @@
+package nablarch.common.code;
+
+import java.util.List;
+
+/**
+ * コードの更新を受け取るインタフェース。
+ *
+ * @see CodeChangeWatcher
+ */
+public interface CodeChangeListener {
+
+    /**
+     * 更新されたコードを受け取る。<br/>
+     * <br/>
+     * 更新されていないコードは引き続き有効である。
+     *
+     * @param changedCodes 更新されたコードのList
+     */
+    void codesChanged(List<Code> changedCodes);
+
+    /**
+     * 全てのコードを受け取る。<br/>
+     * <br/>
+     * 行の削除を検知した場合など、差分では更新できない場合に呼び出される。
+     * 引数に含まれないコードは削除されている。
+     *
+     * @param allCodes 全てのコードのList
+     */
+    void codesReloaded(List<Code> allCodes);
+}
@@ -0,0 +1,245 @@
+package nablarch.common.code;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import nablarch.core.log.Logger;
+import nablarch.core.log.LoggerManager;
+import nablarch.core.repository.initialization.Initializable;
+
+/**
+ * コードテーブルの更新を定期的に検知し、更新されたコードをリスナに通知するクラス。<br/>
+ * <br/>
+ * バックグラウンドのスレッドで、コードパターンテーブルとコード名称テーブルを結合した行数と
+ * バージョンカラムの最大値を1回のSQL文で取得し、前回から変化している場合のみ
+ * {@link BasicCodeLoader#loadChanged()}で更新されたコードをロードする。
+ * クラスタ内の各ノードは、ポーリング間隔以内に更新後のコードに収束する。<br/>
+ * <br/>
+ * 行の削除は差分では検知できないため、結合した行数が減少した場合は全てのコードをロードし直して
+ * {@link CodeChangeListener#codesReloaded(List)}で通知する。
+ * ローダがハイウォーターマークを保持していない場合(まだロードしていない場合)も、
+ * 全てのコードをロードして{@link CodeChangeListener#codesReloaded(List)}で通知する。
+ * 削除と追加が同時に行われ行数が変化しない場合は削除を検知できない
+ * (追加した行と同じコードの削除は、コード全体をロードし直すため反映される)。
+ * 行を削除する場合はコードを構成する他の行のバージョンを更新するか、
+ * {@link #setFullReloadInterval(long)}で定期的に全てのコードをロードし直すこと。<br/>
+ * <br/>
+ * ポーリングはデーモンスレッドで実行するが、アプリケーションの終了時やローダを破棄する際は
+ * {@link #stop()}を呼び出してスレッドを停止すること。
+ * 本モジュールが依存するコンポーネント定義の仕組みには破棄時のコールバックがないため、
+ * 終了処理(サーブレットコンテキストの破棄時など)から明示的に呼び出す必要がある。<br/>
+ * <br/>
+ * {@link #setCodeLoader(BasicCodeLoader)}に設定するローダは、バージョンカラムを設定し、本クラスより先に初期化しておく必要がある。
+ * バージョンカラムの値は、{@link BasicCodeLoader#loadChanged()}の制約の通りコミット順に大きくなる整数である必要がある。
+ */
+public class CodeChangeWatcher implements Initializable {
+
+    /** ロガー */
+    private static final Logger LOGGER = LoggerManager.get(CodeChangeWatcher.class);
+
+    /** コードをロードするローダ */
+    private BasicCodeLoader codeLoader;
+
+    /** 更新を通知するリスナ */
+    private List<CodeChangeListener> listeners = Collections.emptyList();
+
+    /** ポーリング間隔(ミリ秒) */
+    private long pollingInterval = 30000;
+
+    /** 全てのコードをロードし直す間隔(ミリ秒、0以下の場合はロードし直さない) */
+    private long fullReloadInterval = 0;
+
+    /** ポーリングを実行するスレッド */
+    private ScheduledExecutorService executor;
+
+    /** 最後に全てのコードをロードし直した時刻(ナノ秒) */
+    private long lastFullReload;
+
+    /** 前回のポーリング時の行の状態 */
+    private CodeTableState lastState;
+
+    /**
+     * コードをロードするローダを設定する。
+     *
+     * @param codeLoader コードをロードするローダ
+     */
+    public void setCodeLoader(BasicCodeLoader codeLoader) {
+        this.codeLoader = codeLoader;
+    }
+
+    /**
+     * 更新を通知するリスナを設定する。
+     *
+     * @param listeners 更新を通知するリスナ
+     */
+    public void setListeners(List<CodeChangeListener> listeners) {
+        this.listeners = new ArrayList<CodeChangeListener>(listeners);
+    }
+
+    /**
+     * ポーリング間隔(ミリ秒)を設定する。<br/>
+     * <br/>
+     * デフォルトは30000(30秒)。
+     *
+     * @param pollingInterval ポーリング間隔(ミリ秒)
+     */
+    public void setPollingInterval(long pollingInterval) {
+        if (pollingInterval < 1) {
+            throw new IllegalArgumentException("pollingInterval must be greater than 0. "
+                    + "pollingInterval = " + pollingInterval);
+        }
+        this.pollingInterval = pollingInterval;
+    }
+
+    /**
+     * 全てのコードをロードし直す間隔(ミリ秒)を設定する。<br/>
+     * <br/>
+     * 設定した場合、前回のロードし直しから間隔以上経過した後のポーリングでは、
+     * 差分ではなく全てのコードをロードし直して{@link CodeChangeListener#codesReloaded(List)}で通知する。
+     * 行数が変化しない削除など、差分では検知できない更新を間隔以内に反映するために使用する。
+     * デフォルトは0(ロードし直さない)。
+     *
+     * @param fullReloadInterval 全てのコードをロードし直す間隔(ミリ秒)。0以下の場合はロードし直さない
+     */
+    public void setFullReloadInterval(long fullReloadInterval) {
+        this.fullReloadInterval = fullReloadInterval;
+    }
+
+    /**
+     * 現在の行の状態を記録し、ポーリングを開始する。<br/>
+     * <br/>
+     * ローダがまだコードをロードしていない場合は、現在のバージョンカラムの最大値以前の更新は通知しない。
+     *
+     * @throws IllegalStateException ローダが設定されていない場合や、ローダにバージョンカラムが設定されていない場合、
+     *                               バージョンカラムの値が整数でない場合
+     */
+    public synchronized void initialize() {
+        if (codeLoader == null) {
+            throw new IllegalStateException("codeLoader was not set. set BasicCodeLoader to codeLoader.");
+        }
+        if (!codeLoader.hasVersionColumn()) {
+            throw new IllegalStateException("version column was not configured. "
+                    + "set versionColumnName to CodeNameSchema or CodePatternSchema.");
+        }
+        stop();
+
+        lastState = codeLoader.loadTableState();
+        CodeVersion.checkCommitOrdered(lastState.getMaxVersion());
+        codeLoader.initializeHighWaterMark(lastState.getMaxVersion());
+        lastFullReload = System.nanoTime();
+
+        executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "code-change-watcher");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        executor.scheduleWithFixedDelay(new Runnable() {
+            public void run() {
+                try {
+                    poll();
+                } catch (RuntimeException e) {
+                    // 次回のポーリングを継続するため、例外は送出しない
+                    LOGGER.logWarn("failed to poll code changes.", e);
+                }
+            }
+        }, pollingInterval, pollingInterval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * ポーリングを停止する。<br/>
+     * <br/>
+     * アプリケーションの終了時に必ず呼び出すこと。
+     */
+    public synchronized void stop() {
+        if (executor != null) {
+            executor.shutdownNow();
+            executor = null;
+        }
+    }
+
+    /**
+     * コードテーブルの更新を確認し、更新されている場合はリスナに通知する。<br/>
+     * <br/>
+     * 通常はバックグラウンドのスレッドから呼び出されるが、即座に更新を反映したい場合は直接呼び出してもよい。
+     */
+    public synchronized void poll() {
+        CodeTableState state = codeLoader.loadTableState();
+        CodeTableState previous = lastState;
+        lastState = state;
+
+        if (fullReloadInterval > 0
+                && System.nanoTime() - lastFullReload >= TimeUnit.MILLISECONDS.toNanos(fullReloadInterval)) {
+            List<Code> codes = codeLoader.loadAll();
+            if (LOGGER.isInfoEnabled()) {
+                LOGGER.logInfo("full reload interval elapsed. all codes were reloaded. code count = " + codes.size());
+            }
+            fireCodesReloaded(codes);
+            return;
+        }
+        if (previous != null && state.getRowCount() < previous.getRowCount()) {
+            List<Code> codes = codeLoader.loadAll();
+            if (LOGGER.isInfoEnabled()) {
+                LOGGER.logInfo("code rows were deleted. all codes were reloaded. code count = " + codes.size());
+            }
+            fireCodesReloaded(codes);
+            return;
+        }
+
+        Object highWaterMark = codeLoader.getHighWaterMark();
+        if (!isNewer(state.getMaxVersion(), highWaterMark)) {
+            return;
+        }
+        if (highWaterMark == null) {
+            // 差分の基準がないため、loadChangedは全件ロードとなる。差分ではなく全件の置き換えとして通知する。
+            List<Code> codes = codeLoader.loadAll();
+            if (LOGGER.isInfoEnabled()) {
+                LOGGER.logInfo("high-water mark was not set. all codes were reloaded. code count = " + codes.size());
+            }
+            fireCodesReloaded(codes);
+            return;
+        }
+        List<Code> changedCodes = codeLoader.loadChanged();
+        if (changedCodes.isEmpty()) {
+            return;
+        }
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.logDebug("codes were changed. changed code count = " + changedCodes.size());
+        }
+        for (CodeChangeListener listener : listeners) {
+            listener.codesChanged(changedCodes);
+        }
+    }
+
+    /**
+     * 全てのコードをロードし直したことをリスナに通知する。
+     *
+     * @param codes 全てのコード
+     */
+    private void fireCodesReloaded(List<Code> codes) {
+        lastFullReload = System.nanoTime();
+        for (CodeChangeListener listener : listeners) {
+            listener.codesReloaded(codes);
+        }
+    }
+
+    /**
+     * バージョンが基準より新しいか否かを判定する。
+     *
+     * @param version バージョン
+     * @param since 基準のバージョン
+     * @return バージョンが基準より新しい場合true
+     */
+    private static boolean isNewer(Object version, Object since) {
+        if (version == null) {
+            return false;
+        }
+        return since == null || CodeVersion.compare(version, since) > 0;
+    }
+}
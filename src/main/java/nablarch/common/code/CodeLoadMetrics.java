@@ -0,0 +1,373 @@
+package nablarch.common.code;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 複数のコードのロード処理の計測結果。<br/>
+ * <br/>
+ * 処理時間は以下のフェーズ毎に計測する。並列ロードの場合は、各スレッドの処理時間の合計となる。
+ * <ul>
+ * <li>query: SQL文の実行(検索結果の最初の行を取得できるまで)</li>
+ * <li>fetch: 検索結果の行の取得と変換</li>
+ * <li>grouping: 行データのコード毎のグループ化(コードの構築を除く)</li>
+ * <li>construction: コードの構築(コード値毎の名称などの構築)</li>
+ * </ul>
+ * ヒープ使用量はロードした文字列の長さと行数から算出した推定値であり、実際の使用量とは異なる。
+ */
+public final class CodeLoadMetrics {
+
+    /** 処理の種類 */
+    private final String operation;
+
+    /** 全体の処理時間(ナノ秒) */
+    private final long totalNanos;
+
+    /** SQL文の実行時間(ナノ秒) */
+    private final long queryNanos;
+
+    /** 検索結果の取得時間(ナノ秒) */
+    private final long fetchNanos;
+
+    /** グループ化の処理時間(ナノ秒) */
+    private final long groupingNanos;
+
+    /** コードの構築時間(ナノ秒) */
+    private final long constructionNanos;
+
+    /** 行数 */
+    private final long rowCount;
+
+    /** コードの数 */
+    private final long codeCount;
+
+    /** 言語の数 */
+    private final int localeCount;
+
+    /** パターンの数 */
+    private final int patternCount;
+
+    /** ヒープ使用量の推定値(バイト) */
+    private final long estimatedBytes;
+
+    /** 推定ヒープ使用量が最も大きいコードのコードID */
+    private final String largestCodeId;
+
+    /** 推定ヒープ使用量が最も大きいコードの推定ヒープ使用量(バイト) */
+    private final long largestCodeEstimatedBytes;
+
+    /**
+     * コンストラクタ。
+     *
+     * @param collector 計測値を収集したオブジェクト
+     * @param totalNanos 全体の処理時間(ナノ秒)
+     * @param patternCount パターンの数
+     */
+    private CodeLoadMetrics(Collector collector, long totalNanos, int patternCount) {
+        operation = collector.operation;
+        this.totalNanos = totalNanos;
+        queryNanos = collector.queryNanos.get();
+        fetchNanos = collector.fetchNanos.get();
+        constructionNanos = collector.constructionNanos.get();
+        groupingNanos = Math.max(0L, collector.handleNanos.get() - constructionNanos);
+        rowCount = collector.rowCount.get();
+        codeCount = collector.codeCount.get();
+        this.patternCount = patternCount;
+        synchronized (collector) {
+            localeCount = collector.langs.size();
+            estimatedBytes = collector.estimatedBytes;
+            largestCodeId = collector.largestCodeId;
+            largestCodeEstimatedBytes = collector.largestCodeEstimatedBytes;
+        }
+    }
+
+    /**
+     * 処理の種類を取得する。
+     *
+     * @return 処理の種類("loadAll"、"snapshot"、"loadChanged"、"getValues"のいずれか)
+     */
+    public String getOperation() {
+        return operation;
+    }
+
+    /**
+     * 全体の処理時間を取得する。
+     *
+     * @return 全体の処理時間(ナノ秒)
+     */
+    public long getTotalNanos() {
+        return totalNanos;
+    }
+
+    /**
+     * SQL文の実行時間を取得する。
+     *
+     * @return SQL文の実行時間(ナノ秒)
+     */
+    public long getQueryNanos() {
+        return queryNanos;
+    }
+
+    /**
+     * 検索結果の行の取得と変換の処理時間を取得する。
+     *
+     * @return 検索結果の取得時間(ナノ秒)
+     */
+    public long getFetchNanos() {
+        return fetchNanos;
+    }
+
+    /**
+     * 行データのグループ化の処理時間を取得する。
+     *
+     * @return グループ化の処理時間(ナノ秒)
+     */
+    public long getGroupingNanos() {
+        return groupingNanos;
+    }
+
+    /**
+     * コードの構築時間を取得する。
+     *
+     * @return コードの構築時間(ナノ秒)
+     */
+    public long getConstructionNanos() {
+        return constructionNanos;
+    }
+
+    /**
+     * ロードした行数を取得する。
+     *
+     * @return 行数
+     */
+    public long getRowCount() {
+        return rowCount;
+    }
+
+    /**
+     * ロードしたコードの数を取得する。
+     *
+     * @return コードの数
+     */
+    public long getCodeCount() {
+        return codeCount;
+    }
+
+    /**
+     * ロードした言語の数を取得する。
+     *
+     * @return 言語の数
+     */
+    public int getLocaleCount() {
+        return localeCount;
+    }
+
+    /**
+     * パターンの数を取得する。
+     *
+     * @return パターンの数
+     */
+    public int getPatternCount() {
+        return patternCount;
+    }
+
+    /**
+     * ロードしたコードのヒープ使用量の推定値を取得する。
+     *
+     * @return ヒープ使用量の推定値(バイト)
+     */
+    public long getEstimatedBytes() {
+        return estimatedBytes;
+    }
+
+    /**
+     * 推定ヒープ使用量が最も大きいコードのコードIDを取得する。
+     *
+     * @return コードID。コードをロードしていない場合はnull
+     */
+    public String getLargestCodeId() {
+        return largestCodeId;
+    }
+
+    /**
+     * 推定ヒープ使用量が最も大きいコードの推定ヒープ使用量を取得する。
+     *
+     * @return ヒープ使用量の推定値(バイト)
+     */
+    public long getLargestCodeEstimatedBytes() {
+        return largestCodeEstimatedBytes;
+    }
+
+    /**
+     * 計測結果の要約を返す。
+     *
+     * @return 計測結果の要約
+     */
+    @Override
+    public String toString() {
+        return "operation = " + operation
+                + ", total = " + millis(totalNanos) + "ms"
+                + ", query = " + millis(queryNanos) + "ms"
+                + ", fetch = " + millis(fetchNanos) + "ms"
+                + ", grouping = " + millis(groupingNanos) + "ms"
+                + ", construction = " + millis(constructionNanos) + "ms"
+                + ", rows = " + rowCount
+                + ", codes = " + codeCount
+                + ", locales = " + localeCount
+                + ", patterns = " + patternCount
+                + ", estimated bytes = " + estimatedBytes
+                + ", estimated bytes per code = " + (codeCount == 0 ? 0 : estimatedBytes / codeCount)
+                + ", largest code = " + largestCodeId + "(" + largestCodeEstimatedBytes + " bytes)";
+    }
+
+    /**
+     * ナノ秒をミリ秒に変換する。
+     *
+     * @param nanos ナノ秒
+     * @return ミリ秒
+     */
+    private static long millis(long nanos) {
+        return TimeUnit.NANOSECONDS.toMillis(nanos);
+    }
+
+    /**
+     * 1つのコードのヒープ使用量を推定する。<br/>
+     * <br/>
+     * 文字列毎のオブジェクトヘッダと文字数分の領域に、Mapのエントリなどの行毎の管理領域を加えて算出する。
+     *
+     * @param data コードを構成するデータのList
+     * @return ヒープ使用量の推定値(バイト)
+     */
+    static long estimateBytes(List<CodeRow> data) {
+        // コード自体と、コード値のSetやパターン毎のSetなどの固定の領域
+        long bytes = 256;
+        for (CodeRow row : data) {
+            int strings = 0;
+            long chars = length(row.getValue()) + length(row.getName()) + length(row.getShortName());
+            strings += 3;
+            for (int i = 0; i < row.getOptionNameCount(); i++) {
+                chars += length(row.getOptionName(i));
+                strings++;
+            }
+            // 文字列: ヘッダとフィールド40バイト + 1文字2バイト、Mapのエントリ: 1つ32バイト + テーブル8バイト
+            bytes += 40L * strings + 2 * chars + 40L * strings;
+        }
+        return bytes;
+    }
+
+    /**
+     * 文字列の長さを取得する。
+     *
+     * @param value 文字列
+     * @return 長さ。nullの場合は0
+     */
+    private static int length(String value) {
+        return value == null ? 0 : value.length();
+    }
+
+    /**
+     * ロード処理中に計測値を収集するクラス。<br/>
+     * <br/>
+     * 並列ロード時に複数のスレッドから計測値を追加するため、スレッドセーフに実装する。
+     */
+    static final class Collector {
+
+        /** 処理の種類 */
+        private final String operation;
+
+        /** 開始時刻(ナノ秒) */
+        private final long startNanos = System.nanoTime();
+
+        /** SQL文の実行時間 */
+        private final AtomicLong queryNanos = new AtomicLong();
+
+        /** 検索結果の取得時間 */
+        private final AtomicLong fetchNanos = new AtomicLong();
+
+        /** 行データのハンドラの処理時間(グループ化とコードの構築) */
+        private final AtomicLong handleNanos = new AtomicLong();
+
+        /** コードの構築時間 */
+        private final AtomicLong constructionNanos = new AtomicLong();
+
+        /** 行数 */
+        private final AtomicLong rowCount = new AtomicLong();
+
+        /** コードの数 */
+        private final AtomicLong codeCount = new AtomicLong();
+
+        /** 言語 */
+        private final Set<String> langs = new HashSet<String>();
+
+        /** ヒープ使用量の推定値 */
+        private long estimatedBytes;
+
+        /** 推定ヒープ使用量が最も大きいコードのコードID */
+        private String largestCodeId;
+
+        /** 推定ヒープ使用量が最も大きいコードの推定ヒープ使用量 */
+        private long largestCodeEstimatedBytes;
+
+        /**
+         * コンストラクタ。
+         *
+         * @param operation 処理の種類
+         */
+        Collector(String operation) {
+            this.operation = operation;
+        }
+
+        /**
+         * 1回のSQL文の実行の計測値を追加する。
+         *
+         * @param query SQL文の実行時間(ナノ秒)
+         * @param fetch 検索結果の取得時間(ナノ秒、ハンドラの処理時間を除く)
+         * @param handle 行データのハンドラの処理時間(ナノ秒)
+         * @param rows 行数
+         */
+        void addStatement(long query, long fetch, long handle, long rows) {
+            queryNanos.addAndGet(query);
+            fetchNanos.addAndGet(fetch);
+            handleNanos.addAndGet(handle);
+            rowCount.addAndGet(rows);
+        }
+
+        /**
+         * 構築したコードの計測値を追加する。
+         *
+         * @param codeId コードID
+         * @param data コードを構成するデータのList
+         * @param construction コードの構築時間(ナノ秒)
+         */
+        void addCode(String codeId, List<CodeRow> data, long construction) {
+            constructionNanos.addAndGet(construction);
+            codeCount.incrementAndGet();
+            long bytes = estimateBytes(data);
+            Set<String> codeLangs = new HashSet<String>();
+            for (CodeRow row : data) {
+                codeLangs.add(row.getLang());
+            }
+            synchronized (this) {
+                langs.addAll(codeLangs);
+                estimatedBytes += bytes;
+                if (largestCodeId == null || bytes > largestCodeEstimatedBytes) {
+                    largestCodeId = codeId;
+                    largestCodeEstimatedBytes = bytes;
+                }
+            }
+        }
+
+        /**
+         * 計測結果を作成する。
+         *
+         * @param patternCount パターンの数
+         * @return 計測結果
+         */
+        CodeLoadMetrics toMetrics(int patternCount) {
+            return new CodeLoadMetrics(this, System.nanoTime() - startNanos, patternCount);
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package nablarch.common.code;
+
+/**
+ * {@link BasicCodeLoader}のロード処理の計測結果を受け取るリスナ。<br/>
+ * <br/>
+ * {@link BasicCodeLoader#setMetricsListener(CodeLoaderMetricsListener)}に設定すると、
+ * ロード処理を行ったスレッドから呼び出される。並列ロードを行った場合も、呼び出しはロード毎に1回である。
+ * 呼び出し元のロード処理を遅延させないよう、実装は速やかに処理を終えること。
+ *
+ * @see LoggingCodeLoaderMetricsListener
+ * @see NopCodeLoaderMetricsListener
+ */
+public interface CodeLoaderMetricsListener {
+
+    /**
+     * 複数のコードのロードが完了したことを通知する。<br/>
+     * <br/>
+     * {@link BasicCodeLoader#loadAll()}、{@link BasicCodeLoader#loadChanged()}および
+     * {@link BasicCodeLoader#getValues(java.util.Collection)}の完了時に呼び出される。
+     *
+     * @param metrics 計測結果
+     */
+    void loadCompleted(CodeLoadMetrics metrics);
+
+    /**
+     * {@link BasicCodeLoader#getValue(Object)}による1つのコードのロードが完了したことを通知する。
+     *
+     * @param codeId コードID
+     * @param elapsedNanos 処理時間(ナノ秒)
+     * @param found コードが存在した場合true
+     */
+    void valueLoaded(String codeId, long elapsedNanos, boolean found);
+}
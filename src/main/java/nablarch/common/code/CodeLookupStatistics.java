@@ -0,0 +1,538 @@
+package nablarch.common.code;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * ロードしたコードの参照回数を、コードID、言語および参照の種類毎に集計する統計情報。<br/>
+ * <br/>
+ * {@link BasicCodeLoader#setLookupStatistics(CodeLookupStatistics)}または
+ * {@link MappedCodeLoader#setLookupStatistics(CodeLookupStatistics)}に設定すると、
+ * ロードしたコードを参照回数を計数するコードでラップする。
+ * 設定しない場合はコードをラップしないため、参照処理に計数の処理は一切加わらない。<br/>
+ * <br/>
+ * 参照の結果、コード値などが存在した場合をヒット、存在しなかった場合(例外の送出を含む)をミスとして計数する。
+ * 計数する参照の種類は以下のとおり。
+ * <ul>
+ * <li>{@link #CONTAINS}: {@link Code#contains(String)}</li>
+ * <li>{@link #PATTERN}: {@link Code#contains(String, String)}、{@link ExtendedCode#isInPattern(String, String)}</li>
+ * <li>{@link #NAME}: {@link Code#getName(String, Locale)}、{@link ExtendedCode#findName(String, Locale)}</li>
+ * <li>{@link #SHORT_NAME}: {@link Code#getShortName(String, Locale)}、{@link ExtendedCode#findShortName(String, Locale)}</li>
+ * <li>{@link #OPTIONAL_NAME}: {@link Code#getOptionalName(String, String, Locale)}、
+ * {@link ExtendedCode#findOptionalName(String, String, Locale)}</li>
+ * <li>{@link #VALUES}: {@link Code#getValues(Locale)}、{@link Code#getValues(String, Locale)}、
+ * {@link ExtendedCode#findValues(Locale)}、{@link ExtendedCode#findValues(String, Locale)}</li>
+ * <li>{@link #SORT_ORDER}: {@link ExtendedCode#indexOf(String, Locale)}</li>
+ * <li>{@link #REVERSE}: {@link ExtendedCode#findValueByName(String, Locale)}など、名称からコード値を逆引きする参照</li>
+ * </ul>
+ * パターンとオプション名称を指定する参照は、指定したパターン名とオプション名称のカラム名(大文字小文字は指定したまま)毎に計数する。
+ * ハンドルを指定した参照は、パターン名とカラム名を区別せずに計数する。
+ * 存在しないパターン名などを指定した参照でカウンタが増え続けないよう、パターン名などはコード、言語および参照の種類毎に
+ * {@value #MAX_TARGETS}種類までとし、超えた分は{@link #OTHER_TARGETS}にまとめて計数する。
+ * 言語も同様に、コードおよび参照の種類毎に{@value #MAX_LOCALES}種類までとし、
+ * 超えた分は{@link LookupCount#isOtherLocales()}がtrueとなる参照回数にまとめて計数する。
+ * 言語を指定しない参照は、言語をnullとして計数する({@link Locale#ROOT}を指定した参照とは区別する)。<br/>
+ * <br/>
+ * 計数はスレッド毎に分散したカウンタで行い、同じコードを多数のスレッドから参照しても競合しにくい。
+ * {@link #setSamplingInterval(int)}を設定すると、参照の一部のみを計数してオーバーヘッドを抑えることができる。
+ */
+public class CodeLookupStatistics {
+
+    /** 参照の種類: コード値の存在チェック */
+    public static final String CONTAINS = "contains";
+
+    /** 参照の種類: パターンに含まれるか否かのチェック */
+    public static final String PATTERN = "pattern";
+
+    /** 参照の種類: 名称 */
+    public static final String NAME = "name";
+
+    /** 参照の種類: 略称 */
+    public static final String SHORT_NAME = "shortName";
+
+    /** 参照の種類: オプション名称 */
+    public static final String OPTIONAL_NAME = "optionalName";
+
+    /** 参照の種類: コード値の一覧 */
+    public static final String VALUES = "values";
+
+    /** 参照の種類: ソート順 */
+    public static final String SORT_ORDER = "sortOrder";
+
+    /** 参照の種類: 名称からのコード値の逆引き */
+    public static final String REVERSE = "reverse";
+
+    /** 上限を超えたパターン名などをまとめて計数する際のパターン名など */
+    public static final String OTHER_TARGETS = "(other)";
+
+    /** 区別して計数するパターン名などの数の上限 */
+    static final int MAX_TARGETS = 64;
+
+    /** 区別して計数する言語の数の上限 */
+    static final int MAX_LOCALES = 64;
+
+    /** 参照の種類(序数の順) */
+    private static final String[] LOOKUPS = {
+            CONTAINS, PATTERN, NAME, SHORT_NAME, OPTIONAL_NAME, VALUES, SORT_ORDER, REVERSE};
+
+    /** 参照の種類の序数: {@link #CONTAINS} */
+    static final int CONTAINS_ORDINAL = 0;
+
+    /** 参照の種類の序数: {@link #PATTERN} */
+    static final int PATTERN_ORDINAL = 1;
+
+    /** 参照の種類の序数: {@link #NAME} */
+    static final int NAME_ORDINAL = 2;
+
+    /** 参照の種類の序数: {@link #SHORT_NAME} */
+    static final int SHORT_NAME_ORDINAL = 3;
+
+    /** 参照の種類の序数: {@link #OPTIONAL_NAME} */
+    static final int OPTIONAL_NAME_ORDINAL = 4;
+
+    /** 参照の種類の序数: {@link #VALUES} */
+    static final int VALUES_ORDINAL = 5;
+
+    /** 参照の種類の序数: {@link #SORT_ORDER} */
+    static final int SORT_ORDER_ORDINAL = 6;
+
+    /** 参照の種類の序数: {@link #REVERSE} */
+    static final int REVERSE_ORDINAL = 7;
+
+    /** 言語を指定しない参照を計数する際のキー(どの言語とも一致しないよう、言語以外のオブジェクトとする) */
+    private static final Object NO_LOCALE = new Object();
+
+    /** 上限を超えた言語をまとめて計数する際のキー */
+    private static final Object OTHER_LOCALES = new Object();
+
+    /** パターン名などを指定しない参照を計数する際のキー */
+    private static final String NO_TARGET = "";
+
+    /** カウンタを分散する数(2の累乗) */
+    private static final int STRIPES;
+
+    static {
+        int stripes = 1;
+        while (stripes < Runtime.getRuntime().availableProcessors() && stripes < 64) {
+            stripes <<= 1;
+        }
+        STRIPES = stripes;
+    }
+
+    /** コードIDとコード毎のカウンタのMap */
+    private final ConcurrentMap<String, CodeCounters> codes = new ConcurrentHashMap<String, CodeCounters>();
+
+    /** 計数する間隔 */
+    private volatile int samplingInterval = 1;
+
+    /** 次に計数するまでの参照回数(スレッド毎) */
+    private final ThreadLocal<int[]> countdown = new ThreadLocal<int[]>() {
+        @Override
+        protected int[] initialValue() {
+            return new int[1];
+        }
+    };
+
+    /**
+     * 計数する間隔を設定する。<br/>
+     * <br/>
+     * 設定した回数の参照毎に1回(スレッド毎)、設定した回数を加算する。
+     * {@link #getLookupCounts()}で取得する回数は推定値となる。
+     * 計数中に変更しても、変更前に計数した回数は変更前の間隔で加算したまま変わらない。
+     * デフォルトは1(全ての参照を計数する)。
+     *
+     * @param samplingInterval 計数する間隔
+     */
+    public void setSamplingInterval(int samplingInterval) {
+        if (samplingInterval < 1) {
+            throw new IllegalArgumentException("samplingInterval must be greater than 0. "
+                    + "samplingInterval = " + samplingInterval);
+        }
+        this.samplingInterval = samplingInterval;
+    }
+
+    /**
+     * 計数する間隔を取得する。
+     *
+     * @return 計数する間隔
+     */
+    public int getSamplingInterval() {
+        return samplingInterval;
+    }
+
+    /**
+     * コードを、参照回数を計数するコードでラップする。<br/>
+     * <br/>
+     * 同じコードIDのコードは、ラップしたコードが異なってもカウンタを共有する。
+     * 再ロードしたコードをラップしても、それまでの参照回数は引き継がれる。
+     *
+     * @param code コード
+     * @return 参照回数を計数するコード。既に本クラスでラップしたコードの場合は引数のコード
+     * @throws IllegalArgumentException コードが{@link ExtendedCode}を実装していない場合
+     */
+    public ExtendedCode wrap(Code code) {
+        if (code instanceof StatisticsCode) {
+            return (StatisticsCode) code;
+        }
+        if (!(code instanceof ExtendedCode)) {
+            throw new IllegalArgumentException("code must implement ExtendedCode. code id = " + code.getCodeId());
+        }
+        return new StatisticsCode((ExtendedCode) code, this, countersOf(code.getCodeId()));
+    }
+
+    /**
+     * 集計した参照回数を取得する。<br/>
+     * <br/>
+     * 取得時点の回数を複製して返す。取得中に計数された参照は、含まれない場合がある。
+     *
+     * @return 参照回数のList(ヒットとミスの合計の降順)
+     */
+    public List<LookupCount> getLookupCounts() {
+        List<LookupCount> counts = new ArrayList<LookupCount>();
+        for (CodeCounters codeCounters : codes.values()) {
+            for (int lookup = 0; lookup < LOOKUPS.length; lookup++) {
+                for (Map.Entry<Object, ConcurrentMap<String, LookupCounter>> byLocale
+                        : codeCounters.counters[lookup].entrySet()) {
+                    Object localeKey = byLocale.getKey();
+                    Locale locale = localeKey instanceof Locale ? (Locale) localeKey : null;
+                    boolean otherLocales = localeKey == OTHER_LOCALES;
+                    for (Map.Entry<String, LookupCounter> byTarget : byLocale.getValue().entrySet()) {
+                        String target = NO_TARGET.equals(byTarget.getKey()) ? null : byTarget.getKey();
+                        LookupCounter counter = byTarget.getValue();
+                        counts.add(new LookupCount(codeCounters.codeId, locale, otherLocales, LOOKUPS[lookup],
+                                target, counter.sum(LookupCounter.HIT), counter.sum(LookupCounter.MISS)));
+                    }
+                }
+            }
+        }
+        Collections.sort(counts, new Comparator<LookupCount>() {
+            public int compare(LookupCount o1, LookupCount o2) {
+                long total1 = o1.getHits() + o1.getMisses();
+                long total2 = o2.getHits() + o2.getMisses();
+                return total1 < total2 ? 1 : (total1 == total2 ? 0 : -1);
+            }
+        });
+        return counts;
+    }
+
+    /**
+     * 集計した参照回数を全て破棄する。<br/>
+     * <br/>
+     * 破棄後にラップしたコードの参照から、改めて計数を開始する。
+     */
+    public void reset() {
+        for (CodeCounters codeCounters : codes.values()) {
+            codeCounters.clear();
+        }
+    }
+
+    /**
+     * 参照を計数するか否かを判定し、計数する場合は加算する回数を返す。
+     *
+     * @return 加算する回数(計数する間隔)。計数しない場合は0
+     */
+    int sample() {
+        int interval = samplingInterval;
+        if (interval == 1) {
+            return 1;
+        }
+        int[] remaining = countdown.get();
+        if (--remaining[0] > 0) {
+            return 0;
+        }
+        remaining[0] = interval;
+        return interval;
+    }
+
+    /**
+     * コードIDに対応するカウンタを取得する。存在しない場合は作成する。
+     *
+     * @param codeId コードID
+     * @return コード毎のカウンタ
+     */
+    private CodeCounters countersOf(String codeId) {
+        CodeCounters counters = codes.get(codeId);
+        if (counters == null) {
+            CodeCounters newCounters = new CodeCounters(codeId);
+            counters = codes.putIfAbsent(codeId, newCounters);
+            if (counters == null) {
+                counters = newCounters;
+            }
+        }
+        return counters;
+    }
+
+    /**
+     * 1つのコードの参照回数を保持するクラス。
+     */
+    static final class CodeCounters {
+
+        /** コードID */
+        private final String codeId;
+
+        /** 参照の種類毎の、言語(または言語を表すキー)とパターン名などをキーとしたカウンタ */
+        private final ConcurrentMap<Object, ConcurrentMap<String, LookupCounter>>[] counters;
+
+        /**
+         * コンストラクタ。
+         *
+         * @param codeId コードID
+         */
+        @SuppressWarnings("unchecked")
+        private CodeCounters(String codeId) {
+            this.codeId = codeId;
+            counters = new ConcurrentMap[LOOKUPS.length];
+            for (int i = 0; i < counters.length; i++) {
+                counters[i] = new ConcurrentHashMap<Object, ConcurrentMap<String, LookupCounter>>();
+            }
+        }
+
+        /**
+         * 参照を計数する。
+         *
+         * @param lookup 参照の種類の序数
+         * @param locale 言語(指定しない参照の場合はnull)
+         * @param target パターン名またはオプション名称のカラム名(指定しない参照の場合はnull)
+         * @param found コード値などが存在した場合true
+         * @param weight 加算する回数
+         */
+        void record(int lookup, Locale locale, String target, boolean found, int weight) {
+            ConcurrentMap<Object, ConcurrentMap<String, LookupCounter>> byLocale = counters[lookup];
+            Object localeKey = locale == null ? NO_LOCALE : locale;
+            ConcurrentMap<String, LookupCounter> byTarget = byLocale.get(localeKey);
+            if (byTarget == null && byLocale.size() >= MAX_LOCALES) {
+                localeKey = OTHER_LOCALES;
+                byTarget = byLocale.get(localeKey);
+            }
+            if (byTarget == null) {
+                ConcurrentMap<String, LookupCounter> newByTarget = new ConcurrentHashMap<String, LookupCounter>();
+                byTarget = byLocale.putIfAbsent(localeKey, newByTarget);
+                if (byTarget == null) {
+                    byTarget = newByTarget;
+                }
+            }
+            String targetKey = target == null ? NO_TARGET : target;
+            LookupCounter counter = byTarget.get(targetKey);
+            if (counter == null && byTarget.size() >= MAX_TARGETS) {
+                targetKey = OTHER_TARGETS;
+                counter = byTarget.get(targetKey);
+            }
+            if (counter == null) {
+                LookupCounter newCounter = new LookupCounter();
+                counter = byTarget.putIfAbsent(targetKey, newCounter);
+                if (counter == null) {
+                    counter = newCounter;
+                }
+            }
+            counter.add(found ? LookupCounter.HIT : LookupCounter.MISS, weight);
+        }
+
+        /**
+         * 参照回数を全て破棄する。
+         */
+        private void clear() {
+            for (ConcurrentMap<Object, ConcurrentMap<String, LookupCounter>> byLocale : counters) {
+                byLocale.clear();
+            }
+        }
+    }
+
+    /**
+     * ヒットとミスの回数を計数するカウンタ。<br/>
+     * <br/>
+     * 競合しない間は1組のカウンタで計数し、更新が競合した時点でスレッド毎に分散したカウンタを作成する。
+     */
+    private static final class LookupCounter {
+
+        /** ヒットの位置 */
+        private static final int HIT = 0;
+
+        /** ミスの位置 */
+        private static final int MISS = 1;
+
+        /** 競合しない間に使用するカウンタ */
+        private final AtomicLongArray base = new AtomicLongArray(2);
+
+        /** スレッド毎に分散したカウンタ(競合するまではnull) */
+        private volatile AtomicLongArray cells;
+
+        /**
+         * 回数を加算する。
+         *
+         * @param slot ヒットまたはミスの位置
+         * @param delta 加算する回数
+         */
+        private void add(int slot, int delta) {
+            AtomicLongArray currentCells = cells;
+            if (currentCells == null) {
+                long current = base.get(slot);
+                if (base.compareAndSet(slot, current, current + delta)) {
+                    return;
+                }
+                currentCells = expand();
+            }
+            int stripe = (int) Thread.currentThread().getId() & (STRIPES - 1);
+            currentCells.getAndAdd(stripe * 2 + slot, delta);
+        }
+
+        /**
+         * スレッド毎に分散したカウンタを作成する。
+         *
+         * @return 分散したカウンタ
+         */
+        private synchronized AtomicLongArray expand() {
+            if (cells == null) {
+                cells = new AtomicLongArray(STRIPES * 2);
+            }
+            return cells;
+        }
+
+        /**
+         * 回数の合計を取得する。
+         *
+         * @param slot ヒットまたはミスの位置
+         * @return 回数の合計
+         */
+        private long sum(int slot) {
+            long sum = base.get(slot);
+            AtomicLongArray currentCells = cells;
+            if (currentCells != null) {
+                for (int i = slot; i < currentCells.length(); i += 2) {
+                    sum += currentCells.get(i);
+                }
+            }
+            return sum;
+        }
+    }
+
+    /**
+     * コードID、言語、参照の種類、パターン名などの組毎の参照回数。
+     */
+    public static final class LookupCount {
+
+        /** コードID */
+        private final String codeId;
+
+        /** 言語 */
+        private final Locale locale;
+
+        /** 上限を超えた言語をまとめた参照回数か否か */
+        private final boolean otherLocales;
+
+        /** 参照の種類 */
+        private final String lookup;
+
+        /** パターン名またはオプション名称のカラム名 */
+        private final String target;
+
+        /** ヒットした回数 */
+        private final long hits;
+
+        /** ミスした回数 */
+        private final long misses;
+
+        /**
+         * コンストラクタ。
+         *
+         * @param codeId コードID
+         * @param locale 言語
+         * @param otherLocales 上限を超えた言語をまとめた参照回数の場合true
+         * @param lookup 参照の種類
+         * @param target パターン名またはオプション名称のカラム名
+         * @param hits ヒットした回数
+         * @param misses ミスした回数
+         */
+        private LookupCount(String codeId, Locale locale, boolean otherLocales, String lookup, String target,
+                long hits, long misses) {
+            this.codeId = codeId;
+            this.locale = locale;
+            this.otherLocales = otherLocales;
+            this.lookup = lookup;
+            this.target = target;
+            this.hits = hits;
+            this.misses = misses;
+        }
+
+        /**
+         * コードIDを取得する。
+         *
+         * @return コードID
+         */
+        public String getCodeId() {
+            return codeId;
+        }
+
+        /**
+         * 言語を取得する。
+         *
+         * @return 言語。言語を指定しない参照および上限を超えた言語をまとめた参照回数の場合はnull
+         */
+        public Locale getLocale() {
+            return locale;
+        }
+
+        /**
+         * 上限を超えた言語をまとめた参照回数か否かを判定する。
+         *
+         * @return 上限を超えた言語をまとめた参照回数の場合true
+         */
+        public boolean isOtherLocales() {
+            return otherLocales;
+        }
+
+        /**
+         * 参照の種類を取得する。
+         *
+         * @return 参照の種類({@link CodeLookupStatistics#NAME}など)
+         */
+        public String getLookup() {
+            return lookup;
+        }
+
+        /**
+         * パターン名またはオプション名称のカラム名を取得する。
+         *
+         * @return パターン名またはオプション名称のカラム名。指定しない参照およびハンドルを指定した参照の場合はnull
+         */
+        public String getTarget() {
+            return target;
+        }
+
+        /**
+         * ヒットした回数を取得する。
+         *
+         * @return ヒットした回数(間引いて計数した場合は推定値)
+         */
+        public long getHits() {
+            return hits;
+        }
+
+        /**
+         * ミスした回数を取得する。
+         *
+         * @return ミスした回数(間引いて計数した場合は推定値)
+         */
+        public long getMisses() {
+            return misses;
+        }
+
+        /**
+         * 参照回数の文字列表現を返す。
+         *
+         * @return 参照回数の文字列表現
+         */
+        @Override
+        public String toString() {
+            return "code id = " + codeId + ", locale = " + (otherLocales ? "(other)" : locale) + ", lookup = " + lookup
+                    + (target == null ? "" : ", target = " + target)
+                    + ", hits = " + hits + ", misses = " + misses;
+        }
+    }
+}
@@ -0,0 +1,186 @@
+package nablarch.common.code;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 全てのコードのパターンに含まれるコード値を、コード毎のビットセットで保持する索引。<br/>
+ * <br/>
+ * {@link BasicCodeLoader#setBuildPatternIndex(boolean)}にtrueを設定すると、
+ * {@link BasicCodeLoader#loadAll()}でコードの構築と同時に作成し、{@link BasicCodeLoader#getPatternIndex()}で取得できる。<br/>
+ * <br/>
+ * パターン名はロード時の序数に解決し、コード値はロード時に割り当てた序数のビットで判定するため、
+ * 判定時にコードを取得する必要がなく、文字列の生成なども行わない。<br/>
+ * <br/>
+ * 作成後は変更しないため、複数のスレッドから参照できる。
+ */
+public final class CodePatternIndex {
+
+    /** パターンカラム名 */
+    private final String[] patternColumnNames;
+
+    /** コードIDとコード毎のビットセットのMap */
+    private final Map<String, CodeBits> codes;
+
+    /**
+     * コンストラクタ。
+     *
+     * @param patternColumnNames パターンカラム名
+     * @param codes コードIDとコード毎のビットセットのMap
+     */
+    private CodePatternIndex(String[] patternColumnNames, Map<String, CodeBits> codes) {
+        this.patternColumnNames = patternColumnNames;
+        this.codes = codes;
+    }
+
+    /**
+     * パターンにコード値が含まれるか否かを判定する。<br/>
+     * <br/>
+     * {@link ExtendedCode#isInPattern(String, String)}と同様に、
+     * コード、パターンまたはコード値が存在しない場合は例外を送出せずにfalseを返す。
+     *
+     * @param codeId コードID
+     * @param pattern パターン(大文字小文字は区別しない)
+     * @param value コード値
+     * @return パターンにコード値が含まれる場合true
+     */
+    public boolean contains(String codeId, String pattern, String value) {
+        return contains(codeId, patternHandle(pattern), value);
+    }
+
+    /**
+     * パターンのハンドルを取得する。<br/>
+     * <br/>
+     * ハンドルは{@link ExtendedCode#patternHandle(String)}と共通で、パターンカラムの序数である。
+     *
+     * @param pattern パターン(大文字小文字は区別しない)
+     * @return パターンのハンドル。パターンが存在しない場合は-1
+     */
+    public int patternHandle(String pattern) {
+        return BasicCodeLoader.indexOfIgnoreCase(patternColumnNames, pattern);
+    }
+
+    /**
+     * パターンのハンドルで、パターンにコード値が含まれるか否かを判定する。
+     *
+     * @param codeId コードID
+     * @param patternHandle パターンのハンドル
+     * @param value コード値
+     * @return パターンにコード値が含まれる場合true。ハンドルが不正な場合はfalse
+     * @see #patternHandle(String)
+     */
+    public boolean contains(String codeId, int patternHandle, String value) {
+        if (patternHandle < 0 || patternHandle >= patternColumnNames.length) {
+            return false;
+        }
+        CodeBits bits = codes.get(codeId);
+        return bits != null && bits.contains(patternHandle, value);
+    }
+
+    /**
+     * 索引に含まれるコードの数を取得する。
+     *
+     * @return コードの数
+     */
+    public int size() {
+        return codes.size();
+    }
+
+    /**
+     * 1つのコードのパターン毎のビットセットを保持するクラス。
+     */
+    private static final class CodeBits {
+
+        /** コード値とコード値の序数のMap */
+        private final Map<String, Integer> ordinals;
+
+        /** パターン毎の、パターンに含まれるコード値の序数のビットセット */
+        private final long[][] bits;
+
+        /**
+         * コンストラクタ。<br/>
+         * <br/>
+         * いずれかの言語の行でパターンに含まれるコード値は、パターンに含まれるものとする。
+         *
+         * @param patternCount パターンの数
+         * @param data コードを構成するデータのList
+         */
+        private CodeBits(int patternCount, List<CodeRow> data) {
+            ordinals = new HashMap<String, Integer>();
+            for (CodeRow row : data) {
+                if (!ordinals.containsKey(row.getValue())) {
+                    ordinals.put(row.getValue(), ordinals.size());
+                }
+            }
+            bits = new long[patternCount][(ordinals.size() + 63) >>> 6];
+            for (CodeRow row : data) {
+                int ordinal = ordinals.get(row.getValue());
+                for (int i = 0; i < patternCount; i++) {
+                    if (row.isPatternValid(i)) {
+                        bits[i][ordinal >>> 6] |= 1L << ordinal;
+                    }
+                }
+            }
+        }
+
+        /**
+         * パターンにコード値が含まれるか否かを判定する。
+         *
+         * @param patternIndex パターンの序数
+         * @param value コード値
+         * @return パターンにコード値が含まれる場合true
+         */
+        private boolean contains(int patternIndex, String value) {
+            Integer ordinal = value == null ? null : ordinals.get(value);
+            return ordinal != null && (bits[patternIndex][ordinal >>> 6] & (1L << ordinal)) != 0;
+        }
+    }
+
+    /**
+     * 索引を作成するクラス。<br/>
+     * <br/>
+     * 並列ロード時に複数のスレッドからコードを追加するため、追加処理は同期化する。
+     */
+    static final class Builder {
+
+        /** パターンカラム名 */
+        private final String[] patternColumnNames;
+
+        /** 追加されたコード */
+        private final Map<String, CodeBits> codes = new HashMap<String, CodeBits>();
+
+        /**
+         * コンストラクタ。
+         *
+         * @param patternColumnNames パターンカラム名
+         */
+        Builder(String[] patternColumnNames) {
+            this.patternColumnNames = patternColumnNames;
+        }
+
+        /**
+         * コードを追加する。
+         *
+         * @param codeId コードID
+         * @param data コードを構成するデータのList
+         */
+        void add(String codeId, List<CodeRow> data) {
+            CodeBits bits = new CodeBits(patternColumnNames.length, data);
+            synchronized (this) {
+                codes.put(codeId, bits);
+            }
+        }
+
+        /**
+         * 索引を作成する。
+         *
+         * @return 索引
+         */
+        synchronized CodePatternIndex build() {
+            return new CodePatternIndex(patternColumnNames,
+                    Collections.unmodifiableMap(new HashMap<String, CodeBits>(codes)));
+        }
+    }
+}
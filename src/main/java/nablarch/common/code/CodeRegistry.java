@@ -0,0 +1,615 @@
+package nablarch.common.code;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import nablarch.core.cache.StaticDataCache;
+import nablarch.core.cache.StaticDataLoader;
+import nablarch.core.log.Logger;
+import nablarch.core.log.LoggerManager;
+import nablarch.core.repository.initialization.Initializable;
+
+/**
+ * ロードしたコードを不変のMapで保持するキャッシュ。<br/>
+ * <br/>
+ * コードIDとコードの不変のMapを{@link AtomicReference}で保持し、全件または一部のコードの再ロード結果を
+ * 新しいMapとして構築した上で1回の参照の置き換えで公開する(コピーオンライト)。
+ * 参照処理はロックを取得しないため、再ロード中も待たされることはなく、再ロード途中の状態を参照することもない。<br/>
+ * <br/>
+ * {@link CodeChangeListener}を実装しているため、{@link CodeChangeWatcher}のリスナに設定すると、
+ * 更新されたコードのみを差し替えることができる。<br/>
+ * <br/>
+ * 更新のたびにコードIDとコードのMapをコピーするため、コードの更新頻度が低いことを前提とする。
+ * インデックスは、追加、置き換えまたは削除したコードのキーのみを更新する。<br/>
+ * <br/>
+ * 初期化時に全てのコードをロードしない場合、参照時にロードしたコードは、
+ * 同時にロードされた他のコードとまとめて1回の置き換えで公開する。
+ * ロードできなかったコードIDは記録し、再ロードされるまで再度ロードしない。
+ * ロード中に全件または一部の再ロードが公開された場合、ロードしたコードは再ロードより古い可能性があるため公開しない。<br/>
+ * <br/>
+ * 初期化時に全てのコードをロードしない場合でも、{@link #setWarmUpCodeIds(List)}や
+ * {@link #setWarmUpFilePath(String)}で指定した頻繁に参照されるコードは、初期化時にまとめてロードできる。
+ */
+public class CodeRegistry implements StaticDataCache<Code>, CodeChangeListener, Initializable {
+
+    /** ロガー */
+    private static final Logger LOGGER = LoggerManager.get(CodeRegistry.class);
+
+    /** ウォームアップファイルの文字コード */
+    private static final String WARM_UP_FILE_ENCODING = "UTF-8";
+
+    /** 記録するロードできなかったコードIDの数の上限(超えた場合は記録を破棄する) */
+    private static final int MAX_MISSING_CODE_IDS = 1024;
+
+    /** コードをロードするローダ */
+    private StaticDataLoader<Code> loader;
+
+    /** 初期化時に全てのコードをロードするか否か */
+    private boolean loadOnStartup = true;
+
+    /** 初期化時にロードするコードID */
+    private List<String> warmUpCodeIds = Collections.emptyList();
+
+    /** 初期化時にロードするコードIDを記録したファイルのパス */
+    private String warmUpFilePath;
+
+    /** 公開中のコード */
+    private final AtomicReference<CodeTable> table = new AtomicReference<CodeTable>(new CodeTable(
+            Collections.<String, Code>emptyMap(), Collections.<String, Map<Object, List<Code>>>emptyMap(),
+            Collections.<String>emptySet(), 0L));
+
+    /** 参照時にロードし、公開を待っているロード結果 */
+    private final Queue<PendingLoad> pendingLoads = new ConcurrentLinkedQueue<PendingLoad>();
+
+    /** 公開を待っているコードを公開中か否か */
+    private final AtomicBoolean draining = new AtomicBoolean();
+
+    /**
+     * コードをロードするローダを設定する。
+     *
+     * @param loader コードをロードするローダ
+     */
+    public void setLoader(StaticDataLoader<Code> loader) {
+        this.loader = loader;
+    }
+
+    /**
+     * 初期化時に全てのコードをロードするか否かを設定する。<br/>
+     * <br/>
+     * falseを設定した場合、コードは最初に参照された時にロードする。
+     * デフォルトはtrue。
+     *
+     * @param loadOnStartup 初期化時に全てのコードをロードする場合true
+     */
+    public void setLoadOnStartup(boolean loadOnStartup) {
+        this.loadOnStartup = loadOnStartup;
+    }
+
+    /**
+     * 初期化時にロードするコードIDを設定する。<br/>
+     * <br/>
+     * 初期化時に全てのコードをロードしない場合に、頻繁に参照されるコードを初期化時にまとめてロードする。
+     * ローダが{@link BasicCodeLoader}の場合は、{@link BasicCodeLoader#getValues(Collection)}でまとめてロードする。
+     * 初期化時に全てのコードをロードする場合は使用しない。
+     *
+     * @param warmUpCodeIds 初期化時にロードするコードID
+     */
+    public void setWarmUpCodeIds(List<String> warmUpCodeIds) {
+        this.warmUpCodeIds = warmUpCodeIds;
+    }
+
+    /**
+     * 初期化時にロードするコードIDを記録したファイルのパスを設定する。<br/>
+     * <br/>
+     * 初期化時に全てのコードをロードしない場合に、ファイルに記録したコードIDを
+     * {@link #setWarmUpCodeIds(List)}で設定したコードIDとあわせて初期化時にロードする。
+     * ファイルは{@link #saveWarmUpFile()}で作成する。
+     * 前回の起動中に参照されたコードIDを記録しておくことで、起動直後の参照でロードが発生しないようにできる。<br/>
+     * <br/>
+     * ファイルが存在しない場合は無視する。ファイルの読み込みに失敗した場合は、ログを出力して処理を継続する。
+     *
+     * @param warmUpFilePath ウォームアップファイルのパス
+     */
+    public void setWarmUpFilePath(String warmUpFilePath) {
+        this.warmUpFilePath = warmUpFilePath;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @throws IllegalStateException ローダが設定されていない場合
+     */
+    public void initialize() {
+        if (loader == null) {
+            throw new IllegalStateException("loader was not set. set StaticDataLoader to loader.");
+        }
+        if (loadOnStartup) {
+            refresh();
+        } else {
+            warmUp();
+        }
+    }
+
+    /**
+     * 設定されたコードIDとウォームアップファイルに記録されたコードIDのコードをロードして公開する。
+     */
+    private void warmUp() {
+        Set<String> codeIds = new LinkedHashSet<String>(warmUpCodeIds);
+        if (warmUpFilePath != null) {
+            codeIds.addAll(readWarmUpFile(new File(warmUpFilePath)));
+        }
+        if (!codeIds.isEmpty()) {
+            reload(codeIds);
+        }
+    }
+
+    /**
+     * ウォームアップファイルからコードIDを読み込む。<br/>
+     * <br/>
+     * 1行に1つのコードIDを記録する。空行は無視する。
+     *
+     * @param file ウォームアップファイル
+     * @return コードID。ファイルが存在しない場合や読み込みに失敗した場合は空のList
+     */
+    private static List<String> readWarmUpFile(File file) {
+        if (!file.isFile()) {
+            return Collections.emptyList();
+        }
+        List<String> codeIds = new ArrayList<String>();
+        try {
+            BufferedReader reader = new BufferedReader(new InputStreamReader(
+                    new FileInputStream(file), WARM_UP_FILE_ENCODING));
+            try {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    String codeId = line.trim();
+                    if (codeId.length() > 0) {
+                        codeIds.add(codeId);
+                    }
+                }
+            } finally {
+                reader.close();
+            }
+        } catch (IOException e) {
+            LOGGER.logWarn("failed to read code warm-up file. file = " + file, e);
+            return Collections.emptyList();
+        }
+        return codeIds;
+    }
+
+    /**
+     * 公開中のコードのコードIDをウォームアップファイルに書き込む。<br/>
+     * <br/>
+     * 初期化時に全てのコードをロードしない場合、公開中のコードは起動後に参照されたコードとなる。
+     * アプリケーションの停止時などに呼び出すことで、次回の起動時に同じコードを初期化時にロードできる。
+     * ファイルの書き込みに失敗した場合は、ログを出力して処理を継続する。
+     *
+     * @throws IllegalStateException ウォームアップファイルのパスが設定されていない場合
+     */
+    public void saveWarmUpFile() {
+        if (warmUpFilePath == null) {
+            throw new IllegalStateException("warmUpFilePath was not set. set file path to warmUpFilePath.");
+        }
+        File file = new File(warmUpFilePath);
+        try {
+            File parent = file.getAbsoluteFile().getParentFile();
+            if (parent != null && !parent.isDirectory() && !parent.mkdirs()) {
+                throw new IOException("failed to create directory. directory = " + parent);
+            }
+            File temporary = new File(file.getPath() + ".tmp");
+            Writer writer = new OutputStreamWriter(new FileOutputStream(temporary), WARM_UP_FILE_ENCODING);
+            try {
+                for (String codeId : new TreeSet<String>(table.get().codes.keySet())) {
+                    writer.write(codeId);
+                    writer.write('\n');
+                }
+            } finally {
+                writer.close();
+            }
+            if (!temporary.renameTo(file) && (!file.delete() || !temporary.renameTo(file))) {
+                temporary.delete();
+                throw new IOException("failed to replace warm-up file. file = " + file);
+            }
+        } catch (IOException e) {
+            LOGGER.logWarn("failed to write code warm-up file. file = " + file, e);
+        }
+    }
+
+    /**
+     * {@inheritDoc}<br/>
+     * <br/>
+     * ロックを取得せずに公開中のコードを参照する。
+     * 初期化時にロードしない設定で、コードがまだロードされていない場合はロードして公開する。
+     * ロードできなかったコードIDは記録し、以降の参照ではロードせずにnullを返す。
+     */
+    public Code getValue(Object id) {
+        String codeId = id.toString();
+        CodeTable current = table.get();
+        Code code = current.codes.get(codeId);
+        if (code != null || loadOnStartup || current.missingIds.contains(codeId)) {
+            return code;
+        }
+        code = loader.getValue(codeId);
+        pendingLoads.add(new PendingLoad(codeId, code, current.generation));
+        drainPending();
+        return code;
+    }
+
+    /**
+     * 参照時にロードしたコードとロードできなかったコードIDを、まとめて公開する。<br/>
+     * <br/>
+     * 他のスレッドが公開中の場合は、そのスレッドがまとめて公開するため何もしない。
+     */
+    private void drainPending() {
+        while (!pendingLoads.isEmpty()) {
+            if (!draining.compareAndSet(false, true)) {
+                return;
+            }
+            try {
+                List<PendingLoad> loads = new ArrayList<PendingLoad>();
+                for (PendingLoad load = pendingLoads.poll(); load != null; load = pendingLoads.poll()) {
+                    loads.add(load);
+                }
+                publishLoaded(loads);
+            } finally {
+                draining.set(false);
+            }
+        }
+    }
+
+    /**
+     * 参照時のロード結果を公開する。<br/>
+     * <br/>
+     * ロードを開始した後に再ロードが公開されたロード結果と、既に公開中のコードIDのロード結果は破棄する。
+     * ロード結果が再ロードされたコードを古い内容で上書きしないため。
+     *
+     * @param loads 参照時のロード結果
+     */
+    private void publishLoaded(List<PendingLoad> loads) {
+        while (true) {
+            CodeTable current = table.get();
+            Map<String, Code> codes = new HashMap<String, Code>();
+            Set<String> missingIds = new HashSet<String>();
+            for (PendingLoad load : loads) {
+                if (load.generation != current.generation || current.codes.containsKey(load.codeId)
+                        || codes.containsKey(load.codeId)) {
+                    continue;
+                }
+                if (load.code == null) {
+                    missingIds.add(load.codeId);
+                } else {
+                    codes.put(load.codeId, load.code);
+                    missingIds.remove(load.codeId);
+                }
+            }
+            if (codes.isEmpty() && missingIds.isEmpty()) {
+                return;
+            }
+            CodeTable loaded = derive(current, new ArrayList<Code>(codes.values()),
+                    Collections.<String>emptySet(), missingIds, current.generation);
+            if (table.compareAndSet(current, loaded)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @throws IllegalArgumentException インデックスが存在しない場合
+     */
+    public List<Code> getValues(String indexName, Object key) {
+        Map<Object, List<Code>> index = table.get().indexes.get(indexName);
+        if (index == null) {
+            throw new IllegalArgumentException("index was not found. index name = " + indexName);
+        }
+        List<Code> codes = index.get(key);
+        return codes == null ? Collections.<Code>emptyList() : codes;
+    }
+
+    /**
+     * 公開中の全てのコードを取得する。<br/>
+     * <br/>
+     * 返却するMapは不変で、取得後に再ロードが行われても変化しない。
+     * 複数のコードを同一時点の状態で参照する場合に使用する。
+     *
+     * @return コードIDとコードの不変のMap
+     */
+    public Map<String, Code> getCodes() {
+        return table.get().codes;
+    }
+
+    /**
+     * {@inheritDoc}<br/>
+     * <br/>
+     * 全てのコードをロードし、公開中のコードと置き換える。
+     */
+    public void refresh() {
+        replace(loader.loadAll());
+    }
+
+    /**
+     * 指定したコードを再ロードし、公開中のコードの一部を置き換える。<br/>
+     * <br/>
+     * ロードできなかったコードIDのコードは削除する。
+     *
+     * @param ids 再ロードするコードID
+     */
+    public void reload(Collection<?> ids) {
+        Set<String> codeIds = new LinkedHashSet<String>();
+        for (Object id : ids) {
+            codeIds.add(id.toString());
+        }
+        List<Code> codes;
+        if (loader instanceof BasicCodeLoader) {
+            codes = ((BasicCodeLoader) loader).getValues(codeIds);
+        } else {
+            codes = new ArrayList<Code>();
+            for (String codeId : codeIds) {
+                Code code = loader.getValue(codeId);
+                if (code != null) {
+                    codes.add(code);
+                }
+            }
+        }
+        publish(codes, codeIds);
+    }
+
+    /**
+     * {@inheritDoc}<br/>
+     * <br/>
+     * 更新されたコードで、公開中のコードの一部を置き換える。
+     */
+    public void codesChanged(List<Code> changedCodes) {
+        publish(changedCodes, Collections.<String>emptySet());
+    }
+
+    /**
+     * {@inheritDoc}<br/>
+     * <br/>
+     * 公開中のコードを全て置き換える。
+     */
+    public void codesReloaded(List<Code> allCodes) {
+        replace(allCodes);
+    }
+
+    /**
+     * 公開中のコードを全て置き換える。<br/>
+     * <br/>
+     * ロードできなかったコードIDの記録も破棄する。
+     *
+     * @param codes 全てのコード
+     */
+    private void replace(List<Code> codes) {
+        Map<String, Code> newCodes = new HashMap<String, Code>();
+        for (Code code : codes) {
+            newCodes.put(loader.getId(code).toString(), code);
+        }
+        Map<String, Map<Object, List<Code>>> indexes = new HashMap<String, Map<Object, List<Code>>>();
+        for (String indexName : getIndexNames()) {
+            Map<Object, List<Code>> index = new HashMap<Object, List<Code>>();
+            for (Code code : newCodes.values()) {
+                addToIndex(index, loader.generateIndexKey(indexName, code), code);
+            }
+            indexes.put(indexName, index);
+        }
+        while (true) {
+            CodeTable current = table.get();
+            if (table.compareAndSet(current,
+                    new CodeTable(newCodes, indexes, Collections.<String>emptySet(), current.generation + 1))) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * 公開中のコードの一部を置き換える。<br/>
+     * <br/>
+     * 他のスレッドと同時に置き換えた場合は、最新の公開中のコードに対して置き換えをやり直す。
+     *
+     * @param codes 追加または置き換えるコード
+     * @param removeIds 削除するコードID(追加または置き換えるコードのコードIDを含んでもよい)
+     */
+    private void publish(List<Code> codes, Set<String> removeIds) {
+        if (codes.isEmpty() && removeIds.isEmpty()) {
+            return;
+        }
+        while (true) {
+            CodeTable current = table.get();
+            CodeTable published = derive(current, codes, removeIds, Collections.<String>emptySet(),
+                    current.generation + 1);
+            if (table.compareAndSet(current, published)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * 公開中のコードの一部を置き換えた、新しい公開するコードを作成する。<br/>
+     * <br/>
+     * インデックスは、削除または置き換えたコードと追加したコードのキーのみを更新する。
+     *
+     * @param current 公開中のコード
+     * @param codes 追加または置き換えるコード
+     * @param removeIds 削除するコードID(追加または置き換えるコードのコードIDを含んでもよい)
+     * @param missingIds 記録するロードできなかったコードID
+     * @param generation 作成する公開するコードの世代
+     * @return 公開するコード
+     */
+    private CodeTable derive(CodeTable current, List<Code> codes, Set<String> removeIds, Set<String> missingIds,
+            long generation) {
+        Map<String, Code> newCodes = new HashMap<String, Code>(current.codes);
+        List<Code> removedCodes = new ArrayList<Code>();
+        for (String removeId : removeIds) {
+            Code removed = newCodes.remove(removeId);
+            if (removed != null) {
+                removedCodes.add(removed);
+            }
+        }
+        Set<String> newMissingIds = new HashSet<String>(current.missingIds);
+        if (newMissingIds.size() + missingIds.size() > MAX_MISSING_CODE_IDS) {
+            newMissingIds.clear();
+        }
+        newMissingIds.addAll(missingIds);
+        for (Code code : codes) {
+            String codeId = loader.getId(code).toString();
+            Code replaced = newCodes.put(codeId, code);
+            if (replaced != null) {
+                removedCodes.add(replaced);
+            }
+            newMissingIds.remove(codeId);
+        }
+
+        Map<String, Map<Object, List<Code>>> newIndexes = new HashMap<String, Map<Object, List<Code>>>();
+        for (String indexName : getIndexNames()) {
+            Map<Object, List<Code>> currentIndex = current.indexes.get(indexName);
+            Map<Object, List<Code>> index = currentIndex == null
+                    ? new HashMap<Object, List<Code>>() : new HashMap<Object, List<Code>>(currentIndex);
+            for (Code removed : removedCodes) {
+                removeFromIndex(index, loader.generateIndexKey(indexName, removed), removed);
+            }
+            for (Code code : codes) {
+                addToIndex(index, loader.generateIndexKey(indexName, code), code);
+            }
+            newIndexes.put(indexName, index);
+        }
+        return new CodeTable(newCodes, newIndexes, newMissingIds, generation);
+    }
+
+    /**
+     * インデックス名を取得する。
+     *
+     * @return インデックス名。ローダがインデックスを提供しない場合は空のList
+     */
+    private List<String> getIndexNames() {
+        List<String> indexNames = loader.getIndexNames();
+        return indexNames == null ? Collections.<String>emptyList() : indexNames;
+    }
+
+    /**
+     * インデックスのキーにコードを追加する。<br/>
+     * <br/>
+     * キーに関連付けられたListは、複製した上で変更して置き換える。
+     *
+     * @param index インデックス
+     * @param key インデックスのキー
+     * @param code 追加するコード
+     */
+    private static void addToIndex(Map<Object, List<Code>> index, Object key, Code code) {
+        List<Code> current = index.get(key);
+        List<Code> indexed = current == null ? new ArrayList<Code>(1) : new ArrayList<Code>(current);
+        indexed.add(code);
+        index.put(key, Collections.unmodifiableList(indexed));
+    }
+
+    /**
+     * インデックスのキーからコードを削除する。<br/>
+     * <br/>
+     * キーに関連付けられたListは、複製した上で変更して置き換える。Listが空になった場合はキーを削除する。
+     *
+     * @param index インデックス
+     * @param key インデックスのキー
+     * @param code 削除するコード
+     */
+    private static void removeFromIndex(Map<Object, List<Code>> index, Object key, Code code) {
+        List<Code> current = index.get(key);
+        if (current == null) {
+            return;
+        }
+        List<Code> indexed = new ArrayList<Code>(current.size());
+        for (Code indexedCode : current) {
+            if (indexedCode != code) {
+                indexed.add(indexedCode);
+            }
+        }
+        if (indexed.isEmpty()) {
+            index.remove(key);
+        } else {
+            index.put(key, Collections.unmodifiableList(indexed));
+        }
+    }
+
+    /**
+     * 公開するコードとインデックスを保持するクラス。<br/>
+     * <br/>
+     * 作成後は変更しない。
+     */
+    private static final class CodeTable {
+
+        /** コードIDとコードのMap */
+        private final Map<String, Code> codes;
+
+        /** インデックス名毎の、インデックスのキーとコードのMap */
+        private final Map<String, Map<Object, List<Code>>> indexes;
+
+        /** ロードできなかったコードID */
+        private final Set<String> missingIds;
+
+        /** 世代(全件または一部の再ロードを公開する毎に1増加する。参照時のロード結果の公開では増加しない) */
+        private final long generation;
+
+        /**
+         * コンストラクタ。
+         *
+         * @param codes コードIDとコードのMap
+         * @param indexes インデックス名毎の、インデックスのキーとコードのMap
+         * @param missingIds ロードできなかったコードID
+         * @param generation 世代
+         */
+        private CodeTable(Map<String, Code> codes, Map<String, Map<Object, List<Code>>> indexes,
+                Set<String> missingIds, long generation) {
+            this.codes = Collections.unmodifiableMap(codes);
+            this.indexes = indexes;
+            this.missingIds = missingIds;
+            this.generation = generation;
+        }
+    }
+
+    /**
+     * 参照時のロード結果を保持するクラス。
+     */
+    private static final class PendingLoad {
+
+        /** コードID */
+        private final String codeId;
+
+        /** ロードしたコード(ロードできなかった場合はnull) */
+        private final Code code;
+
+        /** ロードを開始した時点の公開中のコードの世代 */
+        private final long generation;
+
+        /**
+         * コンストラクタ。
+         *
+         * @param codeId コードID
+         * @param code ロードしたコード(ロードできなかった場合はnull)
+         * @param generation ロードを開始した時点の公開中のコードの世代
+         */
+        private PendingLoad(String codeId, Code code, long generation) {
+            this.codeId = codeId;
+            this.code = code;
+            this.generation = generation;
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package nablarch.common.code;
+
+/**
+ * コードを構成する1行分のデータ。<br/>
+ * <br/>
+ * コードパターンテーブルとコード名称テーブルを結合した検索結果の1行を、
+ * コードの構築に必要な値だけに変換して保持する。
+ */
+final class CodeRow {
+
+    /**
+     * パターンの有効フラグの1要素に格納するパターンの数。<br/>
+     * SQLでビットマスクを作成する場合に、符号付き64ビット整数(BIGINT)に収まる数とする。
+     */
+    static final int PATTERNS_PER_FLAG = 62;
+
+    /** コードID */
+    private final String codeId;
+
+    /** コード値 */
+    private final String value;
+
+    /** 言語 */
+    private final String lang;
+
+    /** 名称 */
+    private final String name;
+
+    /** 略称 */
+    private final String shortName;
+
+    /** オプション名称(オプション名称カラムの並び) */
+    private final String[] optionNames;
+
+    /** パターンの有効フラグ(パターンの序数をビット位置とするビットセット) */
+    private final long[] patternFlags;
+
+    /** 行のバージョン(バージョンカラムがない場合はnull) */
+    private final Object version;
+
+    /**
+     * コンストラクタ。
+     *
+     * @param codeId コードID
+     * @param value コード値
+     * @param lang 言語
+     * @param name 名称
+     * @param shortName 略称
+     * @param optionNames オプション名称(オプション名称カラムの並び)
+     * @param patternFlags パターンの有効フラグ(パターンの序数をビット位置とするビットセット)
+     * @param version 行のバージョン(バージョンカラムがない場合はnull)
+     */
+    CodeRow(String codeId, String value, String lang, String name, String shortName,
+            String[] optionNames, long[] patternFlags, Object version) {
+        this.codeId = codeId;
+        this.value = value;
+        this.lang = lang;
+        this.name = name;
+        this.shortName = shortName;
+        this.optionNames = optionNames;
+        this.patternFlags = patternFlags;
+        this.version = version;
+    }
+
+    /**
+     * パターンの数に応じたパターンの有効フラグを作成する。
+     *
+     * @param patternCount パターンの数
+     * @return 全てのパターンが無効なパターンの有効フラグ
+     */
+    static long[] newPatternFlags(int patternCount) {
+        return new long[(patternCount + PATTERNS_PER_FLAG - 1) / PATTERNS_PER_FLAG];
+    }
+
+    /**
+     * パターンの有効フラグにパターンを設定する。
+     *
+     * @param patternFlags パターンの有効フラグ
+     * @param patternIndex パターンの序数
+     */
+    static void setPatternValid(long[] patternFlags, int patternIndex) {
+        patternFlags[patternIndex / PATTERNS_PER_FLAG] |= 1L << (patternIndex % PATTERNS_PER_FLAG);
+    }
+
+    /**
+     * コードIDを取得する。
+     *
+     * @return コードID
+     */
+    String getCodeId() {
+        return codeId;
+    }
+
+    /**
+     * コード値を取得する。
+     *
+     * @return コード値
+     */
+    String getValue() {
+        return value;
+    }
+
+    /**
+     * 言語を取得する。
+     *
+     * @return 言語
+     */
+    String getLang() {
+        return lang;
+    }
+
+    /**
+     * 名称を取得する。
+     *
+     * @return 名称
+     */
+    String getName() {
+        return name;
+    }
+
+    /**
+     * 略称を取得する。
+     *
+     * @return 略称
+     */
+    String getShortName() {
+        return shortName;
+    }
+
+    /**
+     * オプション名称を取得する。
+     *
+     * @param optionIndex オプション名称カラムの序数
+     * @return オプション名称
+     */
+    String getOptionName(int optionIndex) {
+        return optionNames[optionIndex];
+    }
+
+    /**
+     * オプション名称の数を取得する。
+     *
+     * @return オプション名称の数
+     */
+    int getOptionNameCount() {
+        return optionNames.length;
+    }
+
+    /**
+     * パターンの有効フラグを取得する。
+     *
+     * @return パターンの有効フラグ
+     */
+    long[] getPatternFlags() {
+        return patternFlags;
+    }
+
+    /**
+     * パターンが有効か否かを判定する。
+     *
+     * @param patternIndex パターンの序数
+     * @return パターンが有効な場合true
+     */
+    boolean isPatternValid(int patternIndex) {
+        return (patternFlags[patternIndex / PATTERNS_PER_FLAG]
+                & (1L << (patternIndex % PATTERNS_PER_FLAG))) != 0;
+    }
+
+    /**
+     * 行のバージョンを取得する。
+     *
+     * @return 行のバージョン。バージョンカラムがない場合はnull
+     */
+    Object getVersion() {
+        return version;
+    }
+}
@@ -0,0 +1,125 @@
+package nablarch.common.code;
+
+import java.util.List;
+
+import nablarch.core.db.statement.ResultSetIterator;
+
+/**
+ * 検索結果の行を{@link CodeRow}に変換するクラス。<br/>
+ * <br/>
+ * SQL文の生成時に解決したカラムの位置で値を取得するため、
+ * カラム名による検索結果の参照を行わない。
+ */
+final class CodeRowDecoder {
+
+    /** パターンのビットマスクをSQLで作成しているか否か */
+    private final boolean patternBitmask;
+
+    /** パターンに含まれることを表すパターンカラムの値 */
+    private final String patternTrueValue;
+
+    /** パターンの数 */
+    private final int patternCount;
+
+    /** パターンカラム(ビットマスクの場合はビットマスクのカラム)の位置 */
+    private final int[] patternIndexes;
+
+    /** オプション名称カラムの位置 */
+    private final int[] optionNameIndexes;
+
+    /** コードIDカラムの位置 */
+    private final int idIndex;
+
+    /** コード値カラムの位置 */
+    private final int valueIndex;
+
+    /** 言語カラムの位置 */
+    private final int langIndex;
+
+    /** 名称カラムの位置 */
+    private final int nameIndex;
+
+    /** 略称カラムの位置 */
+    private final int shortNameIndex;
+
+    /** バージョンカラムの位置 */
+    private final int[] versionIndexes;
+
+    /**
+     * コンストラクタ。
+     *
+     * @param patternBitmask パターンのビットマスクをSQLで作成しているか否か
+     * @param patternTrueValue パターンに含まれることを表すパターンカラムの値
+     * @param patternCount パターンの数
+     * @param patternIndexes パターンカラム(ビットマスクの場合はビットマスクのカラム)の位置
+     * @param optionNameIndexes オプション名称カラムの位置
+     * @param idIndex コードIDカラムの位置
+     * @param valueIndex コード値カラムの位置
+     * @param langIndex 言語カラムの位置
+     * @param nameIndex 名称カラムの位置
+     * @param shortNameIndex 略称カラムの位置
+     * @param versionIndexes バージョンカラムの位置
+     */
+    CodeRowDecoder(boolean patternBitmask, String patternTrueValue, int patternCount,
+            int[] patternIndexes, int[] optionNameIndexes, int idIndex, int valueIndex,
+            int langIndex, int nameIndex, int shortNameIndex, List<Integer> versionIndexes) {
+        this.patternBitmask = patternBitmask;
+        this.patternTrueValue = patternTrueValue;
+        this.patternCount = patternCount;
+        this.patternIndexes = patternIndexes;
+        this.optionNameIndexes = optionNameIndexes;
+        this.idIndex = idIndex;
+        this.valueIndex = valueIndex;
+        this.langIndex = langIndex;
+        this.nameIndex = nameIndex;
+        this.shortNameIndex = shortNameIndex;
+        this.versionIndexes = new int[versionIndexes.size()];
+        for (int i = 0; i < this.versionIndexes.length; i++) {
+            this.versionIndexes[i] = versionIndexes.get(i);
+        }
+    }
+
+    /**
+     * バージョンカラムの数を取得する。
+     *
+     * @return バージョンカラムの数
+     */
+    int getVersionColumnCount() {
+        return versionIndexes.length;
+    }
+
+    /**
+     * カーソルが指している行を変換する。
+     *
+     * @param rs 検索結果
+     * @return 変換した行
+     */
+    CodeRow decode(ResultSetIterator rs) {
+        long[] patternFlags = CodeRow.newPatternFlags(patternCount);
+        if (patternBitmask) {
+            for (int i = 0; i < patternIndexes.length; i++) {
+                Object flags = rs.getObject(patternIndexes[i]);
+                patternFlags[i] = flags == null ? 0L : ((Number) flags).longValue();
+            }
+        } else {
+            for (int i = 0; i < patternIndexes.length; i++) {
+                if (patternTrueValue.equals(rs.getString(patternIndexes[i]))) {
+                    CodeRow.setPatternValid(patternFlags, i);
+                }
+            }
+        }
+
+        String[] optionNames = new String[optionNameIndexes.length];
+        for (int i = 0; i < optionNameIndexes.length; i++) {
+            optionNames[i] = rs.getString(optionNameIndexes[i]);
+        }
+
+        Object version = null;
+        for (int versionIndex : versionIndexes) {
+            version = CodeVersion.max(version, CodeVersion.normalize(rs.getObject(versionIndex)));
+        }
+
+        return new CodeRow(rs.getString(idIndex), rs.getString(valueIndex), rs.getString(langIndex),
+                rs.getString(nameIndex), rs.getString(shortNameIndex), optionNames, patternFlags, version);
+    }
+}
@@ -0,0 +1,16 @@
+package nablarch.common.code;
+
+/**
+ * データベースから検索したコードの行データを受け取るインタフェース。<br/>
+ * <br/>
+ * 行データは、コードID、言語、ソート順の順にソートされた状態で1行ずつ渡される。
+ */
+interface CodeRowHandler {
+
+    /**
+     * 行データを追加する。
+     *
+     * @param row 行データ
+     */
+    void add(CodeRow row);
+}
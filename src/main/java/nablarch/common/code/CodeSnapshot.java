@@ -0,0 +1,344 @@
+package nablarch.common.code;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.Charset;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * コードを構成する行データのスナップショットファイル。<br/>
+ * <br/>
+ * ロードした行データを、フォーマットのバージョンとチェックサム(CRC32)を付与したバイナリ形式で保存する。
+ * 読み込み時はファイルを先頭から順に読み込んで行データに復元し、最後にチェックサムを検証する。
+ * 復元した行データはヒープ上に保持するため、ファイルをメモリマップしない
+ * (マップを解放できず、次回の書き込み時にファイルを置き換えられない環境があるため)。<br/>
+ * <br/>
+ * ファイルの形式は以下の通り(数値はビッグエンディアン)。
+ * <pre>
+ * magic(int) formatVersion(int) layout(string)
+ * rowCount(int) maxVersion(tag + value)
+ * rows(codeId value lang name shortName optionNames[] patternFlags[])...
+ * checksum(long)
+ * </pre>
+ * 文字列は、バイト長(int、nullの場合は-1)とUTF-8のバイト列で表現する。
+ */
+final class CodeSnapshot {
+
+    /** ファイルの識別子 */
+    private static final int MAGIC = 0x4E434F44;
+
+    /** フォーマットのバージョン */
+    private static final int FORMAT_VERSION = 1;
+
+    /** 文字列のエンコーディング */
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    /** バージョンの型: null */
+    private static final byte VERSION_NONE = 0;
+
+    /** バージョンの型: {@link Integer}(読み込みのみ。書き込み時は{@link Long}として書き込む) */
+    private static final byte VERSION_INTEGER = 1;
+
+    /** バージョンの型: {@link Long} */
+    private static final byte VERSION_LONG = 2;
+
+    /** バージョンの型: {@link BigDecimal} */
+    private static final byte VERSION_DECIMAL = 3;
+
+    /** バージョンの型: {@link Timestamp} */
+    private static final byte VERSION_TIMESTAMP = 4;
+
+    /** バージョンの型: {@link String} */
+    private static final byte VERSION_STRING = 5;
+
+    /** 行データ */
+    private final List<CodeRow> rows;
+
+    /** 行のバージョンの最大値 */
+    private final Object maxVersion;
+
+    /**
+     * コンストラクタ。
+     *
+     * @param rows 行データ
+     * @param maxVersion 行のバージョンの最大値
+     */
+    private CodeSnapshot(List<CodeRow> rows, Object maxVersion) {
+        this.rows = rows;
+        this.maxVersion = maxVersion;
+    }
+
+    /**
+     * 行データを取得する。
+     *
+     * @return 行データ(コードIDでソート済み)
+     */
+    List<CodeRow> getRows() {
+        return rows;
+    }
+
+    /**
+     * 行数を取得する。
+     *
+     * @return 行数
+     */
+    int getRowCount() {
+        return rows.size();
+    }
+
+    /**
+     * 行のバージョンの最大値を取得する。
+     *
+     * @return 行のバージョンの最大値。バージョンを持たない場合はnull
+     */
+    Object getMaxVersion() {
+        return maxVersion;
+    }
+
+    /**
+     * 行データをスナップショットファイルに書き込む。<br/>
+     * <br/>
+     * 行データは一時ファイルに直接書き込み、書き込みながらチェックサムを計算する(ファイル全体をメモリに保持しない)。
+     * 書き込み後にリネームするため、書き込み中のファイルが読み込まれることはない。
+     *
+     * @param file スナップショットファイル
+     * @param layout カラム構成を表す文字列
+     * @param rows 行データ(コードIDでソート済み)
+     * @param maxVersion 行のバージョンの最大値({@link CodeVersion#normalize(Object)}で正規化済み)
+     * @throws IOException 書き込みに失敗した場合
+     * @throws IllegalArgumentException バージョンが保存できない型の場合
+     */
+    static void write(File file, String layout, List<CodeRow> rows, Object maxVersion) throws IOException {
+        File parent = file.getAbsoluteFile().getParentFile();
+        if (parent != null && !parent.isDirectory() && !parent.mkdirs()) {
+            throw new IOException("failed to create directory. directory = " + parent);
+        }
+        File temporary = new File(file.getPath() + ".tmp");
+        CRC32 crc = new CRC32();
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                new CheckedOutputStream(new FileOutputStream(temporary), crc)));
+        boolean written = false;
+        try {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            writeString(out, layout);
+            out.writeInt(rows.size());
+            writeVersion(out, maxVersion);
+            for (CodeRow row : rows) {
+                writeString(out, row.getCodeId());
+                writeString(out, row.getValue());
+                writeString(out, row.getLang());
+                writeString(out, row.getName());
+                writeString(out, row.getShortName());
+                out.writeInt(row.getOptionNameCount());
+                for (int i = 0; i < row.getOptionNameCount(); i++) {
+                    writeString(out, row.getOptionName(i));
+                }
+                long[] patternFlags = row.getPatternFlags();
+                out.writeInt(patternFlags.length);
+                for (long flags : patternFlags) {
+                    out.writeLong(flags);
+                }
+            }
+            out.flush();
+            out.writeLong(crc.getValue());
+            out.flush();
+            written = true;
+        } finally {
+            out.close();
+            if (!written) {
+                temporary.delete();
+            }
+        }
+        if (!temporary.renameTo(file)) {
+            if (!file.delete() || !temporary.renameTo(file)) {
+                temporary.delete();
+                throw new IOException("failed to replace snapshot file. file = " + file);
+            }
+        }
+    }
+
+    /**
+     * スナップショットファイルを読み込む。<br/>
+     * <br/>
+     * 行データを復元しながらチェックサムを計算し、最後にファイル末尾のチェックサムと照合する。
+     * 破損したファイルで過大な領域を確保しないよう、文字列の長さや要素数はファイルサイズを上限として検証する。
+     *
+     * @param file スナップショットファイル
+     * @param layout カラム構成を表す文字列
+     * @return スナップショット。ファイルが存在しない場合やカラム構成が異なる場合はnull
+     * @throws IOException ファイルの読み込みに失敗した場合や、ファイルが破損している場合
+     */
+    static CodeSnapshot read(File file, String layout) throws IOException {
+        if (!file.isFile()) {
+            return null;
+        }
+        long fileLength = file.length();
+        CRC32 crc = new CRC32();
+        DataInputStream in = new DataInputStream(new CheckedInputStream(
+                new BufferedInputStream(new FileInputStream(file)), crc));
+        try {
+            if (fileLength < 16 || in.readInt() != MAGIC) {
+                throw new IOException("not a code snapshot file. file = " + file);
+            }
+            if (in.readInt() != FORMAT_VERSION || !layout.equals(readString(in, fileLength))) {
+                return null;
+            }
+            int rowCount = readCount(in, fileLength);
+            Object maxVersion = readVersion(in, fileLength);
+            List<CodeRow> rows = new ArrayList<CodeRow>(rowCount);
+            for (int i = 0; i < rowCount; i++) {
+                String codeId = readString(in, fileLength);
+                String value = readString(in, fileLength);
+                String lang = readString(in, fileLength);
+                String name = readString(in, fileLength);
+                String shortName = readString(in, fileLength);
+                String[] optionNames = new String[readCount(in, fileLength)];
+                for (int j = 0; j < optionNames.length; j++) {
+                    optionNames[j] = readString(in, fileLength);
+                }
+                long[] patternFlags = new long[readCount(in, fileLength)];
+                for (int j = 0; j < patternFlags.length; j++) {
+                    patternFlags[j] = in.readLong();
+                }
+                rows.add(new CodeRow(codeId, value, lang, name, shortName, optionNames, patternFlags, null));
+            }
+            long checksum = crc.getValue();
+            if (checksum != in.readLong()) {
+                throw new IOException("checksum of code snapshot file did not match. file = " + file);
+            }
+            return new CodeSnapshot(Collections.unmodifiableList(rows), maxVersion);
+        } catch (EOFException e) {
+            throw new IOException("code snapshot file was truncated. file = " + file);
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * 要素数を読み込む。
+     *
+     * @param in 入力元
+     * @param fileLength ファイルサイズ(要素数の上限)
+     * @return 要素数
+     * @throws IOException 読み込みに失敗した場合や、要素数が不正な場合
+     */
+    private static int readCount(DataInputStream in, long fileLength) throws IOException {
+        int count = in.readInt();
+        if (count < 0 || count > fileLength) {
+            throw new IOException("code snapshot file was corrupted. count = " + count);
+        }
+        return count;
+    }
+
+    /**
+     * 文字列を書き込む。
+     *
+     * @param out 出力先
+     * @param value 文字列
+     * @throws IOException 書き込みに失敗した場合
+     */
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * 文字列を読み込む。
+     *
+     * @param in 入力元
+     * @param fileLength ファイルサイズ(バイト長の上限)
+     * @return 文字列
+     * @throws IOException 読み込みに失敗した場合や、バイト長が不正な場合
+     */
+    private static String readString(DataInputStream in, long fileLength) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        if (length > fileLength) {
+            throw new IOException("code snapshot file was corrupted. string length = " + length);
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, UTF_8);
+    }
+
+    /**
+     * バージョンを書き込む。
+     *
+     * @param out 出力先
+     * @param version バージョン({@link CodeVersion#normalize(Object)}で正規化済み)
+     * @throws IOException 書き込みに失敗した場合
+     * @throws IllegalArgumentException 保存できない型の場合
+     */
+    private static void writeVersion(DataOutputStream out, Object version) throws IOException {
+        if (version == null) {
+            out.writeByte(VERSION_NONE);
+        } else if (version instanceof Long) {
+            out.writeByte(VERSION_LONG);
+            out.writeLong((Long) version);
+        } else if (version instanceof BigDecimal) {
+            out.writeByte(VERSION_DECIMAL);
+            writeString(out, version.toString());
+        } else if (version instanceof Timestamp) {
+            out.writeByte(VERSION_TIMESTAMP);
+            out.writeLong(((Timestamp) version).getTime());
+            out.writeInt(((Timestamp) version).getNanos());
+        } else if (version instanceof String) {
+            out.writeByte(VERSION_STRING);
+            writeString(out, (String) version);
+        } else {
+            throw new IllegalArgumentException("unsupported version type. type = " + version.getClass().getName());
+        }
+    }
+
+    /**
+     * バージョンを読み込む。
+     *
+     * @param in 入力元
+     * @param fileLength ファイルサイズ(文字列のバイト長の上限)
+     * @return バージョン
+     * @throws IOException 読み込みに失敗した場合や、不明な型の場合
+     */
+    private static Object readVersion(DataInputStream in, long fileLength) throws IOException {
+        byte type = in.readByte();
+        switch (type) {
+            case VERSION_NONE:
+                return null;
+            case VERSION_INTEGER:
+                return in.readInt();
+            case VERSION_LONG:
+                return in.readLong();
+            case VERSION_DECIMAL:
+                return new BigDecimal(readString(in, fileLength));
+            case VERSION_TIMESTAMP:
+                Timestamp timestamp = new Timestamp(in.readLong());
+                timestamp.setNanos(in.readInt());
+                return timestamp;
+            case VERSION_STRING:
+                return readString(in, fileLength);
+            default:
+                throw new IOException("unknown version type. type = " + type);
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package nablarch.common.code;
+
+/**
+ * コードパターンテーブルとコード名称テーブルを結合した行の状態。<br/>
+ * <br/>
+ * 行を全てロードせずに、テーブルが更新されたか否かを判定するために使用する。
+ */
+final class CodeTableState {
+
+    /** 結合した行数 */
+    private final long rowCount;
+
+    /** バージョンカラムの最大値 */
+    private final Object maxVersion;
+
+    /**
+     * コンストラクタ。
+     *
+     * @param rowCount 結合した行数
+     * @param maxVersion バージョンカラムの最大値
+     */
+    CodeTableState(long rowCount, Object maxVersion) {
+        this.rowCount = rowCount;
+        this.maxVersion = maxVersion;
+    }
+
+    /**
+     * 結合した行数を取得する。
+     *
+     * @return 結合した行数
+     */
+    long getRowCount() {
+        return rowCount;
+    }
+
+    /**
+     * バージョンカラムの最大値を取得する。
+     *
+     * @return バージョンカラムの最大値。バージョンカラムが設定されていない場合や行がない場合はnull
+     */
+    Object getMaxVersion() {
+        return maxVersion;
+    }
+}
@@ -0,0 +1,138 @@
+package nablarch.common.code;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.sql.Timestamp;
+import java.util.Date;
+
+/**
+ * バージョンカラムの値を扱うユーティリティ。<br/>
+ * <br/>
+ * JDBCドライバやカラムの型によって異なる型で取得されるバージョンを、比較可能な型に正規化する。
+ * 整数は{@link Long}、小数を含む数値は{@link BigDecimal}、日時は{@link Timestamp}に正規化し、
+ * 文字列はそのまま扱う。
+ */
+final class CodeVersion {
+
+    /** {@link Long}の最小値 */
+    private static final BigDecimal LONG_MIN = BigDecimal.valueOf(Long.MIN_VALUE);
+
+    /** {@link Long}の最大値 */
+    private static final BigDecimal LONG_MAX = BigDecimal.valueOf(Long.MAX_VALUE);
+
+    /**
+     * 隠蔽コンストラクタ。
+     */
+    private CodeVersion() {
+    }
+
+    /**
+     * バージョンを正規化する。
+     *
+     * @param version バージョンカラムから取得した値
+     * @return 正規化したバージョン。値がnullの場合はnull
+     * @throws IllegalStateException バージョンとして扱えない型の場合
+     */
+    static Object normalize(Object version) {
+        if (version == null || version instanceof Long || version instanceof String) {
+            return version;
+        }
+        if (version instanceof Integer || version instanceof Short || version instanceof Byte) {
+            return ((Number) version).longValue();
+        }
+        if (version instanceof Number) {
+            BigDecimal decimal = version instanceof BigDecimal ? (BigDecimal) version
+                    : version instanceof BigInteger ? new BigDecimal((BigInteger) version)
+                    : new BigDecimal(version.toString());
+            if (decimal.signum() == 0) {
+                return 0L;
+            }
+            decimal = decimal.stripTrailingZeros();
+            if (decimal.scale() <= 0 && decimal.compareTo(LONG_MIN) >= 0 && decimal.compareTo(LONG_MAX) <= 0) {
+                return decimal.longValue();
+            }
+            return decimal;
+        }
+        if (version instanceof Timestamp) {
+            return version;
+        }
+        if (version instanceof Date) {
+            return new Timestamp(((Date) version).getTime());
+        }
+        throw new IllegalStateException("unsupported version column type. "
+                + "use a numeric, date or character column. type = " + version.getClass().getName());
+    }
+
+    /**
+     * 正規化したバージョンを比較する。
+     *
+     * @param version バージョン
+     * @param other 比較するバージョン
+     * @return versionがotherより小さい場合は負の値、等しい場合は0、大きい場合は正の値
+     * @throws IllegalStateException 比較できない型の組み合わせの場合
+     */
+    static int compare(Object version, Object other) {
+        if (version instanceof Long && other instanceof Long) {
+            long value = (Long) version;
+            long otherValue = (Long) other;
+            return value < otherValue ? -1 : (value == otherValue ? 0 : 1);
+        }
+        if (version instanceof Number && other instanceof Number) {
+            return toDecimal((Number) version).compareTo(toDecimal((Number) other));
+        }
+        if (version instanceof Timestamp && other instanceof Timestamp) {
+            return ((Timestamp) version).compareTo((Timestamp) other);
+        }
+        if (version instanceof String && other instanceof String) {
+            return ((String) version).compareTo((String) other);
+        }
+        throw new IllegalStateException("version column types do not match. "
+                + "use the same kind of type for the version columns of CodeNameSchema and CodePatternSchema. "
+                + "version = " + version + ", other version = " + other);
+    }
+
+    /**
+     * 正規化したバージョンのうち、大きい方を取得する。
+     *
+     * @param version バージョン(nullの場合はotherを返す)
+     * @param other バージョン(nullの場合はversionを返す)
+     * @return 大きい方のバージョン
+     */
+    static Object max(Object version, Object other) {
+        if (version == null) {
+            return other;
+        }
+        if (other == null) {
+            return version;
+        }
+        return compare(other, version) > 0 ? other : version;
+    }
+
+    /**
+     * 差分ロードの基準として使用できるバージョンであることを検証する。<br/>
+     * <br/>
+     * 差分ロードは、前回のロード時の最大値より大きいバージョンの行をロードするため、
+     * バージョンはコミット順に大きくなる整数である必要がある。
+     * 日時はコミット順に割り当てられず同じ値になることもあるため、差分ロードの基準には使用できない。
+     *
+     * @param version 正規化したバージョン(nullの場合は検証しない)
+     * @throws IllegalStateException 整数でない場合
+     */
+    static void checkCommitOrdered(Object version) {
+        if (version != null && !(version instanceof Long)) {
+            throw new IllegalStateException("version column for loading changed codes must be an integer "
+                    + "that increases in commit order. version = " + version
+                    + ", type = " + version.getClass().getName());
+        }
+    }
+
+    /**
+     * 正規化した数値のバージョンを{@link BigDecimal}に変換する。
+     *
+     * @param version バージョン
+     * @return 変換した値
+     */
+    private static BigDecimal toDecimal(Number version) {
+        return version instanceof BigDecimal ? (BigDecimal) version : BigDecimal.valueOf(version.longValue());
+    }
+}
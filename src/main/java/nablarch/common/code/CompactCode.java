@@ -0,0 +1,352 @@
+package nablarch.common.code;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import nablarch.core.util.I18NUtil;
+
+/**
+ * コード値の序数をインデックスとする配列でコードを保持する実装。<br/>
+ * <br/>
+ * コード値はソート済みの配列に1つだけ保持し、名称などは言語毎の配列に保持する。
+ * パターンへの所属はコード値の序数をビット位置とするビットセットで保持する。
+ */
+final class CompactCode extends AbstractExtendedCode {
+
+    /** パターンのカラム名 */
+    private final String[] patternColumnNames;
+
+    /** オプション名称のカラム名 */
+    private final String[] optionNameColumnNames;
+
+    /** 全言語のコード値(ソート済み)。配列のインデックスをコード値の序数とする。 */
+    private final String[] values;
+
+    /** パターン毎の、パターンに含まれるコード値の序数のビットセット(全言語分) */
+    private final long[][] patternBits;
+
+    /** 言語 */
+    private final Locale[] locales;
+
+    /** 言語毎に持つ値(localesと同じ並び) */
+    private final CompactLangValues[] langValues;
+
+    /**
+     * コンストラクタ。
+     *
+     * @param loader コードを作成したローダ
+     * @param codeId コードID
+     * @param data コードを構成するデータのList。<br/>
+     *              データは言語を第1の条件としてソートされている必要がある。
+     */
+    CompactCode(BasicCodeLoader loader, String codeId, List<CodeRow> data) {
+        super(codeId);
+        patternColumnNames = loader.getPatternColumnNames();
+        optionNameColumnNames = loader.getOptionNameColumnNames();
+
+        Set<String> valueSet = new TreeSet<String>();
+        List<String> langs = new ArrayList<String>();
+        String lang = null;
+        for (CodeRow row : data) {
+            valueSet.add(row.getValue());
+            String currentLang = row.getLang();
+            if (!currentLang.equals(lang)) {
+                langs.add(currentLang);
+                lang = currentLang;
+            }
+        }
+        values = valueSet.toArray(new String[valueSet.size()]);
+
+        patternBits = new long[patternColumnNames.length][(values.length + 63) >>> 6];
+
+        Map<Locale, CompactLangValues> langValuesMap = new LinkedHashMap<Locale, CompactLangValues>();
+        int start = 0;
+        for (String currentLang : langs) {
+            int end = start;
+            while (end < data.size() && currentLang.equals(data.get(end).getLang())) {
+                end++;
+            }
+            langValuesMap.put(I18NUtil.createLocale(currentLang),
+                    new CompactLangValues(data.subList(start, end)));
+            start = end;
+        }
+        loader.linkFallbackLocales(langValuesMap);
+
+        locales = langValuesMap.keySet().toArray(new Locale[langValuesMap.size()]);
+        langValues = langValuesMap.values().toArray(new CompactLangValues[langValuesMap.size()]);
+    }
+
+    /**
+     * コード値の序数を取得する。
+     *
+     * @param value コード値
+     * @return コード値の序数。コード値が存在しない場合は負の値
+     */
+    private int ordinalOf(String value) {
+        if (value == null) {
+            return -1;
+        }
+        return Arrays.binarySearch(values, value);
+    }
+
+    /**
+     * 言語毎に持つ値を取得する。
+     *
+     * @param locale 言語
+     * @return 言語毎に持つ値。言語が存在しない場合はnull
+     */
+    private CompactLangValues findLangValues(Locale locale) {
+        for (int i = 0; i < locales.length; i++) {
+            if (locales[i].equals(locale)) {
+                return langValues[i];
+            }
+        }
+        return null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    boolean hasLocale(Locale locale) {
+        return findLangValues(locale) != null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public boolean contains(String value) {
+        return ordinalOf(value) >= 0;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public int patternHandle(String pattern) {
+        return BasicCodeLoader.indexOfIgnoreCase(patternColumnNames, pattern);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public int optionHandle(String optionColumnName) {
+        return BasicCodeLoader.indexOfIgnoreCase(optionNameColumnNames, optionColumnName);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public boolean isInPattern(int patternHandle, String value) {
+        int ordinal = ordinalOf(value);
+        return patternHandle >= 0 && patternHandle < patternBits.length && ordinal >= 0
+                && (patternBits[patternHandle][ordinal >>> 6] & (1L << ordinal)) != 0;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public String findName(String value, Locale locale) {
+        CompactLangValues langValue = findLangValues(locale);
+        int position = langValue == null ? -1 : langValue.positionOf(ordinalOf(value));
+        return position < 0 ? null : langValue.names[position];
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public String findShortName(String value, Locale locale) {
+        CompactLangValues langValue = findLangValues(locale);
+        int position = langValue == null ? -1 : langValue.positionOf(ordinalOf(value));
+        return position < 0 ? null : langValue.shortNames[position];
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public String findOptionalName(String value, int optionHandle, Locale locale) {
+        CompactLangValues langValue = findLangValues(locale);
+        if (langValue == null || optionHandle < 0 || optionHandle >= langValue.optionNames.length) {
+            return null;
+        }
+        int position = langValue.positionOf(ordinalOf(value));
+        return position < 0 ? null : langValue.optionNames[optionHandle][position];
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public List<String> findValues(Locale locale) {
+        CompactLangValues langValue = findLangValues(locale);
+        return langValue == null ? null : langValue.valueList;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public List<String> findValues(int patternHandle, Locale locale) {
+        CompactLangValues langValue = findLangValues(locale);
+        if (langValue == null || patternHandle < 0 || patternHandle >= langValue.patternLists.length) {
+            return null;
+        }
+        return langValue.patternLists[patternHandle];
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public int indexOf(String value, Locale locale) {
+        CompactLangValues langValue = findLangValues(locale);
+        return langValue == null ? -1 : langValue.positionOf(ordinalOf(value));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public String findValueByName(String name, Locale locale) {
+        CompactLangValues langValue = findLangValues(locale);
+        return langValue == null ? null : langValue.getReverseIndex().findValueByName(name);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public String findValueByShortName(String shortName, Locale locale) {
+        CompactLangValues langValue = findLangValues(locale);
+        return langValue == null ? null : langValue.getReverseIndex().findValueByShortName(shortName);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    String findValueByOptionalName(String optionalName, int optionHandle, Locale locale) {
+        CompactLangValues langValue = findLangValues(locale);
+        if (langValue == null) {
+            return null;
+        }
+        return langValue.getReverseIndex().findValueByOptionalName(optionalName, optionHandle);
+    }
+
+    /**
+     * 言語毎に持つ値を配列で保持するクラス。<br/>
+     * <br/>
+     * 名称などの配列は、言語内のソート順での位置をインデックスとする。
+     */
+    private final class CompactLangValues {
+
+        /** ソート順での位置毎のコード値の序数 */
+        private final int[] order;
+
+        /** コード値の序数毎のソート順での位置(存在しない場合は-1) */
+        private final int[] positions;
+
+        /** 名称 */
+        private final String[] names;
+
+        /** 略称 */
+        private final String[] shortNames;
+
+        /** オプション名称カラム毎のオプション名称 */
+        private final String[][] optionNames;
+
+        /** 全てのコード値のList */
+        private final OrdinalList valueList;
+
+        /** パターン毎のコード値のList */
+        private final OrdinalList[] patternLists;
+
+        /** 名称などからコード値を逆引きする索引(最初の逆引き時に作成する) */
+        private volatile ReverseIndex reverseIndex;
+
+        /**
+         * コンストラクタ。
+         *
+         * @param data コードを構成するデータのList。<br/>
+         *              データはソート順を第1の条件としてソートされている必要がある。
+         */
+        private CompactLangValues(List<CodeRow> data) {
+            int size = data.size();
+            order = new int[size];
+            positions = new int[values.length];
+            Arrays.fill(positions, -1);
+            names = new String[size];
+            shortNames = new String[size];
+            optionNames = new String[optionNameColumnNames.length][size];
+            int[][] patternOrdinals = new int[patternColumnNames.length][size];
+            int[] patternCounts = new int[patternColumnNames.length];
+
+            for (int position = 0; position < size; position++) {
+                CodeRow row = data.get(position);
+                int ordinal = ordinalOf(row.getValue());
+                order[position] = ordinal;
+                positions[ordinal] = position;
+                names[position] = row.getName();
+                shortNames[position] = row.getShortName();
+
+                for (int i = 0; i < optionNameColumnNames.length; i++) {
+                    optionNames[i][position] = row.getOptionName(i);
+                }
+
+                for (int i = 0; i < patternColumnNames.length; i++) {
+                    if (row.isPatternValid(i)) {
+                        patternOrdinals[i][patternCounts[i]++] = ordinal;
+                        patternBits[i][ordinal >>> 6] |= 1L << ordinal;
+                    }
+                }
+            }
+
+            valueList = new OrdinalList(values, order);
+            patternLists = new OrdinalList[patternColumnNames.length];
+            for (int i = 0; i < patternColumnNames.length; i++) {
+                patternLists[i] = new OrdinalList(values,
+                        Arrays.copyOf(patternOrdinals[i], patternCounts[i]));
+            }
+        }
+
+        /**
+         * コード値の序数からソート順での位置を取得する。
+         *
+         * @param ordinal コード値の序数
+         * @return ソート順での位置。この言語にコード値が存在しない場合は-1
+         */
+        private int positionOf(int ordinal) {
+            if (ordinal < 0) {
+                return -1;
+            }
+            return positions[ordinal];
+        }
+
+        /**
+         * 名称などからコード値を逆引きする索引を取得する。索引が作成されていない場合は作成する。
+         *
+         * @return 逆引きする索引
+         */
+        private ReverseIndex getReverseIndex() {
+            ReverseIndex result = reverseIndex;
+            if (result == null) {
+                synchronized (this) {
+                    result = reverseIndex;
+                    if (result == null) {
+                        result = new ReverseIndex(optionNames.length);
+                        String[] positionOptionNames = new String[optionNames.length];
+                        for (int position = 0; position < order.length; position++) {
+                            for (int i = 0; i < optionNames.length; i++) {
+                                positionOptionNames[i] = optionNames[i][position];
+                            }
+                            result.add(values[order[position]], names[position], shortNames[position],
+                                    positionOptionNames);
+                        }
+                        reverseIndex = result;
+                    }
+                }
+            }
+            return result;
+        }
+    }
+}
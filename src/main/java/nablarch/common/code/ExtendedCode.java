@@ -0,0 +1,190 @@
+package nablarch.common.code;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * {@link Code}に、参照処理のバリエーションを追加したインタフェース。<br/>
+ * <br/>
+ * {@link BasicCodeLoader}がロードするコードは本インタフェースを実装する。
+ */
+public interface ExtendedCode extends Code {
+
+    /**
+     * コード値に対応する名称を取得する。<br/>
+     * <br/>
+     * {@link #getName(String, Locale)}と異なり、名称が存在しない場合に例外を送出しない。
+     *
+     * @param value コード値
+     * @param locale 言語
+     * @return 名称。言語またはコード値が存在しない場合はnull
+     */
+    String findName(String value, Locale locale);
+
+    /**
+     * コード値に対応する略称を取得する。<br/>
+     * <br/>
+     * {@link #getShortName(String, Locale)}と異なり、略称が存在しない場合に例外を送出しない。
+     *
+     * @param value コード値
+     * @param locale 言語
+     * @return 略称。言語またはコード値が存在しない場合はnull
+     */
+    String findShortName(String value, Locale locale);
+
+    /**
+     * コード値に対応するオプション名称を取得する。<br/>
+     * <br/>
+     * {@link #getOptionalName(String, String, Locale)}と異なり、オプション名称が存在しない場合に例外を送出しない。
+     *
+     * @param value コード値
+     * @param optionColumnName オプション名称カラムの名前
+     * @param locale 言語
+     * @return オプション名称。言語、オプション名称カラムまたはコード値が存在しない場合はnull
+     */
+    String findOptionalName(String value, String optionColumnName, Locale locale);
+
+    /**
+     * 言語に対応するコード値のListをソート順で取得する。<br/>
+     * <br/>
+     * {@link #getValues(Locale)}と異なり、言語が存在しない場合に例外を送出しない。
+     *
+     * @param locale 言語
+     * @return コード値のList。言語が存在しない場合はnull
+     */
+    List<String> findValues(Locale locale);
+
+    /**
+     * パターンに含まれるコード値のListをソート順で取得する。<br/>
+     * <br/>
+     * {@link #getValues(String, Locale)}と異なり、言語またはパターンが存在しない場合に例外を送出しない。
+     *
+     * @param pattern パターン
+     * @param locale 言語
+     * @return コード値のList。言語またはパターンが存在しない場合はnull
+     */
+    List<String> findValues(String pattern, Locale locale);
+
+    /**
+     * パターンにコード値が含まれるか否かを判定する。<br/>
+     * <br/>
+     * {@link #contains(String, String)}と異なり、パターンが存在しない場合に例外を送出しない。
+     *
+     * @param pattern パターン
+     * @param value コード値
+     * @return パターンにコード値が含まれる場合true。パターンが存在しない場合はfalse
+     */
+    boolean isInPattern(String pattern, String value);
+
+    /**
+     * コード値の、言語毎のソート順での位置を取得する。<br/>
+     * <br/>
+     * 位置はコードのロード時に作成した索引から取得するため、{@link #getValues(Locale)}の
+     * {@link List#indexOf(Object)}と異なりコード値の数に比例した時間はかからない。
+     *
+     * @param value コード値
+     * @param locale 言語
+     * @return {@link #getValues(Locale)}でのコード値の位置(0始まり)。言語またはコード値が存在しない場合は-1
+     */
+    int indexOf(String value, Locale locale);
+
+    /**
+     * コード値を言語毎のソート順で比較するコンパレータを取得する。<br/>
+     * <br/>
+     * 比較は{@link #indexOf(String, Locale)}で取得した位置で行う。
+     * 言語にコード値が存在しない場合は、存在するコード値より後ろとし、存在しないコード値同士は文字列として比較する。
+     * nullは最後とする。
+     *
+     * @param locale 言語
+     * @return コンパレータ
+     * @throws IllegalArgumentException 言語が存在しない場合
+     */
+    Comparator<String> getComparator(Locale locale);
+
+    /**
+     * 名称に対応するコード値を取得する(逆引き)。<br/>
+     * <br/>
+     * 同じ名称を持つコード値が複数ある場合は、ソート順で最初のコード値を返す。
+     *
+     * @param name 名称
+     * @param locale 言語
+     * @return コード値。言語または名称が存在しない場合はnull
+     */
+    String findValueByName(String name, Locale locale);
+
+    /**
+     * 略称に対応するコード値を取得する(逆引き)。<br/>
+     * <br/>
+     * 同じ略称を持つコード値が複数ある場合は、ソート順で最初のコード値を返す。
+     *
+     * @param shortName 略称
+     * @param locale 言語
+     * @return コード値。言語または略称が存在しない場合はnull
+     */
+    String findValueByShortName(String shortName, Locale locale);
+
+    /**
+     * オプション名称に対応するコード値を取得する(逆引き)。<br/>
+     * <br/>
+     * 同じオプション名称を持つコード値が複数ある場合は、ソート順で最初のコード値を返す。
+     *
+     * @param optionalName オプション名称
+     * @param optionColumnName オプション名称カラムの名前
+     * @param locale 言語
+     * @return コード値。言語、オプション名称カラムまたはオプション名称が存在しない場合はnull
+     */
+    String findValueByOptionalName(String optionalName, String optionColumnName, Locale locale);
+
+    /**
+     * パターンのハンドルを取得する。<br/>
+     * <br/>
+     * ハンドルはパターン名をロード時に解決した序数で、同じローダでロードしたコードで共通に使用できる。
+     * 繰り返し参照する場合は、ループの外で1回取得したハンドルを使用すると、参照のたびにパターン名を解決する必要がない。
+     *
+     * @param pattern パターン(大文字小文字は区別しない)
+     * @return パターンのハンドル。パターンが存在しない場合は-1
+     */
+    int patternHandle(String pattern);
+
+    /**
+     * オプション名称カラムのハンドルを取得する。<br/>
+     * <br/>
+     * ハンドルはオプション名称カラム名をロード時に解決した序数で、同じローダでロードしたコードで共通に使用できる。
+     *
+     * @param optionColumnName オプション名称カラムの名前(大文字小文字は区別しない)
+     * @return オプション名称カラムのハンドル。オプション名称カラムが存在しない場合は-1
+     */
+    int optionHandle(String optionColumnName);
+
+    /**
+     * パターンのハンドルで、パターンにコード値が含まれるか否かを判定する。
+     *
+     * @param patternHandle パターンのハンドル
+     * @param value コード値
+     * @return パターンにコード値が含まれる場合true。ハンドルが不正な場合はfalse
+     * @see #patternHandle(String)
+     */
+    boolean isInPattern(int patternHandle, String value);
+
+    /**
+     * パターンのハンドルで、パターンに含まれるコード値のListをソート順で取得する。
+     *
+     * @param patternHandle パターンのハンドル
+     * @param locale 言語
+     * @return コード値のList。言語が存在しない場合、またはハンドルが不正な場合はnull
+     * @see #patternHandle(String)
+     */
+    List<String> findValues(int patternHandle, Locale locale);
+
+    /**
+     * オプション名称カラムのハンドルで、コード値に対応するオプション名称を取得する。
+     *
+     * @param value コード値
+     * @param optionHandle オプション名称カラムのハンドル
+     * @param locale 言語
+     * @return オプション名称。言語またはコード値が存在しない場合、またはハンドルが不正な場合はnull
+     * @see #optionHandle(String)
+     */
+    String findOptionalName(String value, int optionHandle, Locale locale);
+}
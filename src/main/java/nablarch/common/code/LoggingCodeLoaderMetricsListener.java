@@ -0,0 +1,72 @@
+package nablarch.common.code;
+
+import java.util.concurrent.TimeUnit;
+
+import nablarch.core.log.Logger;
+import nablarch.core.log.LoggerManager;
+
+/**
+ * 計測結果の要約をログに出力する{@link CodeLoaderMetricsListener}の実装。<br/>
+ * <br/>
+ * 複数のコードのロードはINFOレベル、1つのコードのロードはDEBUGレベルで出力する。
+ * 処理時間が{@link #setSlowThresholdMillis(long)}で設定した閾値以上の場合は、WARNレベルで出力する。
+ */
+public class LoggingCodeLoaderMetricsListener implements CodeLoaderMetricsListener {
+
+    /** ロガー */
+    private static final Logger LOGGER = LoggerManager.get(LoggingCodeLoaderMetricsListener.class);
+
+    /** WARNレベルで出力する処理時間の閾値(ミリ秒) */
+    private long slowThresholdMillis = Long.MAX_VALUE;
+
+    /**
+     * WARNレベルで出力する処理時間の閾値を設定する。<br/>
+     * <br/>
+     * デフォルトは設定なし(WARNレベルで出力しない)。
+     *
+     * @param slowThresholdMillis 処理時間の閾値(ミリ秒)
+     */
+    public void setSlowThresholdMillis(long slowThresholdMillis) {
+        if (slowThresholdMillis < 1) {
+            throw new IllegalArgumentException("slowThresholdMillis must be greater than 0. "
+                    + "slowThresholdMillis = " + slowThresholdMillis);
+        }
+        this.slowThresholdMillis = slowThresholdMillis;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void loadCompleted(CodeLoadMetrics metrics) {
+        if (isSlow(metrics.getTotalNanos())) {
+            LOGGER.logWarn("code loading was slow. " + metrics);
+        } else if (LOGGER.isInfoEnabled()) {
+            LOGGER.logInfo("codes were loaded. " + metrics);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void valueLoaded(String codeId, long elapsedNanos, boolean found) {
+        if (isSlow(elapsedNanos)) {
+            LOGGER.logWarn("code loading was slow. code id = " + codeId
+                    + ", found = " + found
+                    + ", elapsed = " + TimeUnit.NANOSECONDS.toMillis(elapsedNanos) + "ms");
+        } else if (LOGGER.isDebugEnabled()) {
+            LOGGER.logDebug("code was loaded. code id = " + codeId
+                    + ", found = " + found
+                    + ", elapsed = " + TimeUnit.NANOSECONDS.toMicros(elapsedNanos) + "us");
+        }
+    }
+
+    /**
+     * 処理時間が閾値以上か否かを判定する。
+     *
+     * @param elapsedNanos 処理時間(ナノ秒)
+     * @return 閾値以上の場合true
+     */
+    private boolean isSlow(long elapsedNanos) {
+        return TimeUnit.NANOSECONDS.toMillis(elapsedNanos) >= slowThresholdMillis;
+    }
+}
@@ -0,0 +1,590 @@
+package nablarch.common.code;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+import nablarch.core.util.I18NUtil;
+
+/**
+ * ヒープ外の領域にエンコードしたコードを参照するビュー。<br/>
+ * <br/>
+ * 名称などの文字列は参照時にデコードするため、ヒープ上にはコードIDと領域内の位置のみを保持する。<br/>
+ * <br/>
+ * 1コード分の領域(セグメント)の形式は以下の通り(位置はセグメントの先頭からの相対位置)。
+ * <pre>
+ * header         : valueCount(V) localeCount(L) optionCount(O) patternCount(P) patternWords(W)
+ * values         : int[V]      コード値の文字列の位置(UTF-8のバイト列の昇順)
+ * patternBits    : long[P][W]  パターン毎の、パターンに含まれるコード値の序数のビットセット
+ * locales        : {int localeId, int blockOffset}[L]
+ * locale block   : count(C) order[C] positions[V] nameRefs[V] shortNameRefs[V] optionRefs[O][V]
+ * string pool    : {int byteLength, byte[] utf8}...
+ * </pre>
+ * orderはソート順での位置毎のコード値の序数、positionsはコード値の序数毎のソート順での位置を表す。
+ * 文字列の位置およびソート順での位置が-1の場合は、値が存在しないことを表す。
+ */
+final class MappedCode extends AbstractExtendedCode {
+
+    /** 文字列のエンコーディング */
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    /** ヘッダのサイズ */
+    private static final int HEADER_SIZE = 20;
+
+    /** コード値の数の位置 */
+    private static final int VALUE_COUNT = 0;
+
+    /** 言語の数の位置 */
+    private static final int LOCALE_COUNT = 4;
+
+    /** オプション名称の数の位置 */
+    private static final int OPTION_COUNT = 8;
+
+    /** パターンの数の位置 */
+    private static final int PATTERN_COUNT = 12;
+
+    /** パターン毎のビットセットの要素数の位置 */
+    private static final int PATTERN_WORDS = 16;
+
+    /** UTF-8のバイト列を符号なしで比較するコンパレータ */
+    private static final Comparator<byte[]> UNSIGNED_BYTES = new Comparator<byte[]>() {
+        public int compare(byte[] o1, byte[] o2) {
+            int length = Math.min(o1.length, o2.length);
+            for (int i = 0; i < length; i++) {
+                int diff = (o1[i] & 0xFF) - (o2[i] & 0xFF);
+                if (diff != 0) {
+                    return diff;
+                }
+            }
+            return o1.length - o2.length;
+        }
+    };
+
+    /** コードを作成したローダ */
+    private final MappedCodeLoader loader;
+
+    /** コードを格納した領域 */
+    private final ByteBuffer buffer;
+
+    /** セグメントの開始位置 */
+    private final int base;
+
+    /**
+     * コンストラクタ。
+     *
+     * @param loader コードを作成したローダ
+     * @param buffer コードを格納した領域
+     * @param base セグメントの開始位置
+     * @param codeId コードID
+     */
+    MappedCode(MappedCodeLoader loader, ByteBuffer buffer, int base, String codeId) {
+        super(codeId);
+        this.loader = loader;
+        this.buffer = buffer;
+        this.base = base;
+    }
+
+    /**
+     * コードを構成するデータをセグメントにエンコードする。
+     *
+     * @param loader コードを作成するローダ
+     * @param data コードを構成するデータのList。<br/>
+     *              データは言語、ソート順の順にソートされている必要がある。
+     * @return エンコードしたセグメント
+     */
+    static byte[] encode(MappedCodeLoader loader, List<CodeRow> data) {
+        int optionCount = loader.getOptionCount();
+        int patternCount = loader.getPatternCount();
+
+        // コード値をUTF-8のバイト列の昇順に並べ、パターンは最初に出現した行の値を使用する
+        Map<byte[], CodeRow> valueRows = new TreeMap<byte[], CodeRow>(UNSIGNED_BYTES);
+        List<List<CodeRow>> langData = new ArrayList<List<CodeRow>>();
+        String lang = null;
+        for (CodeRow row : data) {
+            byte[] valueBytes = row.getValue().getBytes(UTF_8);
+            if (!valueRows.containsKey(valueBytes)) {
+                valueRows.put(valueBytes, row);
+            }
+            if (!row.getLang().equals(lang)) {
+                langData.add(new ArrayList<CodeRow>());
+                lang = row.getLang();
+            }
+            langData.get(langData.size() - 1).add(row);
+        }
+        int valueCount = valueRows.size();
+        int patternWords = (valueCount + 63) >>> 6;
+        int localeCount = langData.size();
+
+        int valuesOffset = HEADER_SIZE;
+        int patternBitsOffset = valuesOffset + 4 * valueCount;
+        int localesOffset = patternBitsOffset + 8 * patternCount * patternWords;
+        int blockOffset = localesOffset + 8 * localeCount;
+        int[] blockOffsets = new int[localeCount];
+        for (int i = 0; i < localeCount; i++) {
+            blockOffsets[i] = blockOffset;
+            blockOffset += 4 + 4 * langData.get(i).size() + 4 * valueCount * (3 + optionCount);
+        }
+        StringPool pool = new StringPool(blockOffset);
+
+        ByteBuffer segment = ByteBuffer.allocate(blockOffset);
+        segment.putInt(VALUE_COUNT, valueCount);
+        segment.putInt(LOCALE_COUNT, localeCount);
+        segment.putInt(OPTION_COUNT, optionCount);
+        segment.putInt(PATTERN_COUNT, patternCount);
+        segment.putInt(PATTERN_WORDS, patternWords);
+
+        Map<String, Integer> ordinals = new HashMap<String, Integer>();
+        long[][] patternBits = new long[patternCount][patternWords];
+        int ordinal = 0;
+        for (CodeRow row : valueRows.values()) {
+            ordinals.put(row.getValue(), ordinal);
+            segment.putInt(valuesOffset + 4 * ordinal, pool.add(row.getValue()));
+            for (int i = 0; i < patternCount; i++) {
+                if (row.isPatternValid(i)) {
+                    patternBits[i][ordinal >>> 6] |= 1L << ordinal;
+                }
+            }
+            ordinal++;
+        }
+        for (int i = 0; i < patternCount; i++) {
+            for (int j = 0; j < patternWords; j++) {
+                segment.putLong(patternBitsOffset + 8 * (i * patternWords + j), patternBits[i][j]);
+            }
+        }
+
+        for (int i = 0; i < localeCount; i++) {
+            List<CodeRow> rows = langData.get(i);
+            Locale locale = I18NUtil.createLocale(rows.get(0).getLang());
+            segment.putInt(localesOffset + 8 * i, loader.localeIdOf(locale));
+            segment.putInt(localesOffset + 8 * i + 4, blockOffsets[i]);
+
+            int block = blockOffsets[i];
+            int positions = block + 4 + 4 * rows.size();
+            int nameRefs = positions + 4 * valueCount;
+            int shortNameRefs = nameRefs + 4 * valueCount;
+            int optionRefs = shortNameRefs + 4 * valueCount;
+            for (int j = positions; j < optionRefs + 4 * valueCount * optionCount; j += 4) {
+                segment.putInt(j, -1);
+            }
+            segment.putInt(block, rows.size());
+            for (int position = 0; position < rows.size(); position++) {
+                CodeRow row = rows.get(position);
+                int valueOrdinal = ordinals.get(row.getValue());
+                segment.putInt(block + 4 + 4 * position, valueOrdinal);
+                segment.putInt(positions + 4 * valueOrdinal, position);
+                segment.putInt(nameRefs + 4 * valueOrdinal, pool.add(row.getName()));
+                segment.putInt(shortNameRefs + 4 * valueOrdinal, pool.add(row.getShortName()));
+                for (int j = 0; j < optionCount; j++) {
+                    segment.putInt(optionRefs + 4 * (j * valueCount + valueOrdinal), pool.add(row.getOptionName(j)));
+                }
+            }
+        }
+
+        byte[] fixed = segment.array();
+        byte[] strings = pool.toByteArray();
+        byte[] bytes = new byte[fixed.length + strings.length];
+        System.arraycopy(fixed, 0, bytes, 0, fixed.length);
+        System.arraycopy(strings, 0, bytes, fixed.length, strings.length);
+        return bytes;
+    }
+
+    /**
+     * セグメント内の文字列を重複なく格納するプール。
+     */
+    private static final class StringPool {
+
+        /** プールのセグメント内の開始位置 */
+        private final int offset;
+
+        /** 格納済みの文字列の位置 */
+        private final Map<String, Integer> refs = new HashMap<String, Integer>();
+
+        /** 格納済みの文字列 */
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+        /**
+         * コンストラクタ。
+         *
+         * @param offset プールのセグメント内の開始位置
+         */
+        private StringPool(int offset) {
+            this.offset = offset;
+        }
+
+        /**
+         * 文字列を格納する。
+         *
+         * @param value 文字列
+         * @return 文字列のセグメント内の位置。nullの場合は-1
+         */
+        private int add(String value) {
+            if (value == null) {
+                return -1;
+            }
+            Integer ref = refs.get(value);
+            if (ref == null) {
+                ref = offset + bytes.size();
+                byte[] encoded = value.getBytes(UTF_8);
+                bytes.write(encoded.length >>> 24);
+                bytes.write(encoded.length >>> 16);
+                bytes.write(encoded.length >>> 8);
+                bytes.write(encoded.length);
+                bytes.write(encoded, 0, encoded.length);
+                refs.put(value, ref);
+            }
+            return ref;
+        }
+
+        /**
+         * 格納済みの文字列を取得する。
+         *
+         * @return 格納済みの文字列
+         */
+        private byte[] toByteArray() {
+            return bytes.toByteArray();
+        }
+    }
+
+    /**
+     * セグメント内のint値を取得する。
+     *
+     * @param offset セグメント内の位置
+     * @return int値
+     */
+    private int intAt(int offset) {
+        return buffer.getInt(base + offset);
+    }
+
+    /**
+     * セグメント内の文字列をデコードする。
+     *
+     * @param ref 文字列のセグメント内の位置
+     * @return 文字列。位置が-1の場合はnull
+     */
+    private String stringAt(int ref) {
+        if (ref < 0) {
+            return null;
+        }
+        int start = base + ref + 4;
+        byte[] bytes = new byte[buffer.getInt(base + ref)];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = buffer.get(start + i);
+        }
+        return new String(bytes, UTF_8);
+    }
+
+    /**
+     * コード値の序数を取得する。
+     *
+     * @param value コード値
+     * @return コード値の序数。コード値が存在しない場合は-1
+     */
+    private int ordinalOf(String value) {
+        if (value == null) {
+            return -1;
+        }
+        byte[] key = value.getBytes(UTF_8);
+        int low = 0;
+        int high = intAt(VALUE_COUNT) - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int cmp = compareString(intAt(HEADER_SIZE + 4 * mid), key);
+            if (cmp < 0) {
+                low = mid + 1;
+            } else if (cmp > 0) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * セグメント内の文字列とバイト列を、UTF-8のバイト列として符号なしで比較する。
+     *
+     * @param ref 文字列のセグメント内の位置
+     * @param key 比較するバイト列
+     * @return セグメント内の文字列が小さい場合は負の値、等しい場合は0、大きい場合は正の値
+     */
+    private int compareString(int ref, byte[] key) {
+        int length = buffer.getInt(base + ref);
+        int start = base + ref + 4;
+        int min = Math.min(length, key.length);
+        for (int i = 0; i < min; i++) {
+            int diff = (buffer.get(start + i) & 0xFF) - (key[i] & 0xFF);
+            if (diff != 0) {
+                return diff;
+            }
+        }
+        return length - key.length;
+    }
+
+    /**
+     * 言語毎のブロックの位置を取得する。<br/>
+     * <br/>
+     * 言語が存在しない場合は、ローダに設定されたフォールバック先の言語を順に探す。
+     *
+     * @param locale 言語
+     * @return ブロックのセグメント内の位置。言語が存在しない場合は-1
+     */
+    private int findBlock(Locale locale) {
+        int block = findBlockExactly(locale);
+        if (block < 0) {
+            for (Locale fallback : loader.getLocaleFallbacks(locale)) {
+                block = findBlockExactly(fallback);
+                if (block >= 0) {
+                    break;
+                }
+            }
+        }
+        return block;
+    }
+
+    /**
+     * フォールバックせずに言語毎のブロックの位置を取得する。
+     *
+     * @param locale 言語
+     * @return ブロックのセグメント内の位置。言語が存在しない場合は-1
+     */
+    private int findBlockExactly(Locale locale) {
+        int localeId = loader.findLocaleId(locale);
+        if (localeId < 0) {
+            return -1;
+        }
+        int localesOffset = localesOffset();
+        int localeCount = intAt(LOCALE_COUNT);
+        for (int i = 0; i < localeCount; i++) {
+            if (intAt(localesOffset + 8 * i) == localeId) {
+                return intAt(localesOffset + 8 * i + 4);
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    boolean hasLocale(Locale locale) {
+        return findBlock(locale) >= 0;
+    }
+
+    /**
+     * 言語の表の位置を取得する。
+     *
+     * @return 言語の表のセグメント内の位置
+     */
+    private int localesOffset() {
+        return HEADER_SIZE + 4 * intAt(VALUE_COUNT) + 8 * intAt(PATTERN_COUNT) * intAt(PATTERN_WORDS);
+    }
+
+    /**
+     * ブロック内の文字列の位置の表から文字列を取得する。
+     *
+     * @param block ブロックのセグメント内の位置
+     * @param table 表の番号(0: 名称、1: 略称、2以降: オプション名称)
+     * @param value コード値
+     * @return 文字列。コード値が存在しない場合はnull
+     */
+    private String findString(int block, int table, String value) {
+        int ordinal = ordinalOf(value);
+        if (block < 0 || ordinal < 0) {
+            return null;
+        }
+        return stringAt(intAt(tableOffset(block, table) + 4 * ordinal));
+    }
+
+    /**
+     * ブロック内の、コード値の序数毎の表の位置を取得する。
+     *
+     * @param block ブロックのセグメント内の位置
+     * @param table 表の番号(-1: ソート順での位置、0: 名称、1: 略称、2以降: オプション名称)
+     * @return 表のセグメント内の位置
+     */
+    private int tableOffset(int block, int table) {
+        return block + 4 + 4 * intAt(block) + 4 * intAt(VALUE_COUNT) * (table + 1);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public boolean contains(String value) {
+        return ordinalOf(value) >= 0;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public int patternHandle(String pattern) {
+        return loader.patternIndexOf(pattern);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public int optionHandle(String optionColumnName) {
+        return loader.optionIndexOf(optionColumnName);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public boolean isInPattern(int patternHandle, String value) {
+        if (patternHandle < 0 || patternHandle >= loader.getPatternCount()) {
+            return false;
+        }
+        int ordinal = ordinalOf(value);
+        return ordinal >= 0 && isInPattern(patternHandle, ordinal);
+    }
+
+    /**
+     * コード値の序数がパターンに含まれるか否かを判定する。
+     *
+     * @param patternIndex パターンの序数
+     * @param ordinal コード値の序数
+     * @return パターンに含まれる場合true
+     */
+    private boolean isInPattern(int patternIndex, int ordinal) {
+        int patternWords = intAt(PATTERN_WORDS);
+        int offset = HEADER_SIZE + 4 * intAt(VALUE_COUNT) + 8 * (patternIndex * patternWords + (ordinal >>> 6));
+        return (buffer.getLong(base + offset) & (1L << ordinal)) != 0;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public String findName(String value, Locale locale) {
+        return findString(findBlock(locale), 0, value);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public String findShortName(String value, Locale locale) {
+        return findString(findBlock(locale), 1, value);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public String findOptionalName(String value, int optionHandle, Locale locale) {
+        if (optionHandle < 0 || optionHandle >= loader.getOptionCount()) {
+            return null;
+        }
+        return findString(findBlock(locale), 2 + optionHandle, value);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public List<String> findValues(Locale locale) {
+        int block = findBlock(locale);
+        return block < 0 ? null : values(block, -1);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public List<String> findValues(int patternHandle, Locale locale) {
+        int block = findBlock(locale);
+        if (block < 0 || patternHandle < 0 || patternHandle >= loader.getPatternCount()) {
+            return null;
+        }
+        return values(block, patternHandle);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public int indexOf(String value, Locale locale) {
+        int block = findBlock(locale);
+        int ordinal = ordinalOf(value);
+        if (block < 0 || ordinal < 0) {
+            return -1;
+        }
+        return intAt(tableOffset(block, -1) + 4 * ordinal);
+    }
+
+    /**
+     * {@inheritDoc}<br/>
+     * <br/>
+     * 索引を作成せず、言語のコード値を走査して検索する。
+     */
+    public String findValueByName(String name, Locale locale) {
+        return findValueByString(findBlock(locale), 0, name);
+    }
+
+    /**
+     * {@inheritDoc}<br/>
+     * <br/>
+     * 索引を作成せず、言語のコード値を走査して検索する。
+     */
+    public String findValueByShortName(String shortName, Locale locale) {
+        return findValueByString(findBlock(locale), 1, shortName);
+    }
+
+    /**
+     * {@inheritDoc}<br/>
+     * <br/>
+     * 索引を作成せず、言語のコード値を走査して検索する。
+     */
+    @Override
+    String findValueByOptionalName(String optionalName, int optionHandle, Locale locale) {
+        return findValueByString(findBlock(locale), 2 + optionHandle, optionalName);
+    }
+
+    /**
+     * ブロック内の文字列の位置の表を、ソート順に走査してコード値を検索する。<br/>
+     * <br/>
+     * 文字列はデコードせず、UTF-8のバイト列として比較する。
+     *
+     * @param block ブロックのセグメント内の位置
+     * @param table 表の番号(0: 名称、1: 略称、2以降: オプション名称)
+     * @param string 検索する文字列
+     * @return コード値。見つからない場合はnull
+     */
+    private String findValueByString(int block, int table, String string) {
+        if (block < 0 || string == null) {
+            return null;
+        }
+        byte[] key = string.getBytes(UTF_8);
+        int tableOffset = tableOffset(block, table);
+        int count = intAt(block);
+        for (int position = 0; position < count; position++) {
+            int ordinal = intAt(block + 4 + 4 * position);
+            int ref = intAt(tableOffset + 4 * ordinal);
+            if (ref >= 0 && compareString(ref, key) == 0) {
+                return stringAt(intAt(HEADER_SIZE + 4 * ordinal));
+            }
+        }
+        return null;
+    }
+
+    /**
+     * ブロック内のコード値をソート順にデコードする。
+     *
+     * @param block ブロックのセグメント内の位置
+     * @param patternIndex 絞り込むパターンの序数。絞り込まない場合は-1
+     * @return コード値のList
+     */
+    private List<String> values(int block, int patternIndex) {
+        int count = intAt(block);
+        List<String> values = new ArrayList<String>(count);
+        for (int position = 0; position < count; position++) {
+            int ordinal = intAt(block + 4 + 4 * position);
+            if (patternIndex < 0 || isInPattern(patternIndex, ordinal)) {
+                values.add(stringAt(intAt(HEADER_SIZE + 4 * ordinal)));
+            }
+        }
+        return Collections.unmodifiableList(values);
+    }
+}
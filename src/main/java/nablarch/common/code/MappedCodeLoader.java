@@ -0,0 +1,320 @@
+package nablarch.common.code;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import nablarch.core.cache.StaticDataLoader;
+import nablarch.core.repository.initialization.Initializable;
+
+/**
+ * コードをヒープ外の領域に格納するローダ。<br/>
+ * <br/>
+ * {@link BasicCodeLoader}でデータベースから検索した行データを、コード毎に文字列プールと位置の表を持つ
+ * バイナリ形式にエンコードし、ダイレクトバッファまたはメモリマップした一時ファイルに格納する。
+ * ロードしたコードはヒープ上にコードIDと領域内の位置のみを保持し、名称などは参照時にデコードする。
+ * コードマスタが大きい場合でも、ヒープ使用量とGCの停止時間がコードマスタの大きさに比例して増加しない。<br/>
+ * <br/>
+ * 参照のたびに文字列をデコードするため、参照処理は{@link BasicCodeLoader}でロードしたコードより遅くなる。
+ * 全件ロード時の行データのメモリ使用量を抑えるには、{@link BasicCodeLoader#setStreamingLoad(boolean)}を併用すること。<br/>
+ * <br/>
+ * {@link #setCodeLoader(BasicCodeLoader)}に設定するローダは、本クラスより先に初期化しておく必要がある。
+ */
+public class MappedCodeLoader implements StaticDataLoader<Code>, Initializable {
+
+    /** 行データを検索するローダ */
+    private BasicCodeLoader codeLoader;
+
+    /** 一時ファイルを作成するディレクトリ */
+    private String storeDirectory;
+
+    /** ロードしたコードの参照回数を集計する統計情報(集計しない場合はnull) */
+    private CodeLookupStatistics lookupStatistics;
+
+    /** パターンカラム名 */
+    private String[] patternColumnNames;
+
+    /** オプション名称のカラム名 */
+    private String[] optionNameColumnNames;
+
+    /** 言語毎の識別子(ロード毎に変化しないよう、ローダの生存期間を通して保持する) */
+    private final ConcurrentMap<Locale, Integer> localeIds = new ConcurrentHashMap<Locale, Integer>();
+
+    /** 次に割り当てる言語の識別子 */
+    private final AtomicInteger nextLocaleId = new AtomicInteger();
+
+    /**
+     * 行データを検索するローダを設定する。
+     *
+     * @param codeLoader 行データを検索するローダ
+     */
+    public void setCodeLoader(BasicCodeLoader codeLoader) {
+        this.codeLoader = codeLoader;
+    }
+
+    /**
+     * 一時ファイルを作成するディレクトリを設定する。<br/>
+     * <br/>
+     * 設定した場合、全件ロードしたコードを一時ファイルに書き込んでメモリマップする。
+     * 設定しない場合、および{@link #getValue(Object)}で1つのコードをロードする場合はダイレクトバッファに格納する。
+     * ダイレクトバッファのサイズの上限はJVMオプション(-XX:MaxDirectMemorySize)で指定する。
+     * デフォルトはnull(ダイレクトバッファを使用する)。
+     *
+     * @param storeDirectory 一時ファイルを作成するディレクトリ
+     */
+    public void setStoreDirectory(String storeDirectory) {
+        this.storeDirectory = storeDirectory;
+    }
+
+    /**
+     * ロードしたコードの参照回数を集計する統計情報を設定する。<br/>
+     * <br/>
+     * 設定した場合、ロードしたコードを参照回数を計数するコードでラップして返す。
+     * デフォルトはnull(集計しない)。
+     *
+     * @param lookupStatistics 参照回数を集計する統計情報
+     * @see BasicCodeLoader#setLookupStatistics(CodeLookupStatistics)
+     */
+    public void setLookupStatistics(CodeLookupStatistics lookupStatistics) {
+        this.lookupStatistics = lookupStatistics;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @throws IllegalStateException 行データを検索するローダが設定されていない場合
+     */
+    public void initialize() {
+        if (codeLoader == null) {
+            throw new IllegalStateException("codeLoader was not set. set BasicCodeLoader to codeLoader.");
+        }
+        patternColumnNames = codeLoader.getPatternColumnNames();
+        optionNameColumnNames = codeLoader.getOptionNameColumnNames();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public Code getValue(Object id) {
+        List<Code> codes = load(id.toString());
+        return codes.size() == 1 ? codes.get(0) : null;
+    }
+
+    /**
+     * {@inheritDoc}<br/>
+     * <br/>
+     * 本機能ではインデックスは提供しないためnullを返す。
+     */
+    public List<Code> getValues(String indexName, Object key) {
+        return null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public List<Code> loadAll() {
+        return load(null);
+    }
+
+    /**
+     * 行データを検索し、ヒープ外の領域に格納したコードを作成する。
+     *
+     * @param id コードID。全てのコードをロードする場合はnull
+     * @return コードのList
+     */
+    private List<Code> load(String id) {
+        // 1つのコードのために一時ファイルを作成しないよう、全件ロード時のみ一時ファイルを使用する
+        MappedCodeStore store = new MappedCodeStore(
+                id != null || storeDirectory == null ? null : new File(storeDirectory));
+        try {
+            SegmentWriter writer = new SegmentWriter(store);
+            if (id == null) {
+                codeLoader.loadAllRows(writer);
+            } else {
+                codeLoader.loadCodeRows(id, writer);
+            }
+            return writer.build();
+        } finally {
+            store.close();
+        }
+    }
+
+    /**
+     * {@inheritDoc}<br/>
+     * <br/>
+     * 本機能ではインデックスは提供しないためnullを返す。
+     */
+    public List<String> getIndexNames() {
+        return null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public Object getId(Code value) {
+        return value.getCodeId();
+    }
+
+    /**
+     * {@inheritDoc}<br/>
+     * <br/>
+     * 本機能ではインデックスは提供しないためnullを返す。
+     */
+    public Object generateIndexKey(String indexName, Code value) {
+        return null;
+    }
+
+    /**
+     * パターンの数を取得する。
+     *
+     * @return パターンの数
+     */
+    int getPatternCount() {
+        return patternColumnNames.length;
+    }
+
+    /**
+     * オプション名称の数を取得する。
+     *
+     * @return オプション名称の数
+     */
+    int getOptionCount() {
+        return optionNameColumnNames.length;
+    }
+
+    /**
+     * パターンの序数を取得する。
+     *
+     * @param pattern パターン(大文字小文字は区別しない)
+     * @return パターンの序数。存在しない場合は負の値
+     */
+    int patternIndexOf(String pattern) {
+        return BasicCodeLoader.indexOfIgnoreCase(patternColumnNames, pattern);
+    }
+
+    /**
+     * オプション名称の序数を取得する。
+     *
+     * @param optionColumnName オプション名称のカラム名(大文字小文字は区別しない)
+     * @return オプション名称の序数。存在しない場合は負の値
+     */
+    int optionIndexOf(String optionColumnName) {
+        return BasicCodeLoader.indexOfIgnoreCase(optionNameColumnNames, optionColumnName);
+    }
+
+    /**
+     * 言語の識別子を取得する。識別子が割り当てられていない場合は割り当てる。
+     *
+     * @param locale 言語
+     * @return 言語の識別子
+     */
+    int localeIdOf(Locale locale) {
+        Integer localeId = localeIds.get(locale);
+        if (localeId == null) {
+            Integer newLocaleId = nextLocaleId.getAndIncrement();
+            localeId = localeIds.putIfAbsent(locale, newLocaleId);
+            if (localeId == null) {
+                localeId = newLocaleId;
+            }
+        }
+        return localeId;
+    }
+
+    /**
+     * 言語の識別子を取得する。
+     *
+     * @param locale 言語
+     * @return 言語の識別子。ロードしたコードに存在しない言語の場合は-1
+     */
+    int findLocaleId(Locale locale) {
+        Integer localeId = locale == null ? null : localeIds.get(locale);
+        return localeId == null ? -1 : localeId;
+    }
+
+    /**
+     * 言語のフォールバック先の言語を取得する。
+     *
+     * @param locale 言語
+     * @return フォールバック先の言語(優先順)
+     */
+    List<Locale> getLocaleFallbacks(Locale locale) {
+        return codeLoader.getLocaleFallbacks(locale);
+    }
+
+    /**
+     * 行データをコード毎にエンコードして領域に格納するクラス。<br/>
+     * <br/>
+     * コードIDが切り替わった時点でエンコードし、エンコードに使用した行データは保持しない。
+     */
+    private final class SegmentWriter implements CodeRowHandler {
+
+        /** 格納先の領域 */
+        private final MappedCodeStore store;
+
+        /** 格納済みのコードID */
+        private final List<String> codeIds = new ArrayList<String>();
+
+        /** 格納済みのコードの領域内の開始位置 */
+        private final List<Integer> offsets = new ArrayList<Integer>();
+
+        /** 構築中のコードを構成するデータ */
+        private final List<CodeRow> data = new ArrayList<CodeRow>();
+
+        /** 構築中のコードID */
+        private String codeId = "";
+
+        /**
+         * コンストラクタ。
+         *
+         * @param store 格納先の領域
+         */
+        private SegmentWriter(MappedCodeStore store) {
+            this.store = store;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        public void add(CodeRow row) {
+            String currentCodeId = row.getCodeId();
+            if (!codeId.equals(currentCodeId)) {
+                flush();
+                codeId = currentCodeId;
+            }
+            data.add(row);
+        }
+
+        /**
+         * 構築中のコードをエンコードして領域に格納する。
+         */
+        private void flush() {
+            if (data.size() > 0) {
+                offsets.add(store.append(MappedCode.encode(MappedCodeLoader.this, data)));
+                codeIds.add(codeId);
+                data.clear();
+            }
+        }
+
+        /**
+         * 格納したコードを参照するコードのListを作成する。
+         *
+         * @return コードのList
+         */
+        private List<Code> build() {
+            flush();
+            ByteBuffer buffer = store.finish();
+            List<Code> codes = new ArrayList<Code>(codeIds.size());
+            for (int i = 0; i < codeIds.size(); i++) {
+                Code code = new MappedCode(MappedCodeLoader.this, buffer, offsets.get(i), codeIds.get(i));
+                codes.add(lookupStatistics == null ? code : lookupStatistics.wrap(code));
+            }
+            return Collections.unmodifiableList(codes);
+        }
+    }
+}
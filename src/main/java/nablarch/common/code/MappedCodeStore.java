@@ -0,0 +1,155 @@
+package nablarch.common.code;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * エンコードしたコードを格納するヒープ外の領域。<br/>
+ * <br/>
+ * ディレクトリを指定した場合は一時ファイルに書き込んでメモリマップし、
+ * 指定しない場合はダイレクトバッファに書き込む。
+ * 一時ファイルはメモリマップした後に削除する(削除できない環境ではJVMの終了時に削除する)。
+ * ダイレクトバッファは書き込み中は容量を倍々に拡張し、書き込みの終了時に格納済みのバイト数ちょうどのバッファに複製する。<br/>
+ * <br/>
+ * {@link ByteBuffer}の制約により、1つの領域に格納できるのは2GBまでとする。
+ */
+final class MappedCodeStore {
+
+    /** ダイレクトバッファの初期サイズ */
+    private static final int INITIAL_CAPACITY = 64 * 1024;
+
+    /** 一時ファイル(ダイレクトバッファを使用する場合はnull) */
+    private final File file;
+
+    /** 一時ファイルのアクセサ(ダイレクトバッファを使用する場合はnull) */
+    private RandomAccessFile randomAccessFile;
+
+    /** ダイレクトバッファ(一時ファイルを使用する場合はnull) */
+    private ByteBuffer directBuffer;
+
+    /** 格納済みのバイト数 */
+    private int size;
+
+    /**
+     * コンストラクタ。
+     *
+     * @param directory 一時ファイルを作成するディレクトリ。nullの場合はダイレクトバッファを使用する
+     * @throws IllegalStateException 一時ファイルを作成できなかった場合
+     */
+    MappedCodeStore(File directory) {
+        if (directory == null) {
+            file = null;
+            return;
+        }
+        try {
+            if (!directory.isDirectory() && !directory.mkdirs()) {
+                throw new IOException("failed to create directory. directory = " + directory);
+            }
+            file = File.createTempFile("codes", ".store", directory);
+            randomAccessFile = new RandomAccessFile(file, "rw");
+        } catch (IOException e) {
+            throw new IllegalStateException("failed to create code store file. directory = " + directory, e);
+        }
+    }
+
+    /**
+     * エンコードしたコードを追加する。
+     *
+     * @param segment エンコードしたコード
+     * @return 領域内の開始位置
+     * @throws IllegalStateException 領域のサイズが上限を超える場合や、書き込みに失敗した場合
+     */
+    int append(byte[] segment) {
+        if ((long) size + segment.length > Integer.MAX_VALUE) {
+            throw new IllegalStateException("code store exceeded the maximum size. "
+                    + "size = " + size + ", segment size = " + segment.length);
+        }
+        int offset = size;
+        if (file != null) {
+            try {
+                randomAccessFile.write(segment);
+            } catch (IOException e) {
+                throw new IllegalStateException("failed to write code store file. file = " + file, e);
+            }
+        } else {
+            ensureCapacity(size + segment.length);
+            directBuffer.put(segment);
+        }
+        size += segment.length;
+        return offset;
+    }
+
+    /**
+     * ダイレクトバッファの容量を確保する。
+     *
+     * @param capacity 必要な容量
+     */
+    private void ensureCapacity(int capacity) {
+        if (directBuffer != null && directBuffer.capacity() >= capacity) {
+            return;
+        }
+        int newCapacity = directBuffer == null ? INITIAL_CAPACITY : directBuffer.capacity();
+        while (newCapacity < capacity) {
+            newCapacity = newCapacity > Integer.MAX_VALUE / 2 ? Integer.MAX_VALUE : newCapacity * 2;
+        }
+        ByteBuffer newBuffer = ByteBuffer.allocateDirect(newCapacity);
+        if (directBuffer != null) {
+            directBuffer.flip();
+            newBuffer.put(directBuffer);
+        }
+        directBuffer = newBuffer;
+    }
+
+    /**
+     * 書き込みを終了し、読み込み専用の領域を取得する。<br/>
+     * <br/>
+     * ダイレクトバッファの場合、拡張による余剰の容量を保持し続けないよう、
+     * 格納済みのバイト数ちょうどのバッファに複製して返す。
+     *
+     * @return 読み込み専用の領域
+     * @throws IllegalStateException メモリマップに失敗した場合
+     */
+    ByteBuffer finish() {
+        if (file == null) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(size);
+            if (directBuffer != null) {
+                directBuffer.flip();
+                buffer.put(directBuffer);
+                buffer.flip();
+                directBuffer = null;
+            }
+            return buffer.asReadOnlyBuffer();
+        }
+        try {
+            FileChannel channel = randomAccessFile.getChannel();
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        } catch (IOException e) {
+            throw new IllegalStateException("failed to map code store file. file = " + file, e);
+        } finally {
+            close();
+        }
+    }
+
+    /**
+     * 一時ファイルを閉じて削除する。<br/>
+     * <br/>
+     * メモリマップ済みの領域は、削除後も参照できる。
+     */
+    void close() {
+        if (randomAccessFile == null) {
+            return;
+        }
+        try {
+            randomAccessFile.close();
+        } catch (IOException ignored) {
+            // 一時ファイルのため、クローズに失敗しても処理を継続する
+        }
+        randomAccessFile = null;
+        if (!file.delete()) {
+            file.deleteOnExit();
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package nablarch.common.code;
+
+/**
+ * 計測結果を破棄する{@link CodeLoaderMetricsListener}の実装。<br/>
+ * <br/>
+ * {@link BasicCodeLoader#setMetricsListener(CodeLoaderMetricsListener)}に本クラスを設定した場合は、
+ * リスナを設定しない場合と同様に計測自体を行わない。
+ * コンポーネント定義で計測を明示的に無効にする場合に使用する。
+ */
+public class NopCodeLoaderMetricsListener implements CodeLoaderMetricsListener {
+
+    /**
+     * {@inheritDoc}<br/>
+     * <br/>
+     * 何もしない。
+     */
+    public void loadCompleted(CodeLoadMetrics metrics) {
+    }
+
+    /**
+     * {@inheritDoc}<br/>
+     * <br/>
+     * 何もしない。
+     */
+    public void valueLoaded(String codeId, long elapsedNanos, boolean found) {
+    }
+}
@@ -0,0 +1,37 @@
+package nablarch.common.code;
+
+import java.util.AbstractList;
+import java.util.RandomAccess;
+
+/**
+ * コード値の配列と序数の配列から構成される、変更不可能なコード値のList。
+ */
+final class OrdinalList extends AbstractList<String> implements RandomAccess {
+
+    /** 序数をインデックスとするコード値の配列 */
+    private final String[] values;
+
+    /** Listの要素となるコード値の序数 */
+    private final int[] ordinals;
+
+    /**
+     * コンストラクタ。
+     *
+     * @param values 序数をインデックスとするコード値の配列
+     * @param ordinals Listの要素となるコード値の序数
+     */
+    OrdinalList(String[] values, int[] ordinals) {
+        this.values = values;
+        this.ordinals = ordinals;
+    }
+
+    @Override
+    public String get(int index) {
+        return values[ordinals[index]];
+    }
+
+    @Override
+    public int size() {
+        return ordinals.length;
+    }
+}
@@ -0,0 +1,97 @@
+package nablarch.common.code;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 1つの言語の名称、略称およびオプション名称からコード値を逆引きする索引。<br/>
+ * <br/>
+ * 同じ名称を持つコード値が複数ある場合は、ソート順で先に追加したコード値を返す。
+ * nullの名称は索引に含めない。<br/>
+ * <br/>
+ * 全てのコード値を追加した後は変更しないため、公開後は複数のスレッドから参照できる。
+ */
+final class ReverseIndex {
+
+    /** 名称とコード値のMap */
+    private final Map<String, String> byName = new HashMap<String, String>();
+
+    /** 略称とコード値のMap */
+    private final Map<String, String> byShortName = new HashMap<String, String>();
+
+    /** オプション名称カラム毎の、オプション名称とコード値のMap */
+    private final Map<String, String>[] byOptionName;
+
+    /**
+     * コンストラクタ。
+     *
+     * @param optionCount オプション名称カラムの数
+     */
+    @SuppressWarnings("unchecked")
+    ReverseIndex(int optionCount) {
+        byOptionName = new Map[optionCount];
+        for (int i = 0; i < optionCount; i++) {
+            byOptionName[i] = new HashMap<String, String>();
+        }
+    }
+
+    /**
+     * コード値を追加する。コード値はソート順で追加する必要がある。
+     *
+     * @param value コード値
+     * @param name 名称
+     * @param shortName 略称
+     * @param optionNames オプション名称(オプション名称カラムの並び)
+     */
+    void add(String value, String name, String shortName, String[] optionNames) {
+        putIfAbsent(byName, name, value);
+        putIfAbsent(byShortName, shortName, value);
+        for (int i = 0; i < byOptionName.length; i++) {
+            putIfAbsent(byOptionName[i], optionNames[i], value);
+        }
+    }
+
+    /**
+     * キーが存在しない場合のみ追加する。
+     *
+     * @param map 追加先のMap
+     * @param key キー(nullの場合は追加しない)
+     * @param value 値
+     */
+    private static void putIfAbsent(Map<String, String> map, String key, String value) {
+        if (key != null && !map.containsKey(key)) {
+            map.put(key, value);
+        }
+    }
+
+    /**
+     * 名称に対応するコード値を取得する。
+     *
+     * @param name 名称
+     * @return コード値。存在しない場合はnull
+     */
+    String findValueByName(String name) {
+        return byName.get(name);
+    }
+
+    /**
+     * 略称に対応するコード値を取得する。
+     *
+     * @param shortName 略称
+     * @return コード値。存在しない場合はnull
+     */
+    String findValueByShortName(String shortName) {
+        return byShortName.get(shortName);
+    }
+
+    /**
+     * オプション名称に対応するコード値を取得する。
+     *
+     * @param optionName オプション名称
+     * @param optionIndex オプション名称カラムの序数
+     * @return コード値。存在しない場合はnull
+     */
+    String findValueByOptionalName(String optionName, int optionIndex) {
+        return byOptionName[optionIndex].get(optionName);
+    }
+}
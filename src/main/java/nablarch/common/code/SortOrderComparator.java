@@ -0,0 +1,52 @@
+package nablarch.common.code;
+
+import java.util.Comparator;
+import java.util.Locale;
+
+/**
+ * コード値をコードのソート順で比較するコンパレータ。<br/>
+ * <br/>
+ * {@link ExtendedCode#indexOf(String, Locale)}で取得したソート順での位置を比較する。
+ * 言語にコード値が存在しない場合は、存在するコード値より後ろとし、存在しないコード値同士は文字列として比較する。
+ * nullは最後とする。
+ */
+final class SortOrderComparator implements Comparator<String> {
+
+    /** 比較に使用するコード */
+    private final ExtendedCode code;
+
+    /** 言語 */
+    private final Locale locale;
+
+    /**
+     * コンストラクタ。
+     *
+     * @param code 比較に使用するコード
+     * @param locale 言語
+     */
+    SortOrderComparator(ExtendedCode code, Locale locale) {
+        this.code = code;
+        this.locale = locale;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public int compare(String o1, String o2) {
+        int index1 = code.indexOf(o1, locale);
+        int index2 = code.indexOf(o2, locale);
+        if (index1 >= 0 && index2 >= 0) {
+            return index1 < index2 ? -1 : (index1 == index2 ? 0 : 1);
+        }
+        if (index1 >= 0) {
+            return -1;
+        }
+        if (index2 >= 0) {
+            return 1;
+        }
+        if (o1 == null || o2 == null) {
+            return o1 == null ? (o2 == null ? 0 : 1) : -1;
+        }
+        return o1.compareTo(o2);
+    }
+}
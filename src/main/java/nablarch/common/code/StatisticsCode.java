@@ -0,0 +1,352 @@
+package nablarch.common.code;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+
+import static nablarch.common.code.CodeLookupStatistics.CONTAINS_ORDINAL;
+import static nablarch.common.code.CodeLookupStatistics.NAME_ORDINAL;
+import static nablarch.common.code.CodeLookupStatistics.OPTIONAL_NAME_ORDINAL;
+import static nablarch.common.code.CodeLookupStatistics.PATTERN_ORDINAL;
+import static nablarch.common.code.CodeLookupStatistics.REVERSE_ORDINAL;
+import static nablarch.common.code.CodeLookupStatistics.SHORT_NAME_ORDINAL;
+import static nablarch.common.code.CodeLookupStatistics.SORT_ORDER_ORDINAL;
+import static nablarch.common.code.CodeLookupStatistics.VALUES_ORDINAL;
+
+/**
+ * 参照回数を{@link CodeLookupStatistics}に計数するコード。<br/>
+ * <br/>
+ * 参照処理は全てラップしたコードに委譲し、計数対象の参照の結果を計数する。
+ * 間引いて計数する場合は、計数する参照1回につき計数する間隔の回数を加算する。
+ * 例外を送出する参照は、例外を送出した場合をミスとして計数した上で、例外をそのまま送出する。
+ */
+final class StatisticsCode implements ExtendedCode {
+
+    /** ラップしたコード */
+    private final ExtendedCode delegate;
+
+    /** 統計情報 */
+    private final CodeLookupStatistics statistics;
+
+    /** このコードのカウンタ */
+    private final CodeLookupStatistics.CodeCounters counters;
+
+    /**
+     * コンストラクタ。
+     *
+     * @param delegate ラップするコード
+     * @param statistics 統計情報
+     * @param counters このコードのカウンタ
+     */
+    StatisticsCode(ExtendedCode delegate, CodeLookupStatistics statistics,
+            CodeLookupStatistics.CodeCounters counters) {
+        this.delegate = delegate;
+        this.statistics = statistics;
+        this.counters = counters;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public String getCodeId() {
+        return delegate.getCodeId();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public boolean contains(String value) {
+        boolean found = delegate.contains(value);
+        int weight = statistics.sample();
+        if (weight > 0) {
+            counters.record(CONTAINS_ORDINAL, null, null, found, weight);
+        }
+        return found;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public boolean contains(String pattern, String value) {
+        int weight = statistics.sample();
+        if (weight == 0) {
+            return delegate.contains(pattern, value);
+        }
+        boolean found = false;
+        try {
+            found = delegate.contains(pattern, value);
+            return found;
+        } finally {
+            counters.record(PATTERN_ORDINAL, null, pattern, found, weight);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public String getName(String value, Locale locale) {
+        int weight = statistics.sample();
+        if (weight == 0) {
+            return delegate.getName(value, locale);
+        }
+        boolean found = false;
+        try {
+            String name = delegate.getName(value, locale);
+            found = true;
+            return name;
+        } finally {
+            counters.record(NAME_ORDINAL, locale, null, found, weight);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public String getShortName(String value, Locale locale) {
+        int weight = statistics.sample();
+        if (weight == 0) {
+            return delegate.getShortName(value, locale);
+        }
+        boolean found = false;
+        try {
+            String shortName = delegate.getShortName(value, locale);
+            found = true;
+            return shortName;
+        } finally {
+            counters.record(SHORT_NAME_ORDINAL, locale, null, found, weight);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public String getOptionalName(String value, String optionColumnName, Locale locale) {
+        int weight = statistics.sample();
+        if (weight == 0) {
+            return delegate.getOptionalName(value, optionColumnName, locale);
+        }
+        boolean found = false;
+        try {
+            String optionalName = delegate.getOptionalName(value, optionColumnName, locale);
+            found = true;
+            return optionalName;
+        } finally {
+            counters.record(OPTIONAL_NAME_ORDINAL, locale, optionColumnName, found, weight);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public List<String> getValues(Locale locale) {
+        int weight = statistics.sample();
+        if (weight == 0) {
+            return delegate.getValues(locale);
+        }
+        boolean found = false;
+        try {
+            List<String> values = delegate.getValues(locale);
+            found = true;
+            return values;
+        } finally {
+            counters.record(VALUES_ORDINAL, locale, null, found, weight);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public List<String> getValues(String pattern, Locale locale) {
+        int weight = statistics.sample();
+        if (weight == 0) {
+            return delegate.getValues(pattern, locale);
+        }
+        boolean found = false;
+        try {
+            List<String> values = delegate.getValues(pattern, locale);
+            found = true;
+            return values;
+        } finally {
+            counters.record(VALUES_ORDINAL, locale, pattern, found, weight);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public String findName(String value, Locale locale) {
+        String name = delegate.findName(value, locale);
+        int weight = statistics.sample();
+        if (weight > 0) {
+            counters.record(NAME_ORDINAL, locale, null, name != null, weight);
+        }
+        return name;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public String findShortName(String value, Locale locale) {
+        String shortName = delegate.findShortName(value, locale);
+        int weight = statistics.sample();
+        if (weight > 0) {
+            counters.record(SHORT_NAME_ORDINAL, locale, null, shortName != null, weight);
+        }
+        return shortName;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public String findOptionalName(String value, String optionColumnName, Locale locale) {
+        String optionalName = delegate.findOptionalName(value, optionColumnName, locale);
+        int weight = statistics.sample();
+        if (weight > 0) {
+            counters.record(OPTIONAL_NAME_ORDINAL, locale, optionColumnName, optionalName != null, weight);
+        }
+        return optionalName;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public List<String> findValues(Locale locale) {
+        List<String> values = delegate.findValues(locale);
+        int weight = statistics.sample();
+        if (weight > 0) {
+            counters.record(VALUES_ORDINAL, locale, null, values != null, weight);
+        }
+        return values;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public List<String> findValues(String pattern, Locale locale) {
+        List<String> values = delegate.findValues(pattern, locale);
+        int weight = statistics.sample();
+        if (weight > 0) {
+            counters.record(VALUES_ORDINAL, locale, pattern, values != null, weight);
+        }
+        return values;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public boolean isInPattern(String pattern, String value) {
+        boolean found = delegate.isInPattern(pattern, value);
+        int weight = statistics.sample();
+        if (weight > 0) {
+            counters.record(PATTERN_ORDINAL, null, pattern, found, weight);
+        }
+        return found;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public int indexOf(String value, Locale locale) {
+        int index = delegate.indexOf(value, locale);
+        int weight = statistics.sample();
+        if (weight > 0) {
+            counters.record(SORT_ORDER_ORDINAL, locale, null, index >= 0, weight);
+        }
+        return index;
+    }
+
+    /**
+     * {@inheritDoc}<br/>
+     * <br/>
+     * 返却するコンパレータによる比較は計数しない。
+     */
+    public Comparator<String> getComparator(Locale locale) {
+        return delegate.getComparator(locale);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public String findValueByName(String name, Locale locale) {
+        String value = delegate.findValueByName(name, locale);
+        int weight = statistics.sample();
+        if (weight > 0) {
+            counters.record(REVERSE_ORDINAL, locale, null, value != null, weight);
+        }
+        return value;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public String findValueByShortName(String shortName, Locale locale) {
+        String value = delegate.findValueByShortName(shortName, locale);
+        int weight = statistics.sample();
+        if (weight > 0) {
+            counters.record(REVERSE_ORDINAL, locale, null, value != null, weight);
+        }
+        return value;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public String findValueByOptionalName(String optionalName, String optionColumnName, Locale locale) {
+        String value = delegate.findValueByOptionalName(optionalName, optionColumnName, locale);
+        int weight = statistics.sample();
+        if (weight > 0) {
+            counters.record(REVERSE_ORDINAL, locale, optionColumnName, value != null, weight);
+        }
+        return value;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public int patternHandle(String pattern) {
+        return delegate.patternHandle(pattern);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public int optionHandle(String optionColumnName) {
+        return delegate.optionHandle(optionColumnName);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public boolean isInPattern(int patternHandle, String value) {
+        boolean found = delegate.isInPattern(patternHandle, value);
+        int weight = statistics.sample();
+        if (weight > 0) {
+            counters.record(PATTERN_ORDINAL, null, null, found, weight);
+        }
+        return found;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public List<String> findValues(int patternHandle, Locale locale) {
+        List<String> values = delegate.findValues(patternHandle, locale);
+        int weight = statistics.sample();
+        if (weight > 0) {
+            counters.record(VALUES_ORDINAL, locale, null, values != null, weight);
+        }
+        return values;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public String findOptionalName(String value, int optionHandle, Locale locale) {
+        String optionalName = delegate.findOptionalName(value, optionHandle, locale);
+        int weight = statistics.sample();
+        if (weight > 0) {
+            counters.record(OPTIONAL_NAME_ORDINAL, locale, null, optionalName != null, weight);
+        }
+        return optionalName;
+    }
+}
@@ -30,6 +30,9 @@ public final class CodeNameSchema extends TableSchema {
     /** オプション名称カラムの名前 */
     private String[] optionNameColumnNames;
 
+    /** バージョンカラムの名前 */
+    private String versionColumnName;
+
     /**
      * IDカラムの名前を取得する。
      * 
@@ -163,4 +166,27 @@ public final class CodeNameSchema extends TableSchema {
         System.arraycopy(optionNameColumnNames, 0, newValue, 0, optionNameColumnNames.length);
         this.optionNameColumnNames = newValue;
     }
+
+    /**
+     * バージョンカラムの名前を取得する。
+     * 
+     * @return バージョンカラムの名前。設定されていない場合はnull
+     */
+    public String getVersionColumnName() {
+        return versionColumnName;
+    }
+
+    /**
+     * バージョンカラムの名前を設定する。<br/>
+     * <br/>
+     * バージョンカラムには、行を更新する度に大きくなる値(更新日時やバージョン番号など)を格納する。
+     * 設定した場合、前回のロード以降に更新されたコードのみをロードできる。
+     * 更新されたコードのみをロードする場合は、コミット順に大きくなる整数を格納する必要がある
+     * ({@link nablarch.common.code.BasicCodeLoader#loadChanged()}を参照)。
+     * 
+     * @param versionColumnName バージョンカラムの名前
+     */
+    public void setVersionColumnName(String versionColumnName) {
+        this.versionColumnName = versionColumnName;
+    }
 }
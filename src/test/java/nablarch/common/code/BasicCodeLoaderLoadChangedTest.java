@@ -0,0 +1,138 @@
+package nablarch.common.code;
+
+import nablarch.common.code.schema.CodeNameSchema;
+import nablarch.common.code.schema.CodePatternSchema;
+import nablarch.test.support.SystemRepositoryResource;
+import nablarch.test.support.db.helper.DatabaseTestRunner;
+import nablarch.test.support.db.helper.VariousDbTestHelper;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.List;
+import java.util.Locale;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * {@link BasicCodeLoader#loadChanged()}のテスト。
+ */
+@RunWith(DatabaseTestRunner.class)
+public class BasicCodeLoaderLoadChangedTest {
+
+    @Rule
+    public SystemRepositoryResource repositoryResource = new SystemRepositoryResource("nablarch/common/code/basic-code-loader-version-test.xml");
+
+    @Before
+    public void setUp() throws Exception {
+        VariousDbTestHelper.createTable(CodeName.class);
+        VariousDbTestHelper.createTable(CodePattern.class);
+        setUpPatterns(1L, "0");
+        setUpNames(1L, "Waiting For Batch Start");
+    }
+
+    private static void setUpPatterns(Long version0001, String pattern2Of0001) {
+        VariousDbTestHelper.setUpTable(
+                new CodePattern("0001", "01", "1", "0", "0", 1L),
+                new CodePattern("0001", "02", "1", pattern2Of0001, "0", version0001),
+                new CodePattern("0002", "01", "1", "0", "0", 1L),
+                new CodePattern("0002", "02", "1", "0", "0", 1L)
+        );
+    }
+
+    private static void setUpNames(Long version0002, String nameOf0002) {
+        VariousDbTestHelper.setUpTable(
+                new CodeName("0001", "01", "en", 1L, "Male", "M", "", "", 1L),
+                new CodeName("0001", "02", "en", 2L, "Female", "F", "", "", 1L),
+                new CodeName("0002", "01", "en", 1L, "Initial State", "Initial", "", "", 1L),
+                new CodeName("0002", "02", "en", 2L, nameOf0002, "Waiting", "", "", version0002)
+        );
+    }
+
+    @Test
+    public void testLoadChanged() throws Exception {
+        BasicCodeLoader codeLoader = repositoryResource.getComponentByType(BasicCodeLoader.class);
+
+        assertNull(codeLoader.getHighWaterMark());
+        assertEquals(2, codeLoader.loadAll().size());
+        assertEquals(1L, codeLoader.getHighWaterMark());
+
+        // 更新がない場合は空
+        assertTrue(codeLoader.loadChanged().isEmpty());
+        assertEquals(1L, codeLoader.getHighWaterMark());
+
+        // コード名称テーブルの更新
+        setUpNames(2L, "Waiting");
+        List<Code> changed = codeLoader.loadChanged();
+        assertEquals(1, changed.size());
+        Code code0002 = changed.get(0);
+        assertEquals("0002", code0002.getCodeId());
+        assertEquals("Waiting", code0002.getName("02", Locale.ENGLISH));
+        // 更新されていない行も含めてコードが構築される
+        assertEquals("Initial State", code0002.getName("01", Locale.ENGLISH));
+        assertEquals(2, code0002.getValues(Locale.ENGLISH).size());
+        assertEquals(2L, codeLoader.getHighWaterMark());
+
+        assertTrue(codeLoader.loadChanged().isEmpty());
+
+        // コードパターンテーブルの更新
+        setUpPatterns(3L, "1");
+        changed = codeLoader.loadChanged();
+        assertEquals(1, changed.size());
+        Code code0001 = changed.get(0);
+        assertEquals("0001", code0001.getCodeId());
+        assertTrue(code0001.contains("PATTERN2", "02"));
+        assertFalse(code0001.contains("PATTERN2", "01"));
+        assertEquals(3L, codeLoader.getHighWaterMark());
+
+        assertTrue(codeLoader.loadChanged().isEmpty());
+    }
+
+    @Test
+    public void testLoadChangedWithoutHighWaterMark() throws Exception {
+        BasicCodeLoader codeLoader = repositoryResource.getComponentByType(BasicCodeLoader.class);
+
+        // ハイウォーターマークを保持していない場合は全件ロード
+        List<Code> changed = codeLoader.loadChanged();
+        assertEquals(2, changed.size());
+        assertEquals(1L, codeLoader.getHighWaterMark());
+    }
+
+    @Test
+    public void testLoadChangedWithoutVersionColumn() throws Exception {
+        BasicCodeLoader codeLoader = repositoryResource.getComponentByType(BasicCodeLoader.class);
+
+        CodePatternSchema codePatternSchema = new CodePatternSchema();
+        codePatternSchema.setTableName("CODE_PATTERN");
+        codePatternSchema.setIdColumnName("CODE_ID01");
+        codePatternSchema.setValueColumnName("VALUE");
+        codePatternSchema.setPatternColumnNames(new String[]{"PATTERN1", "PATTERN2", "PATTERN3"});
+        codeLoader.setCodePatternSchema(codePatternSchema);
+
+        CodeNameSchema codeNameSchema = new CodeNameSchema();
+        codeNameSchema.setTableName("CODE_NAME");
+        codeNameSchema.setIdColumnName("CODE_ID02");
+        codeNameSchema.setValueColumnName("VALUE");
+        codeNameSchema.setLangColumnName("LANG");
+        codeNameSchema.setSortOrderColumnName("SORT_ORDER");
+        codeNameSchema.setNameColumnName("NAME");
+        codeNameSchema.setShortNameColumnName("SHORT_NAME");
+        codeNameSchema.setOptionNameColumnNames(new String[]{"NAME_WITH_VALUE", "OPTION01"});
+        codeLoader.setCodeNameSchema(codeNameSchema);
+        codeLoader.initialize();
+
+        assertEquals(2, codeLoader.loadAll().size());
+        assertNull(codeLoader.getHighWaterMark());
+        try {
+            codeLoader.loadChanged();
+            fail("例外が発生するはず。");
+        } catch (IllegalStateException e) {
+            assertTrue(e.getMessage().startsWith("version column was not configured."));
+        }
+    }
+}
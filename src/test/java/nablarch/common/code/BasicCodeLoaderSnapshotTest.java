@@ -0,0 +1,190 @@
+package nablarch.common.code;
+
+import nablarch.test.support.SystemRepositoryResource;
+import nablarch.test.support.db.helper.DatabaseTestRunner;
+import nablarch.test.support.db.helper.VariousDbTestHelper;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.List;
+import java.util.Locale;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * {@link BasicCodeLoader}のスナップショットのテスト。
+ */
+@RunWith(DatabaseTestRunner.class)
+public class BasicCodeLoaderSnapshotTest {
+
+    @Rule
+    public SystemRepositoryResource repositoryResource = new SystemRepositoryResource("nablarch/common/code/basic-code-loader-version-test.xml");
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private File snapshotFile;
+
+    @Before
+    public void setUp() throws Exception {
+        VariousDbTestHelper.createTable(CodeName.class);
+        VariousDbTestHelper.createTable(CodePattern.class);
+        VariousDbTestHelper.setUpTable(
+                new CodePattern("0001", "01", "1", "0", "0", 1L),
+                new CodePattern("0001", "02", "1", "1", "0", 1L),
+                new CodePattern("0002", "01", "1", "0", "0", 1L),
+                new CodePattern("0002", "02", "1", "0", "0", 1L)
+        );
+        setUpNames(1L, "Waiting For Batch Start");
+        snapshotFile = new File(temporaryFolder.getRoot(), "snapshot/code.snapshot");
+    }
+
+    private static void setUpNames(Long version0002, String nameOf0002) {
+        VariousDbTestHelper.setUpTable(
+                new CodeName("0001", "01", "en", 1L, "Male", "M", "0001-01-en", "0001-01-option", 1L),
+                new CodeName("0001", "01", "ja", 1L, "男性", "男", "0001-01-ja", "0001-01-option", 1L),
+                new CodeName("0001", "02", "en", 2L, "Female", "F", "0001-02-en", "0001-02-option", 1L),
+                new CodeName("0001", "02", "ja", 2L, "女性", "女", "0001-02-ja", "0001-02-option", 1L),
+                new CodeName("0002", "01", "en", 1L, "Initial State", "Initial", "", "", 1L),
+                new CodeName("0002", "02", "en", 2L, nameOf0002, "Waiting", "", "", version0002)
+        );
+    }
+
+    private BasicCodeLoader createLoader(boolean staleCheck) {
+        BasicCodeLoader codeLoader = repositoryResource.getComponentByType(BasicCodeLoader.class);
+        codeLoader.setSnapshotFilePath(snapshotFile.getPath());
+        codeLoader.setSnapshotStaleCheck(staleCheck);
+        codeLoader.initialize();
+        return codeLoader;
+    }
+
+    @Test
+    public void testWriteAndReadSnapshot() throws Exception {
+        BasicCodeLoader codeLoader = createLoader(true);
+        List<Code> loaded = codeLoader.loadAll();
+        assertTrue(snapshotFile.isFile());
+
+        // 再初期化後の最初の全件ロードはスナップショットから構築する
+        codeLoader.initialize();
+        List<Code> restored = codeLoader.loadAll();
+        assertEquals(loaded.size(), restored.size());
+        for (int i = 0; i < loaded.size(); i++) {
+            Code expected = loaded.get(i);
+            Code actual = restored.get(i);
+            assertEquals(expected.getCodeId(), actual.getCodeId());
+            assertEquals(expected.getValues(Locale.ENGLISH), actual.getValues(Locale.ENGLISH));
+            for (String value : expected.getValues(Locale.ENGLISH)) {
+                assertEquals(expected.getName(value, Locale.ENGLISH), actual.getName(value, Locale.ENGLISH));
+                assertEquals(expected.getShortName(value, Locale.ENGLISH), actual.getShortName(value, Locale.ENGLISH));
+                assertEquals(expected.getOptionalName(value, "NAME_WITH_VALUE", Locale.ENGLISH),
+                        actual.getOptionalName(value, "NAME_WITH_VALUE", Locale.ENGLISH));
+            }
+        }
+        Code code0001 = restored.get(0);
+        assertEquals("男性", code0001.getName("01", new Locale("ja")));
+        assertTrue(code0001.contains("PATTERN2", "02"));
+        assertFalse(code0001.contains("PATTERN2", "01"));
+        assertEquals(1L, codeLoader.getHighWaterMark());
+    }
+
+    @Test
+    public void testStaleSnapshot() throws Exception {
+        BasicCodeLoader codeLoader = createLoader(true);
+        codeLoader.loadAll();
+
+        setUpNames(2L, "Waiting");
+
+        // データベースと一致しない場合はデータベースからロードする
+        codeLoader.initialize();
+        List<Code> codes = codeLoader.loadAll();
+        assertEquals("Waiting", codes.get(1).getName("02", Locale.ENGLISH));
+        assertEquals(2L, codeLoader.getHighWaterMark());
+    }
+
+    @Test
+    public void testWithoutStaleCheck() throws Exception {
+        BasicCodeLoader codeLoader = createLoader(false);
+        codeLoader.loadAll();
+
+        setUpNames(2L, "Waiting");
+
+        // 確認しない場合はスナップショットを使用する
+        codeLoader.initialize();
+        List<Code> codes = codeLoader.loadAll();
+        assertEquals("Waiting For Batch Start", codes.get(1).getName("02", Locale.ENGLISH));
+        assertEquals(1L, codeLoader.getHighWaterMark());
+
+        // スナップショット作成以降の更新はloadChangedで反映できる
+        List<Code> changed = codeLoader.loadChanged();
+        assertEquals(1, changed.size());
+        assertEquals("Waiting", changed.get(0).getName("02", Locale.ENGLISH));
+
+        // 2回目以降の全件ロードはデータベースからロードする
+        codes = codeLoader.loadAll();
+        assertEquals("Waiting", codes.get(1).getName("02", Locale.ENGLISH));
+    }
+
+    @Test
+    public void testCorruptedSnapshot() throws Exception {
+        BasicCodeLoader codeLoader = createLoader(false);
+        codeLoader.loadAll();
+
+        setUpNames(2L, "Waiting");
+        RandomAccessFile file = new RandomAccessFile(snapshotFile, "rw");
+        try {
+            file.seek(file.length() / 2);
+            int b = file.read();
+            file.seek(file.length() / 2);
+            file.write(b ^ 0xFF);
+        } finally {
+            file.close();
+        }
+
+        // チェックサムが一致しない場合はデータベースからロードする
+        codeLoader.initialize();
+        List<Code> codes = codeLoader.loadAll();
+        assertEquals("Waiting", codes.get(1).getName("02", Locale.ENGLISH));
+    }
+
+    @Test
+    public void testTruncatedSnapshot() throws Exception {
+        BasicCodeLoader codeLoader = createLoader(false);
+        codeLoader.loadAll();
+
+        setUpNames(2L, "Waiting");
+        RandomAccessFile file = new RandomAccessFile(snapshotFile, "rw");
+        try {
+            file.setLength(file.length() - 12);
+        } finally {
+            file.close();
+        }
+
+        // 途中で終わっている場合はデータベースからロードし、スナップショットファイルを置き換える
+        codeLoader.initialize();
+        List<Code> codes = codeLoader.loadAll();
+        assertEquals("Waiting", codes.get(1).getName("02", Locale.ENGLISH));
+
+        codeLoader.initialize();
+        codes = codeLoader.loadAll();
+        assertEquals("Waiting", codes.get(1).getName("02", Locale.ENGLISH));
+        assertEquals(2L, codeLoader.getHighWaterMark());
+    }
+
+    @Test
+    public void testSnapshotNotExists() throws Exception {
+        BasicCodeLoader codeLoader = createLoader(false);
+        assertFalse(snapshotFile.exists());
+        assertNull(codeLoader.getHighWaterMark());
+
+        assertEquals(2, codeLoader.loadAll().size());
+        assertTrue(snapshotFile.isFile());
+    }
+}
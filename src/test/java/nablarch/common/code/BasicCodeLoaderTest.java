@@ -6,16 +6,33 @@ import nablarch.test.support.db.helper.VariousDbTestHelper;
 import org.junit.BeforeClass;
 import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.junit.runner.RunWith;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static junit.framework.TestCase.assertTrue;
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.fail;
 
 @RunWith(DatabaseTestRunner.class)
@@ -24,6 +41,9 @@ public class BasicCodeLoaderTest {
     @Rule
     public SystemRepositoryResource repositoryResource = new SystemRepositoryResource("nablarch/common/code/basic-code-loader-test.xml");
 
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
     @BeforeClass
     public static void classSetup() throws Exception {
 
@@ -265,6 +285,944 @@ public class BasicCodeLoaderTest {
 
     }
 
+    @Test
+    public void testLoadAllStreaming() throws Exception {
+        BasicCodeLoader codeLoader = repositoryResource.getComponentByType(BasicCodeLoader.class);
+        codeLoader.setStreamingLoad(true);
+        codeLoader.setFetchSize(1);
+        List<Code> allCodes = codeLoader.loadAll();
+
+        assertEquals(2, allCodes.size());
+
+        Code code0001 = allCodes.get(0);
+        Code code0002 = allCodes.get(1);
+
+        assertEquals("0001", code0001.getCodeId());
+        assertEquals("Male", code0001.getName("01", Locale.ENGLISH));
+        assertEquals("女", code0001.getShortName("02", Locale.JAPANESE));
+        assertEquals("0001-02-ja", code0001.getOptionalName("02", "OPTION01", Locale.JAPANESE));
+        assertArrayEquals(new String[]{"02", "01"}, code0001.getValues(Locale.ENGLISH).toArray());
+
+        assertEquals("0002", code0002.getCodeId());
+        assertEquals("処理結果確認完了", code0002.getName("05", Locale.JAPANESE));
+        assertArrayEquals(new String[]{"03", "04"}, code0002.getValues("PATTERN2", Locale.ENGLISH).toArray());
+        assertTrue(code0002.contains("pattern1", "05"));
+        assertFalse(code0002.contains("pattern1", "03"));
+    }
+
+    @Test
+    public void testCompactCode() throws Exception {
+        BasicCodeLoader codeLoader = repositoryResource.getComponentByType(BasicCodeLoader.class);
+        List<Code> basicCodes = codeLoader.loadAll();
+
+        codeLoader.setCompactCode(true);
+        List<Code> compactCodes = codeLoader.loadAll();
+
+        // 通常の表現と同じ結果が得られること
+        assertEquals(basicCodes.size(), compactCodes.size());
+        for (int i = 0; i < basicCodes.size(); i++) {
+            assertSameCode(basicCodes.get(i), compactCodes.get(i));
+        }
+        assertSameCode(codeLoader.getValue("0002"), compactCodes.get(1));
+
+        Code code0002 = compactCodes.get(1);
+        assertTrue(code0002.contains("05"));
+        assertFalse(code0002.contains("00"));
+        assertFalse(code0002.contains(null));
+        assertTrue(code0002.contains("pattern2", "04"));
+        assertFalse(code0002.contains("PATTERN2", "05"));
+        assertFalse(code0002.contains("PATTERN2", "00"));
+
+        // 存在しない言語、値、オプション名称、パターンを指定した場合、例外
+        try {
+            code0002.getName("01", Locale.CHINESE);
+            fail("例外が発生するはず。");
+        } catch (IllegalArgumentException e) {
+            assertEquals("locale was not found. code id = 0002, locale = zh", e.getMessage());
+        }
+        try {
+            code0002.getShortName("00", Locale.ENGLISH);
+            fail("例外が発生するはず。");
+        } catch (IllegalArgumentException e) {
+            assertEquals("short name was not found. code id = 0002, locale = en, value = 00", e.getMessage());
+        }
+        try {
+            code0002.getOptionalName("01", "OPTION02", Locale.ENGLISH);
+            fail("例外が発生するはず。");
+        } catch (IllegalArgumentException e) {
+            assertEquals("option name was not found. code id = 0002, locale = en, value = 01", e.getMessage());
+        }
+        try {
+            code0002.contains("PATTERN4", "01");
+            fail("例外が発生するはず。");
+        } catch (IllegalArgumentException e) {
+            assertEquals("pattern was not found. code id = 0002, pattern = PATTERN4", e.getMessage());
+        }
+        try {
+            code0002.getValues("PATTERN4", Locale.ENGLISH);
+            fail("例外が発生するはず。");
+        } catch (IllegalArgumentException e) {
+            assertEquals("pattern was not found. code id = 0002, locale = en, pattern = PATTERN4", e.getMessage());
+        }
+    }
+
+    @Test
+    public void testMappedCodeLoader() throws Exception {
+        BasicCodeLoader codeLoader = repositoryResource.getComponentByType(BasicCodeLoader.class);
+        List<Code> basicCodes = codeLoader.loadAll();
+
+        // ダイレクトバッファに格納する場合
+        MappedCodeLoader mappedCodeLoader = new MappedCodeLoader();
+        mappedCodeLoader.setCodeLoader(codeLoader);
+        mappedCodeLoader.initialize();
+        List<Code> mappedCodes = mappedCodeLoader.loadAll();
+        assertEquals(basicCodes.size(), mappedCodes.size());
+        for (int i = 0; i < basicCodes.size(); i++) {
+            assertSameCode(basicCodes.get(i), mappedCodes.get(i));
+        }
+        assertSameCode(basicCodes.get(1), mappedCodeLoader.getValue("0002"));
+        assertNull(mappedCodeLoader.getValue("0003"));
+        assertEquals("0002", mappedCodeLoader.getId(mappedCodes.get(1)));
+
+        // 一時ファイルをメモリマップする場合
+        mappedCodeLoader.setStoreDirectory(temporaryFolder.getRoot().getPath());
+        mappedCodes = mappedCodeLoader.loadAll();
+        for (int i = 0; i < basicCodes.size(); i++) {
+            assertSameCode(basicCodes.get(i), mappedCodes.get(i));
+        }
+
+        ExtendedCode code0002 = (ExtendedCode) mappedCodes.get(1);
+        assertFalse(code0002.contains("00"));
+        assertFalse(code0002.contains(null));
+        assertNull(code0002.findName("01", Locale.CHINESE));
+        assertNull(code0002.findOptionalName("01", "OPTION02", Locale.ENGLISH));
+        assertNull(code0002.findValues("PATTERN4", Locale.ENGLISH));
+        assertFalse(code0002.isInPattern("PATTERN4", "01"));
+        try {
+            code0002.getName("01", Locale.CHINESE);
+            fail("例外が発生するはず。");
+        } catch (IllegalArgumentException e) {
+            assertEquals("locale was not found. code id = 0002, locale = zh", e.getMessage());
+        }
+        try {
+            code0002.getShortName("00", Locale.ENGLISH);
+            fail("例外が発生するはず。");
+        } catch (IllegalArgumentException e) {
+            assertEquals("short name was not found. code id = 0002, locale = en, value = 00", e.getMessage());
+        }
+        try {
+            code0002.contains("PATTERN4", "01");
+            fail("例外が発生するはず。");
+        } catch (IllegalArgumentException e) {
+            assertEquals("pattern was not found. code id = 0002, pattern = PATTERN4", e.getMessage());
+        }
+    }
+
+    /**
+     * 2つのコードが同じ内容であることを検証する。
+     */
+    private static void assertSameCode(Code expected, Code actual) {
+        assertEquals(expected.getCodeId(), actual.getCodeId());
+        for (Locale locale : new Locale[]{Locale.ENGLISH, Locale.JAPANESE}) {
+            assertEquals(expected.getValues(locale), actual.getValues(locale));
+            for (String value : expected.getValues(locale)) {
+                assertTrue(actual.contains(value));
+                assertEquals(expected.getValues(locale).indexOf(value), ((ExtendedCode) actual).indexOf(value, locale));
+                assertEquals(expected.getName(value, locale), actual.getName(value, locale));
+                assertEquals(expected.getShortName(value, locale), actual.getShortName(value, locale));
+                assertEquals(expected.getOptionalName(value, "NAME_WITH_VALUE", locale),
+                        actual.getOptionalName(value, "NAME_WITH_VALUE", locale));
+                assertEquals(expected.getOptionalName(value, "option01", locale),
+                        actual.getOptionalName(value, "option01", locale));
+            }
+            for (String pattern : new String[]{"PATTERN1", "pattern2", "Pattern3"}) {
+                assertEquals(expected.getValues(pattern, locale), actual.getValues(pattern, locale));
+                for (String value : expected.getValues(locale)) {
+                    assertEquals(expected.contains(pattern, value), actual.contains(pattern, value));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testGetValues() throws Exception {
+        BasicCodeLoader codeLoader = repositoryResource.getComponentByType(BasicCodeLoader.class);
+
+        // 重複、存在しないコードIDは無視され、コードIDの昇順で返される。
+        List<Code> codes = codeLoader.getValues(Arrays.asList("0002", "0003", "0001", "0002"));
+        assertEquals(2, codes.size());
+        assertEquals("0001", codes.get(0).getCodeId());
+        assertEquals("0002", codes.get(1).getCodeId());
+        assertEquals("Female", codes.get(0).getName("02", Locale.ENGLISH));
+        assertArrayEquals(new String[]{"01", "02", "05"}, codes.get(1).getValues("PATTERN1", Locale.JAPANESE).toArray());
+
+        assertTrue(codeLoader.getValues(Collections.<String>emptyList()).isEmpty());
+        assertTrue(codeLoader.getValues(Arrays.asList("9999")).isEmpty());
+
+        // チャンクに分割してロードする場合
+        codeLoader.setBulkLoadChunkSize(2);
+        codeLoader.initialize();
+        codes = codeLoader.getValues(Arrays.asList("0003", "0002", "0001"));
+        assertEquals(2, codes.size());
+        assertEquals("0001", codes.get(0).getCodeId());
+        assertEquals("0002", codes.get(1).getCodeId());
+        assertEquals(5, codes.get(1).getValues(Locale.ENGLISH).size());
+
+        codeLoader.setBulkLoadChunkSize(1);
+        codeLoader.initialize();
+        codes = codeLoader.getValues(Arrays.asList("0002", "0001"));
+        assertEquals(2, codes.size());
+        assertEquals("0001", codes.get(0).getCodeId());
+        assertEquals("0002", codes.get(1).getCodeId());
+
+        try {
+            codeLoader.setBulkLoadChunkSize(0);
+            fail("例外が発生するはず。");
+        } catch (IllegalArgumentException e) {
+            assertEquals("bulkLoadChunkSize must be greater than 0. bulkLoadChunkSize = 0", e.getMessage());
+        }
+    }
+
+    @Test
+    public void testLoadAllParallel() throws Exception {
+        BasicCodeLoader codeLoader = repositoryResource.getComponentByType(BasicCodeLoader.class);
+        List<Code> expected = codeLoader.loadAll();
+
+        for (int parallelism = 2; parallelism <= 3; parallelism++) {
+            codeLoader.setLoadParallelism(parallelism);
+            List<Code> allCodes = codeLoader.loadAll();
+
+            // 並列化しない場合と同じ結果が得られること
+            assertEquals(expected.size(), allCodes.size());
+            for (int i = 0; i < expected.size(); i++) {
+                assertSameCode(expected.get(i), allCodes.get(i));
+            }
+        }
+
+        // 範囲毎のスレッドは全件ロードの間で再利用し、disposeで停止する
+        Set<Thread> existingThreads = findThreads("code-loader-");
+        codeLoader.setLoadParallelism(2);
+        codeLoader.loadAll();
+        codeLoader.loadAll();
+        Set<Thread> createdThreads = findThreads("code-loader-");
+        createdThreads.removeAll(existingThreads);
+        assertEquals(2, createdThreads.size());
+        codeLoader.dispose();
+        for (Thread thread : createdThreads) {
+            thread.join(10000);
+            assertFalse(thread.isAlive());
+        }
+
+        try {
+            codeLoader.setLoadParallelism(0);
+            fail("例外が発生するはず。");
+        } catch (IllegalArgumentException e) {
+            assertEquals("loadParallelism must be greater than 0. loadParallelism = 0", e.getMessage());
+        }
+    }
+
+    @Test
+    public void testLocaleFallbacks() throws Exception {
+        BasicCodeLoader codeLoader = repositoryResource.getComponentByType(BasicCodeLoader.class);
+        Map<String, String> fallbacks = new HashMap<String, String>();
+        fallbacks.put("ja_JP", "ja");
+        fallbacks.put("zh", "fr");
+        fallbacks.put("fr", "en");
+        codeLoader.setLocaleFallbacks(fallbacks);
+
+        for (boolean compact : new boolean[]{false, true}) {
+            codeLoader.setCompactCode(compact);
+            Code code0001 = codeLoader.getValue("0001");
+
+            assertEquals("男性", code0001.getName("01", Locale.JAPAN));
+            assertEquals("女", code0001.getShortName("02", Locale.JAPAN));
+            assertEquals("0001-01-ja", code0001.getOptionalName("01", "OPTION01", Locale.JAPAN));
+            assertArrayEquals(new String[]{"01", "02"}, code0001.getValues(Locale.JAPAN).toArray());
+
+            // フォールバック先の言語も存在しない場合は、さらにフォールバックする
+            assertEquals("Male", code0001.getName("01", Locale.CHINESE));
+            assertArrayEquals(new String[]{"02", "01"}, code0001.getValues("PATTERN1", Locale.CHINESE).toArray());
+            assertEquals("Female", code0001.getName("02", Locale.FRENCH));
+
+            // 存在する言語はフォールバックしない
+            assertEquals("Male", code0001.getName("01", Locale.ENGLISH));
+            assertEquals("男性", code0001.getName("01", Locale.JAPANESE));
+
+            // フォールバックが設定されていない言語は例外
+            try {
+                code0001.getName("01", Locale.KOREAN);
+                fail("例外が発生するはず。");
+            } catch (IllegalArgumentException e) {
+                assertEquals("locale was not found. code id = 0001, locale = ko", e.getMessage());
+            }
+        }
+
+        // 循環するフォールバックは設定できない
+        fallbacks.put("en", "zh");
+        try {
+            codeLoader.setLocaleFallbacks(fallbacks);
+            fail("例外が発生するはず。");
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage().startsWith("locale fallback is circular."));
+        }
+    }
+
+    @Test
+    public void testLazyLangValues() throws Exception {
+        BasicCodeLoader codeLoader = repositoryResource.getComponentByType(BasicCodeLoader.class);
+        List<Code> expected = codeLoader.loadAll();
+
+        codeLoader.setLazyLangValues(true);
+        List<Code> lazyCodes = codeLoader.loadAll();
+        codeLoader.setEagerLocales(Arrays.asList("ja"));
+        List<Code> eagerJaCodes = codeLoader.loadAll();
+
+        // 言語毎の値を参照時に構築しても、同じ結果が得られること
+        for (int i = 0; i < expected.size(); i++) {
+            assertSameCode(expected.get(i), lazyCodes.get(i));
+            assertSameCode(expected.get(i), eagerJaCodes.get(i));
+        }
+
+        // 言語の値を参照する前でも、言語に依存しない判定ができること
+        Code code0002 = codeLoader.getValue("0002");
+        assertTrue(code0002.contains("05"));
+        assertTrue(code0002.contains("PATTERN2", "04"));
+        assertFalse(code0002.contains("PATTERN2", "05"));
+        try {
+            code0002.getName("01", Locale.CHINESE);
+            fail("例外が発生するはず。");
+        } catch (IllegalArgumentException e) {
+            assertEquals("locale was not found. code id = 0002, locale = zh", e.getMessage());
+        }
+    }
+
+    @Test
+    public void testLoadLocales() throws Exception {
+        BasicCodeLoader codeLoader = repositoryResource.getComponentByType(BasicCodeLoader.class);
+        codeLoader.setLoadLocales(Arrays.asList("ja"));
+        codeLoader.initialize();
+
+        for (int parallelism = 1; parallelism <= 2; parallelism++) {
+            codeLoader.setLoadParallelism(parallelism);
+            List<Code> allCodes = codeLoader.loadAll();
+            assertEquals(2, allCodes.size());
+            Code code0001 = allCodes.get(0);
+            assertEquals("男性", code0001.getName("01", Locale.JAPANESE));
+            assertNull(((ExtendedCode) code0001).findName("01", Locale.ENGLISH));
+            // 言語に依存しない判定は、ロードした言語の値で行う
+            assertTrue(code0001.contains("02"));
+        }
+
+        Code code0002 = codeLoader.getValue("0002");
+        assertArrayEquals(new String[]{"01", "02", "03", "04", "05"}, code0002.getValues(Locale.JAPANESE).toArray());
+        try {
+            code0002.getValues(Locale.ENGLISH);
+            fail("例外が発生するはず。");
+        } catch (IllegalArgumentException e) {
+            assertEquals("locale was not found. code id = 0002, locale = en", e.getMessage());
+        }
+        assertEquals(2, codeLoader.getValues(Arrays.asList("0001", "0002")).size());
+        assertEquals(7, codeLoader.loadTableState().getRowCount());
+
+        // ロードする言語の行がないコードはロードしない
+        codeLoader.setLoadLocales(Arrays.asList("fr"));
+        codeLoader.initialize();
+        assertTrue(codeLoader.loadAll().isEmpty());
+        assertNull(codeLoader.getValue("0001"));
+
+        try {
+            codeLoader.setLoadLocales(Collections.<String>emptyList());
+            fail("例外が発生するはず。");
+        } catch (IllegalArgumentException e) {
+            assertEquals("loadLocales must not be empty.", e.getMessage());
+        }
+    }
+
+    @Test
+    public void testCodeIdFilter() throws Exception {
+        BasicCodeLoader codeLoader = repositoryResource.getComponentByType(BasicCodeLoader.class);
+
+        // コードIDの一致
+        codeLoader.setIncludeCodeIds(Arrays.asList("0002"));
+        codeLoader.initialize();
+        List<Code> allCodes = codeLoader.loadAll();
+        assertEquals(1, allCodes.size());
+        assertEquals("0002", allCodes.get(0).getCodeId());
+        assertEquals("初期状態", allCodes.get(0).getName("01", Locale.JAPANESE));
+        assertNull(codeLoader.getValue("0001"));
+        assertEquals(1, codeLoader.getValues(Arrays.asList("0001", "0002")).size());
+
+        // コードIDの前方一致は、いずれかの条件に一致すればロードする
+        codeLoader.setIncludeCodeIdPrefixes(Arrays.asList("000"));
+        codeLoader.initialize();
+        assertEquals(2, codeLoader.loadAll().size());
+
+        // LIKEの特殊文字は通常の文字として扱う
+        codeLoader.setIncludeCodeIds(Collections.<String>emptyList());
+        codeLoader.setIncludeCodeIdPrefixes(Arrays.asList("0_0", "%"));
+        codeLoader.initialize();
+        assertTrue(codeLoader.loadAll().isEmpty());
+
+        // 除外条件は一致条件より優先する
+        codeLoader.setIncludeCodeIdPrefixes(Arrays.asList("00"));
+        codeLoader.setExcludeCodeIds(Arrays.asList("0001"));
+        codeLoader.initialize();
+        allCodes = codeLoader.loadAll();
+        assertEquals(1, allCodes.size());
+        assertEquals("0002", allCodes.get(0).getCodeId());
+        assertNull(codeLoader.getValue("0001"));
+
+        codeLoader.setIncludeCodeIdPrefixes(Collections.<String>emptyList());
+        codeLoader.setExcludeCodeIds(Collections.<String>emptyList());
+        codeLoader.setExcludeCodeIdPrefixes(Arrays.asList("0002"));
+        codeLoader.setLoadParallelism(2);
+        codeLoader.initialize();
+        allCodes = codeLoader.loadAll();
+        assertEquals(1, allCodes.size());
+        assertEquals("0001", allCodes.get(0).getCodeId());
+        assertEquals(4, codeLoader.loadTableState().getRowCount());
+    }
+
+    @Test
+    public void testSortOrder() throws Exception {
+        BasicCodeLoader codeLoader = repositoryResource.getComponentByType(BasicCodeLoader.class);
+        MappedCodeLoader mappedCodeLoader = new MappedCodeLoader();
+        mappedCodeLoader.setCodeLoader(codeLoader);
+        mappedCodeLoader.initialize();
+
+        for (int i = 0; i < 3; i++) {
+            codeLoader.setCompactCode(i == 1);
+            ExtendedCode code0001 = (ExtendedCode) (i == 2 ? mappedCodeLoader.getValue("0001") : codeLoader.getValue("0001"));
+
+            // ソート順での位置
+            assertEquals(0, code0001.indexOf("02", Locale.ENGLISH));
+            assertEquals(1, code0001.indexOf("01", Locale.ENGLISH));
+            assertEquals(0, code0001.indexOf("01", Locale.JAPANESE));
+            assertEquals(-1, code0001.indexOf("03", Locale.ENGLISH));
+            assertEquals(-1, code0001.indexOf(null, Locale.ENGLISH));
+            assertEquals(-1, code0001.indexOf("01", Locale.CHINESE));
+
+            // ソート順で比較し、存在しないコード値は後ろに並べる
+            List<String> values = new ArrayList<String>(Arrays.asList("99", null, "01", "00", "02"));
+            Collections.sort(values, code0001.getComparator(Locale.ENGLISH));
+            assertEquals(Arrays.asList("02", "01", "00", "99", null), values);
+            Collections.sort(values, code0001.getComparator(Locale.JAPANESE));
+            assertEquals(Arrays.asList("01", "02", "00", "99", null), values);
+
+            try {
+                code0001.getComparator(Locale.CHINESE);
+                fail("例外が発生するはず。");
+            } catch (IllegalArgumentException e) {
+                assertEquals("locale was not found. code id = 0001, locale = zh", e.getMessage());
+            }
+        }
+    }
+
+    @Test
+    public void testReverseLookup() throws Exception {
+        BasicCodeLoader codeLoader = repositoryResource.getComponentByType(BasicCodeLoader.class);
+        MappedCodeLoader mappedCodeLoader = new MappedCodeLoader();
+        mappedCodeLoader.setCodeLoader(codeLoader);
+        mappedCodeLoader.initialize();
+
+        for (int i = 0; i < 3; i++) {
+            codeLoader.setCompactCode(i == 1);
+            ExtendedCode code0002 = (ExtendedCode) (i == 2 ? mappedCodeLoader.getValue("0002") : codeLoader.getValue("0002"));
+
+            assertEquals("03", code0002.findValueByName("Batch Running", Locale.ENGLISH));
+            assertEquals("03", code0002.findValueByName("処理実行中", Locale.JAPANESE));
+            assertEquals("04", code0002.findValueByShortName("完了", Locale.JAPANESE));
+            assertEquals("05", code0002.findValueByOptionalName("0002-05-en", "option01", Locale.ENGLISH));
+
+            // 同じ名称を持つコード値が複数ある場合は、ソート順で最初のコード値
+            assertEquals("01", code0002.findValueByOptionalName("", "NAME_WITH_VALUE", Locale.ENGLISH));
+
+            // 存在しない名称、言語、オプション名称カラム
+            assertNull(code0002.findValueByName("Batch Running", Locale.JAPANESE));
+            assertNull(code0002.findValueByName(null, Locale.ENGLISH));
+            assertNull(code0002.findValueByShortName("Running", Locale.CHINESE));
+            assertNull(code0002.findValueByOptionalName("0002-05-en", "OPTION02", Locale.ENGLISH));
+        }
+    }
+
+    @Test
+    public void testPatternIndex() throws Exception {
+        BasicCodeLoader codeLoader = repositoryResource.getComponentByType(BasicCodeLoader.class);
+        codeLoader.loadAll();
+        assertNull(codeLoader.getPatternIndex());
+
+        codeLoader.setBuildPatternIndex(true);
+        for (int parallelism = 1; parallelism <= 2; parallelism++) {
+            codeLoader.setLoadParallelism(parallelism);
+            List<Code> allCodes = codeLoader.loadAll();
+            CodePatternIndex index = codeLoader.getPatternIndex();
+            assertEquals(2, index.size());
+
+            // コードの判定と同じ結果が得られること
+            for (Code code : allCodes) {
+                for (String pattern : new String[]{"PATTERN1", "pattern2", "Pattern3"}) {
+                    for (String value : new String[]{"01", "02", "03", "04", "05"}) {
+                        assertEquals(((ExtendedCode) code).isInPattern(pattern, value),
+                                index.contains(code.getCodeId(), pattern, value));
+                    }
+                }
+            }
+
+            // 存在しないコード、パターン、コード値
+            assertFalse(index.contains("0003", "PATTERN1", "01"));
+            assertFalse(index.contains("0001", "PATTERN4", "01"));
+            assertFalse(index.contains("0001", "PATTERN1", "03"));
+            assertFalse(index.contains("0001", "PATTERN1", null));
+        }
+    }
+
+    @Test
+    public void testHandles() throws Exception {
+        BasicCodeLoader codeLoader = repositoryResource.getComponentByType(BasicCodeLoader.class);
+        MappedCodeLoader mappedCodeLoader = new MappedCodeLoader();
+        mappedCodeLoader.setCodeLoader(codeLoader);
+        mappedCodeLoader.initialize();
+
+        for (int i = 0; i < 3; i++) {
+            codeLoader.setCompactCode(i == 1);
+            ExtendedCode code0002 = (ExtendedCode) (i == 2 ? mappedCodeLoader.getValue("0002") : codeLoader.getValue("0002"));
+
+            // ハンドルはパターンカラム、オプション名称カラムの序数(大文字小文字は区別しない)
+            int pattern2 = code0002.patternHandle("pattern2");
+            int option01 = code0002.optionHandle("Option01");
+            assertEquals(1, pattern2);
+            assertEquals(1, option01);
+            assertEquals(-1, code0002.patternHandle("PATTERN4"));
+            assertEquals(-1, code0002.optionHandle("OPTION02"));
+
+            // 文字列で指定した場合と同じ結果が得られること
+            for (String value : new String[]{"01", "03", "04", "00"}) {
+                assertEquals(code0002.isInPattern("PATTERN2", value), code0002.isInPattern(pattern2, value));
+                assertEquals(code0002.findOptionalName(value, "OPTION01", Locale.JAPANESE),
+                        code0002.findOptionalName(value, option01, Locale.JAPANESE));
+            }
+            assertEquals(code0002.getValues("PATTERN2", Locale.ENGLISH), code0002.findValues(pattern2, Locale.ENGLISH));
+
+            // 不正なハンドル
+            assertFalse(code0002.isInPattern(-1, "01"));
+            assertFalse(code0002.isInPattern(3, "01"));
+            assertNull(code0002.findValues(3, Locale.ENGLISH));
+            assertNull(code0002.findValues(pattern2, Locale.CHINESE));
+            assertNull(code0002.findOptionalName("01", 2, Locale.ENGLISH));
+        }
+
+        codeLoader.setBuildPatternIndex(true);
+        codeLoader.loadAll();
+        CodePatternIndex index = codeLoader.getPatternIndex();
+        int pattern2 = index.patternHandle("Pattern2");
+        assertTrue(index.contains("0002", pattern2, "04"));
+        assertFalse(index.contains("0002", pattern2, "05"));
+        assertFalse(index.contains("0002", 3, "04"));
+    }
+
+    @Test
+    public void testMetricsListener() throws Exception {
+        BasicCodeLoader codeLoader = repositoryResource.getComponentByType(BasicCodeLoader.class);
+        RecordingMetricsListener listener = new RecordingMetricsListener();
+        codeLoader.setMetricsListener(listener);
+
+        for (int i = 0; i < 3; i++) {
+            codeLoader.setStreamingLoad(i == 1);
+            codeLoader.setLoadParallelism(i == 2 ? 2 : 1);
+            List<Code> allCodes = codeLoader.loadAll();
+            assertEquals(1, listener.metrics.size());
+            CodeLoadMetrics metrics = listener.metrics.remove(0);
+            assertEquals("loadAll", metrics.getOperation());
+            assertEquals(allCodes.size(), metrics.getCodeCount());
+            assertTrue(metrics.getRowCount() > metrics.getCodeCount());
+            assertEquals(2, metrics.getLocaleCount());
+            assertEquals(3, metrics.getPatternCount());
+            assertTrue(metrics.getEstimatedBytes() > 0);
+            assertTrue(metrics.getLargestCodeEstimatedBytes() <= metrics.getEstimatedBytes());
+            assertTrue(metrics.getTotalNanos() >= metrics.getConstructionNanos());
+            assertTrue(metrics.getQueryNanos() >= 0 && metrics.getFetchNanos() >= 0 && metrics.getGroupingNanos() >= 0);
+        }
+
+        codeLoader.getValues(Arrays.asList("0001", "0002", "0003"));
+        CodeLoadMetrics metrics = listener.metrics.remove(0);
+        assertEquals("getValues", metrics.getOperation());
+        assertEquals(2, metrics.getCodeCount());
+
+        codeLoader.getValue("0001");
+        codeLoader.getValue("0003");
+        assertEquals(Arrays.asList("0001:true", "0003:false"), listener.values);
+        assertTrue(listener.metrics.isEmpty());
+
+        // Nopを設定した場合は計測しない
+        codeLoader.setMetricsListener(new NopCodeLoaderMetricsListener());
+        codeLoader.loadAll();
+        codeLoader.getValue("0001");
+        assertTrue(listener.metrics.isEmpty());
+        assertEquals(2, listener.values.size());
+
+        LoggingCodeLoaderMetricsListener loggingListener = new LoggingCodeLoaderMetricsListener();
+        loggingListener.setSlowThresholdMillis(1);
+        codeLoader.setMetricsListener(loggingListener);
+        codeLoader.loadAll();
+        codeLoader.getValue("0001");
+        try {
+            loggingListener.setSlowThresholdMillis(0);
+            fail("例外が発生するはず。");
+        } catch (IllegalArgumentException e) {
+            assertEquals("slowThresholdMillis must be greater than 0. slowThresholdMillis = 0", e.getMessage());
+        }
+    }
+
+    @Test
+    public void testLookupStatistics() throws Exception {
+        BasicCodeLoader codeLoader = repositoryResource.getComponentByType(BasicCodeLoader.class);
+        Code plain = codeLoader.getValue("0001");
+
+        CodeLookupStatistics statistics = new CodeLookupStatistics();
+        codeLoader.setLookupStatistics(statistics);
+        Code code = codeLoader.getValue("0001");
+        assertSameCode(plain, code);
+        statistics.reset();
+
+        code.getName("01", Locale.ENGLISH);
+        code.getName("01", Locale.ENGLISH);
+        try {
+            code.getName("03", Locale.ENGLISH);
+            fail("例外が発生するはず。");
+        } catch (IllegalArgumentException e) {
+            // ミスとして計数される
+        }
+        code.contains("PATTERN1", "01");
+        code.contains("PATTERN1", "03");
+        ((ExtendedCode) code).findOptionalName("01", "OPTION01", Locale.JAPANESE);
+
+        // 再ロードしたコードもカウンタを共有する
+        codeLoader.getValue("0001").getName("02", Locale.ENGLISH);
+
+        List<CodeLookupStatistics.LookupCount> counts = statistics.getLookupCounts();
+        assertEquals(3, counts.size());
+        CodeLookupStatistics.LookupCount name = counts.get(0);
+        assertEquals("0001", name.getCodeId());
+        assertEquals(Locale.ENGLISH, name.getLocale());
+        assertEquals(CodeLookupStatistics.NAME, name.getLookup());
+        assertNull(name.getTarget());
+        assertEquals(3, name.getHits());
+        assertEquals(1, name.getMisses());
+        CodeLookupStatistics.LookupCount pattern = counts.get(1);
+        assertEquals(CodeLookupStatistics.PATTERN, pattern.getLookup());
+        assertNull(pattern.getLocale());
+        assertEquals("PATTERN1", pattern.getTarget());
+        assertEquals(1, pattern.getHits());
+        assertEquals(1, pattern.getMisses());
+        CodeLookupStatistics.LookupCount optionalName = counts.get(2);
+        assertEquals(CodeLookupStatistics.OPTIONAL_NAME, optionalName.getLookup());
+        assertEquals(Locale.JAPANESE, optionalName.getLocale());
+        assertEquals("OPTION01", optionalName.getTarget());
+
+        // 間引いて計数した場合は推定値
+        statistics.reset();
+        statistics.setSamplingInterval(4);
+        for (int i = 0; i < 40; i++) {
+            code.contains("01");
+        }
+        counts = statistics.getLookupCounts();
+        assertEquals(1, counts.size());
+        assertEquals(40, counts.get(0).getHits());
+
+        // 間隔を変更しても、計数済みの回数は変わらない
+        statistics.setSamplingInterval(1);
+        code.contains("01");
+        code.contains("01");
+        assertEquals(42, statistics.getLookupCounts().get(0).getHits());
+
+        // 上限を超えたパターン名はまとめて計数する
+        statistics.reset();
+        for (int i = 0; i < CodeLookupStatistics.MAX_TARGETS + 10; i++) {
+            try {
+                code.contains("UNKNOWN" + i, "01");
+                fail("例外が発生するはず。");
+            } catch (IllegalArgumentException e) {
+                // ミスとして計数される
+            }
+        }
+        counts = statistics.getLookupCounts();
+        assertEquals(CodeLookupStatistics.MAX_TARGETS + 1, counts.size());
+        assertEquals(CodeLookupStatistics.OTHER_TARGETS, counts.get(0).getTarget());
+        assertEquals(10, counts.get(0).getMisses());
+
+        // Locale.ROOTを指定した参照は、言語を指定しない参照と区別する
+        statistics.reset();
+        ((ExtendedCode) code).findName("01", Locale.ROOT);
+        code.contains("01");
+        counts = statistics.getLookupCounts();
+        assertEquals(2, counts.size());
+        for (CodeLookupStatistics.LookupCount count : counts) {
+            if (CodeLookupStatistics.NAME.equals(count.getLookup())) {
+                assertEquals(Locale.ROOT, count.getLocale());
+            } else {
+                assertEquals(CodeLookupStatistics.CONTAINS, count.getLookup());
+                assertNull(count.getLocale());
+            }
+            assertFalse(count.isOtherLocales());
+        }
+
+        // 上限を超えた言語はまとめて計数する
+        statistics.reset();
+        for (int i = 0; i < CodeLookupStatistics.MAX_LOCALES + 10; i++) {
+            ((ExtendedCode) code).findName("01", new Locale("x" + i));
+        }
+        counts = statistics.getLookupCounts();
+        assertEquals(CodeLookupStatistics.MAX_LOCALES + 1, counts.size());
+        assertTrue(counts.get(0).isOtherLocales());
+        assertNull(counts.get(0).getLocale());
+        assertEquals(10, counts.get(0).getMisses());
+
+        try {
+            statistics.setSamplingInterval(0);
+            fail("例外が発生するはず。");
+        } catch (IllegalArgumentException e) {
+            assertEquals("samplingInterval must be greater than 0. samplingInterval = 0", e.getMessage());
+        }
+    }
+
+    @Test
+    public void testAsync() throws Exception {
+        BasicCodeLoader codeLoader = repositoryResource.getComponentByType(BasicCodeLoader.class);
+        final List<Runnable> tasks = new ArrayList<Runnable>();
+        codeLoader.setAsyncExecutor(new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                tasks.add(command);
+            }
+        });
+
+        // 実行中の同じコードIDのロードは1つにまとめる
+        Future<Code> future = codeLoader.getValueAsync("0001");
+        assertSame(future, codeLoader.getValueAsync("0001"));
+        Future<Code> future0003 = codeLoader.getValueAsync("0003");
+        assertEquals(2, tasks.size());
+        assertFalse(future.isDone());
+        for (Runnable task : tasks) {
+            task.run();
+        }
+        tasks.clear();
+        assertSameCode(codeLoader.getValue("0001"), future.get());
+        assertNull(future0003.get());
+
+        // 完了後は新たにロードする
+        Future<Code> next = codeLoader.getValueAsync("0001");
+        assertNotSame(future, next);
+        assertEquals(1, tasks.size());
+        tasks.clear();
+
+        Future<List<Code>> loadAll = codeLoader.loadAllAsync();
+        assertSame(loadAll, codeLoader.loadAllAsync());
+        assertEquals(1, tasks.size());
+        tasks.get(0).run();
+        assertEquals(2, loadAll.get().size());
+        assertNotSame(loadAll, codeLoader.loadAllAsync());
+
+        // Executorを設定しない場合はデフォルトのスレッドプールで実行する
+        Set<Thread> existingThreads = findThreads("code-loader-async-");
+        codeLoader.setAsyncExecutor(null);
+        assertEquals("0002", codeLoader.getValueAsync("0002").get(10, TimeUnit.SECONDS).getCodeId());
+        assertEquals(2, codeLoader.loadAllAsync().get(10, TimeUnit.SECONDS).size());
+
+        // 作成したスレッドプールはdisposeで停止する
+        Set<Thread> createdThreads = findThreads("code-loader-async-");
+        createdThreads.removeAll(existingThreads);
+        assertFalse(createdThreads.isEmpty());
+        codeLoader.dispose();
+        for (Thread thread : createdThreads) {
+            thread.join(10000);
+            assertFalse(thread.isAlive());
+        }
+        // 停止後の非同期ロードでは作成し直す
+        assertEquals("0001", codeLoader.getValueAsync("0001").get(10, TimeUnit.SECONDS).getCodeId());
+        codeLoader.dispose();
+
+        try {
+            codeLoader.setAsyncParallelism(0);
+            fail("例外が発生するはず。");
+        } catch (IllegalArgumentException e) {
+            assertEquals("asyncParallelism must be greater than 0. asyncParallelism = 0", e.getMessage());
+        }
+    }
+
+    /**
+     * 名前が指定した接頭辞で始まる生存中のスレッドを取得する。
+     *
+     * @param prefix スレッド名の接頭辞
+     * @return スレッド
+     */
+    private static Set<Thread> findThreads(String prefix) {
+        Set<Thread> threads = new HashSet<Thread>();
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            if (thread.getName().startsWith(prefix)) {
+                threads.add(thread);
+            }
+        }
+        return threads;
+    }
+
+    /**
+     * 同じコードIDを同時にロードした場合、SQL文の実行とコードの構築が1回にまとめられること。
+     */
+    @Test
+    public void testConcurrentGetValue() throws Exception {
+        final BasicCodeLoader codeLoader = repositoryResource.getComponentByType(BasicCodeLoader.class);
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicInteger loadCount = new AtomicInteger();
+        codeLoader.setMetricsListener(new CodeLoaderMetricsListener() {
+            @Override
+            public void loadCompleted(CodeLoadMetrics metrics) {
+            }
+
+            @Override
+            public void valueLoaded(String codeId, long elapsedNanos, boolean found) {
+                loadCount.incrementAndGet();
+                try {
+                    // 全てのスレッドが実行中のロードを待つまで、ロードを完了させない
+                    release.await(30, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+
+        int threadCount = 8;
+        List<FutureTask<Code>> results = new ArrayList<FutureTask<Code>>();
+        List<Thread> threads = new ArrayList<Thread>();
+        for (int i = 0; i < threadCount; i++) {
+            FutureTask<Code> result = new FutureTask<Code>(new Callable<Code>() {
+                @Override
+                public Code call() {
+                    return codeLoader.getValue("0002");
+                }
+            });
+            Thread thread = new Thread(result);
+            thread.start();
+            results.add(result);
+            threads.add(thread);
+        }
+        long deadline = System.currentTimeMillis() + 30000;
+        for (Thread thread : threads) {
+            while (thread.getState() != Thread.State.WAITING && thread.getState() != Thread.State.TIMED_WAITING) {
+                assertTrue(System.currentTimeMillis() < deadline);
+                Thread.sleep(10);
+            }
+        }
+        release.countDown();
+
+        Code first = results.get(0).get(30, TimeUnit.SECONDS);
+        assertEquals("0002", first.getCodeId());
+        for (FutureTask<Code> result : results) {
+            assertSame(first, result.get(30, TimeUnit.SECONDS));
+        }
+        assertEquals(1, loadCount.get());
+
+        // 完了後は新たにロードする
+        Code next = codeLoader.getValue("0002");
+        assertNotSame(first, next);
+        assertEquals(2, loadCount.get());
+    }
+
+    private static final class RecordingMetricsListener implements CodeLoaderMetricsListener {
+
+        private final List<CodeLoadMetrics> metrics = new ArrayList<CodeLoadMetrics>();
+
+        private final List<String> values = new ArrayList<String>();
+
+        @Override
+        public void loadCompleted(CodeLoadMetrics metrics) {
+            this.metrics.add(metrics);
+        }
+
+        @Override
+        public void valueLoaded(String codeId, long elapsedNanos, boolean found) {
+            assertTrue(elapsedNanos >= 0);
+            values.add(codeId + ":" + found);
+        }
+    }
+
+    @Test
+    public void testFindMethods() throws Exception {
+        BasicCodeLoader codeLoader = repositoryResource.getComponentByType(BasicCodeLoader.class);
+
+        for (boolean compact : new boolean[]{false, true}) {
+            codeLoader.setCompactCode(compact);
+            ExtendedCode code0002 = (ExtendedCode) codeLoader.getValue("0002");
+
+            assertEquals("初期状態", code0002.findName("01", Locale.JAPANESE));
+            assertEquals("Initial", code0002.findShortName("01", Locale.ENGLISH));
+            assertEquals("0002-03-en", code0002.findOptionalName("03", "option01", Locale.ENGLISH));
+            assertArrayEquals(new String[]{"01", "02", "03", "04", "05"}, code0002.findValues(Locale.ENGLISH).toArray());
+            assertArrayEquals(new String[]{"03", "04"}, code0002.findValues("pattern2", Locale.JAPANESE).toArray());
+            assertTrue(code0002.isInPattern("PATTERN1", "05"));
+            assertFalse(code0002.isInPattern("PATTERN1", "04"));
+
+            // 存在しない場合は例外を送出せずにnull(false)を返す
+            assertNull(code0002.findName("01", Locale.CHINESE));
+            assertNull(code0002.findName("00", Locale.JAPANESE));
+            assertNull(code0002.findShortName("01", Locale.CHINESE));
+            assertNull(code0002.findShortName("00", Locale.ENGLISH));
+            assertNull(code0002.findOptionalName("01", "OPTION01", Locale.CHINESE));
+            assertNull(code0002.findOptionalName("01", "OPTION02", Locale.ENGLISH));
+            assertNull(code0002.findOptionalName("00", "OPTION01", Locale.ENGLISH));
+            assertNull(code0002.findValues(Locale.CHINESE));
+            assertNull(code0002.findValues("PATTERN1", Locale.CHINESE));
+            assertNull(code0002.findValues("PATTERN4", Locale.ENGLISH));
+            assertFalse(code0002.isInPattern("PATTERN4", "01"));
+            assertFalse(code0002.isInPattern("PATTERN1", "00"));
+        }
+    }
+
+    @Test
+    public void testPatternBitmask() throws Exception {
+        BasicCodeLoader codeLoader = repositoryResource.getComponentByType(BasicCodeLoader.class);
+        List<Code> expected = codeLoader.loadAll();
+
+        codeLoader.setPatternBitmask(true);
+        codeLoader.initialize();
+        for (boolean compact : new boolean[]{false, true}) {
+            codeLoader.setCompactCode(compact);
+            List<Code> allCodes = codeLoader.loadAll();
+
+            // パターンカラムの値を取得する場合と同じ結果が得られること
+            assertEquals(expected.size(), allCodes.size());
+            for (int i = 0; i < expected.size(); i++) {
+                assertSameCode(expected.get(i), allCodes.get(i));
+            }
+            assertSameCode(expected.get(1), codeLoader.getValue("0002"));
+        }
+    }
+
+    @Test
+    public void testPatternTrueValue() throws Exception {
+        BasicCodeLoader codeLoader = repositoryResource.getComponentByType(BasicCodeLoader.class);
+        codeLoader.setPatternTrueValue("0");
+
+        for (boolean bitmask : new boolean[]{false, true}) {
+            codeLoader.setPatternBitmask(bitmask);
+            codeLoader.initialize();
+            Code code0002 = codeLoader.getValue("0002");
+
+            // "0"が設定されている値がパターンに含まれる
+            assertArrayEquals(new String[]{"03", "04"}, code0002.getValues("PATTERN1", Locale.ENGLISH).toArray());
+            assertArrayEquals(new String[]{"01", "02", "05"}, code0002.getValues("PATTERN2", Locale.ENGLISH).toArray());
+            assertArrayEquals(new String[]{"01", "02", "03", "04", "05"}, code0002.getValues("PATTERN3", Locale.ENGLISH).toArray());
+            assertTrue(code0002.contains("PATTERN1", "03"));
+            assertFalse(code0002.contains("PATTERN1", "01"));
+        }
+
+        try {
+            codeLoader.setPatternTrueValue(null);
+            fail("例外が発生するはず。");
+        } catch (IllegalArgumentException e) {
+            assertEquals("patternTrueValue must not be null.", e.getMessage());
+        }
+    }
+
     @Test
     public void testLoadAllMultiCall() throws Exception {
         BasicCodeLoader codeLoader = repositoryResource.getComponentByType(BasicCodeLoader.class);
@@ -0,0 +1,252 @@
+package nablarch.common.code;
+
+import nablarch.test.support.SystemRepositoryResource;
+import nablarch.test.support.db.helper.DatabaseTestRunner;
+import nablarch.test.support.db.helper.VariousDbTestHelper;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * {@link CodeChangeWatcher}のテスト。
+ */
+@RunWith(DatabaseTestRunner.class)
+public class CodeChangeWatcherTest {
+
+    @Rule
+    public SystemRepositoryResource repositoryResource = new SystemRepositoryResource("nablarch/common/code/basic-code-loader-version-test.xml");
+
+    private final RecordingListener listener = new RecordingListener();
+
+    private CodeChangeWatcher watcher;
+
+    @Before
+    public void setUp() throws Exception {
+        VariousDbTestHelper.createTable(CodeName.class);
+        VariousDbTestHelper.createTable(CodePattern.class);
+        setUpPatterns();
+        setUpNames(1L, "Waiting For Batch Start");
+
+        watcher = new CodeChangeWatcher();
+        watcher.setCodeLoader(repositoryResource.getComponentByType(BasicCodeLoader.class));
+        watcher.setListeners(Collections.<CodeChangeListener>singletonList(listener));
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        watcher.stop();
+    }
+
+    private static void setUpPatterns() {
+        VariousDbTestHelper.setUpTable(
+                new CodePattern("0001", "01", "1", "0", "0", 1L),
+                new CodePattern("0001", "02", "1", "0", "0", 1L),
+                new CodePattern("0002", "01", "1", "0", "0", 1L),
+                new CodePattern("0002", "02", "1", "0", "0", 1L)
+        );
+    }
+
+    private static void setUpNames(Long version0002, String nameOf0002) {
+        VariousDbTestHelper.setUpTable(
+                new CodeName("0001", "01", "en", 1L, "Male", "M", "", "", 1L),
+                new CodeName("0001", "02", "en", 2L, "Female", "F", "", "", 1L),
+                new CodeName("0002", "01", "en", 1L, "Initial State", "Initial", "", "", 1L),
+                new CodeName("0002", "02", "en", 2L, nameOf0002, "Waiting", "", "", version0002)
+        );
+    }
+
+    @Test
+    public void testPoll() throws Exception {
+        watcher.setPollingInterval(60000);
+        watcher.initialize();
+
+        // 更新がない場合は通知しない
+        watcher.poll();
+        assertTrue(listener.events.isEmpty());
+
+        // 更新されたコードのみを通知する
+        setUpNames(2L, "Waiting");
+        watcher.poll();
+        Event event = listener.events.poll();
+        assertEquals("changed", event.type);
+        assertEquals(1, event.codes.size());
+        assertEquals("0002", event.codes.get(0).getCodeId());
+        assertEquals("Waiting", event.codes.get(0).getName("02", Locale.ENGLISH));
+        assertTrue(listener.events.isEmpty());
+
+        watcher.poll();
+        assertTrue(listener.events.isEmpty());
+
+        // 行が削除された場合は全てのコードを通知する
+        VariousDbTestHelper.setUpTable(
+                new CodePattern("0001", "01", "1", "0", "0", 1L),
+                new CodePattern("0001", "02", "1", "0", "0", 1L)
+        );
+        watcher.poll();
+        event = listener.events.poll();
+        assertEquals("reloaded", event.type);
+        assertEquals(1, event.codes.size());
+        assertEquals("0001", event.codes.get(0).getCodeId());
+        assertTrue(listener.events.isEmpty());
+    }
+
+    /**
+     * ハイウォーターマークがない状態で行が追加された場合は、全てのコードを通知すること。
+     */
+    @Test
+    public void testPollWithoutHighWaterMark() throws Exception {
+        VariousDbTestHelper.createTable(CodeName.class);
+        VariousDbTestHelper.createTable(CodePattern.class);
+        watcher.setPollingInterval(60000);
+        watcher.initialize();
+
+        setUpPatterns();
+        setUpNames(1L, "Waiting For Batch Start");
+        watcher.poll();
+        Event event = listener.events.poll();
+        assertEquals("reloaded", event.type);
+        assertEquals(2, event.codes.size());
+        assertTrue(listener.events.isEmpty());
+
+        // 以降は更新されたコードのみを通知する
+        setUpNames(2L, "Waiting");
+        watcher.poll();
+        event = listener.events.poll();
+        assertEquals("changed", event.type);
+        assertEquals(1, event.codes.size());
+        assertEquals("0002", event.codes.get(0).getCodeId());
+    }
+
+    @Test
+    public void testBackgroundPolling() throws Exception {
+        watcher.setPollingInterval(50);
+        watcher.initialize();
+
+        setUpNames(2L, "Waiting");
+
+        Event event = listener.events.poll(10, TimeUnit.SECONDS);
+        assertNotNull(event);
+        assertEquals("changed", event.type);
+        assertEquals("Waiting", event.codes.get(0).getName("02", Locale.ENGLISH));
+    }
+
+    /**
+     * 全てのコードをロードし直す間隔が経過した場合は、行数が変化しない削除も反映されること。
+     */
+    @Test
+    public void testFullReloadInterval() throws Exception {
+        watcher.setPollingInterval(60000);
+        watcher.setFullReloadInterval(1);
+        watcher.initialize();
+
+        // コード0002の行を削除し、同じ行数をコード0001に追加する(差分では検知できない)
+        VariousDbTestHelper.setUpTable(
+                new CodePattern("0001", "01", "1", "0", "0", 1L),
+                new CodePattern("0001", "02", "1", "0", "0", 1L),
+                new CodePattern("0001", "03", "1", "0", "0", 1L),
+                new CodePattern("0001", "04", "1", "0", "0", 1L)
+        );
+        VariousDbTestHelper.setUpTable(
+                new CodeName("0001", "01", "en", 1L, "Male", "M", "", "", 1L),
+                new CodeName("0001", "02", "en", 2L, "Female", "F", "", "", 1L),
+                new CodeName("0001", "03", "en", 3L, "Other", "O", "", "", 1L),
+                new CodeName("0001", "04", "en", 4L, "Unknown", "U", "", "", 1L)
+        );
+        Thread.sleep(10);
+        watcher.poll();
+        Event event = listener.events.poll();
+        assertEquals("reloaded", event.type);
+        assertEquals(1, event.codes.size());
+        assertEquals("0001", event.codes.get(0).getCodeId());
+        assertTrue(listener.events.isEmpty());
+    }
+
+    /**
+     * stopでポーリングのスレッドが停止すること。
+     */
+    @Test
+    public void testStop() throws Exception {
+        Set<Thread> existingThreads = Thread.getAllStackTraces().keySet();
+        watcher.setPollingInterval(50);
+        watcher.initialize();
+        Thread pollingThread = null;
+        long deadline = System.currentTimeMillis() + 10000;
+        while (pollingThread == null && System.currentTimeMillis() < deadline) {
+            for (Thread thread : Thread.getAllStackTraces().keySet()) {
+                if (thread.getName().equals("code-change-watcher") && !existingThreads.contains(thread)) {
+                    pollingThread = thread;
+                }
+            }
+            Thread.sleep(10);
+        }
+        assertNotNull(pollingThread);
+
+        watcher.stop();
+        pollingThread.join(10000);
+        assertFalse(pollingThread.isAlive());
+
+        // 停止後は通知しない
+        setUpNames(2L, "Waiting");
+        assertNull(listener.events.poll(200, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void testInvalidSettings() throws Exception {
+        try {
+            new CodeChangeWatcher().initialize();
+            fail("例外が発生するはず。");
+        } catch (IllegalStateException e) {
+            assertEquals("codeLoader was not set. set BasicCodeLoader to codeLoader.", e.getMessage());
+        }
+        try {
+            watcher.setPollingInterval(0);
+            fail("例外が発生するはず。");
+        } catch (IllegalArgumentException e) {
+            assertEquals("pollingInterval must be greater than 0. pollingInterval = 0", e.getMessage());
+        }
+    }
+
+    private static final class Event {
+
+        private final String type;
+
+        private final List<Code> codes;
+
+        private Event(String type, List<Code> codes) {
+            this.type = type;
+            this.codes = codes;
+        }
+    }
+
+    private static final class RecordingListener implements CodeChangeListener {
+
+        private final BlockingQueue<Event> events = new LinkedBlockingQueue<Event>();
+
+        @Override
+        public void codesChanged(List<Code> changedCodes) {
+            events.add(new Event("changed", changedCodes));
+        }
+
+        @Override
+        public void codesReloaded(List<Code> allCodes) {
+            events.add(new Event("reloaded", allCodes));
+        }
+    }
+}
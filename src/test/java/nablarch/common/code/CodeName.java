@@ -18,6 +18,11 @@ public class CodeName {
     
     public CodeName(String id, String value, String lang, Long sortOrder, String name,
             String shortName, String nameWithValue, String option01) {
+        this(id, value, lang, sortOrder, name, shortName, nameWithValue, option01, null);
+    }
+
+    public CodeName(String id, String value, String lang, Long sortOrder, String name,
+            String shortName, String nameWithValue, String option01, Long version) {
         this.id = id;
         this.value = value;
         this.lang = lang;
@@ -26,6 +31,7 @@ public class CodeName {
         this.shortName = shortName;
         this.nameWithValue = nameWithValue;
         this.option01 = option01;
+        this.version = version;
     }
 
     @Id
@@ -54,4 +60,7 @@ public class CodeName {
     
     @Column(name = "OPTION01", length = 200)
     public String option01;
+
+    @Column(name = "VERSION", length = 10)
+    public Long version;
 }
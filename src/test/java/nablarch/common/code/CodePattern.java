@@ -17,11 +17,16 @@ public class CodePattern {
     };
     
     public CodePattern(String id, String value, String pattern1, String pattern2, String pattern3) {
+        this(id, value, pattern1, pattern2, pattern3, null);
+    }
+
+    public CodePattern(String id, String value, String pattern1, String pattern2, String pattern3, Long version) {
         this.id = id;
         this.value = value;
         this.pattern1 = pattern1;
         this.pattern2 = pattern2;
         this.pattern3 = pattern3;
+        this.version = version;
     }
 
     @Id
@@ -40,4 +45,7 @@ public class CodePattern {
     
     @Column(name = "PATTERN3", length = 1, nullable = false)
     public String pattern3;
+
+    @Column(name = "VERSION", length = 10)
+    public Long version;
 }
\ No newline at end of file
@@ -0,0 +1,394 @@
+package nablarch.common.code;
+
+import nablarch.core.cache.StaticDataLoader;
+import nablarch.test.support.SystemRepositoryResource;
+import nablarch.test.support.db.helper.DatabaseTestRunner;
+import nablarch.test.support.db.helper.VariousDbTestHelper;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * {@link CodeRegistry}のテスト。
+ */
+@RunWith(DatabaseTestRunner.class)
+public class CodeRegistryTest {
+
+    @Rule
+    public SystemRepositoryResource repositoryResource = new SystemRepositoryResource("nablarch/common/code/basic-code-loader-test.xml");
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private BasicCodeLoader codeLoader;
+
+    @Before
+    public void setUp() throws Exception {
+        VariousDbTestHelper.createTable(CodeName.class);
+        VariousDbTestHelper.createTable(CodePattern.class);
+        VariousDbTestHelper.setUpTable(
+                new CodePattern("0001", "01", "1", "0", "0", 1L),
+                new CodePattern("0001", "02", "1", "0", "0", 1L),
+                new CodePattern("0002", "01", "1", "0", "0", 1L),
+                new CodePattern("0002", "02", "1", "0", "0", 1L)
+        );
+        setUpNames("Male", "Waiting For Batch Start");
+        codeLoader = repositoryResource.getComponentByType(BasicCodeLoader.class);
+    }
+
+    private static void setUpNames(String nameOf0001, String nameOf0002) {
+        VariousDbTestHelper.setUpTable(
+                new CodeName("0001", "01", "en", 1L, nameOf0001, "M", "", "", 1L),
+                new CodeName("0001", "02", "en", 2L, "Female", "F", "", "", 1L),
+                new CodeName("0002", "01", "en", 1L, "Initial State", "Initial", "", "", 1L),
+                new CodeName("0002", "02", "en", 2L, nameOf0002, "Waiting", "", "", 1L)
+        );
+    }
+
+    private CodeRegistry createRegistry(boolean loadOnStartup) {
+        CodeRegistry registry = new CodeRegistry();
+        registry.setLoader(codeLoader);
+        registry.setLoadOnStartup(loadOnStartup);
+        registry.initialize();
+        return registry;
+    }
+
+    @Test
+    public void testGetValue() throws Exception {
+        CodeRegistry registry = createRegistry(true);
+        assertEquals(2, registry.getCodes().size());
+        assertEquals("Male", registry.getValue("0001").getName("01", Locale.ENGLISH));
+        assertNull(registry.getValue("0003"));
+
+        // 全件の再ロード
+        setUpNames("Man", "Waiting");
+        Map<String, Code> before = registry.getCodes();
+        registry.refresh();
+        assertEquals("Man", registry.getValue("0001").getName("01", Locale.ENGLISH));
+        assertEquals("Waiting", registry.getValue("0002").getName("02", Locale.ENGLISH));
+        // 取得済みのMapは変化しない
+        assertEquals("Male", before.get("0001").getName("01", Locale.ENGLISH));
+    }
+
+    @Test
+    public void testReload() throws Exception {
+        CodeRegistry registry = createRegistry(true);
+        Code code0002 = registry.getValue("0002");
+
+        // 指定したコードのみ置き換える
+        setUpNames("Man", "Waiting");
+        registry.reload(Arrays.asList("0001"));
+        assertEquals("Man", registry.getValue("0001").getName("01", Locale.ENGLISH));
+        assertSame(code0002, registry.getValue("0002"));
+
+        // ロードできなかったコードは削除する
+        VariousDbTestHelper.setUpTable(
+                new CodePattern("0001", "01", "1", "0", "0", 1L),
+                new CodePattern("0001", "02", "1", "0", "0", 1L)
+        );
+        registry.reload(Arrays.asList("0002"));
+        assertNull(registry.getValue("0002"));
+        assertEquals(1, registry.getCodes().size());
+    }
+
+    @Test
+    public void testCodeChangeListener() throws Exception {
+        CodeRegistry registry = createRegistry(true);
+
+        setUpNames("Man", "Waiting");
+        registry.codesChanged(Arrays.asList(codeLoader.getValue("0002")));
+        assertEquals("Male", registry.getValue("0001").getName("01", Locale.ENGLISH));
+        assertEquals("Waiting", registry.getValue("0002").getName("02", Locale.ENGLISH));
+
+        registry.codesReloaded(Arrays.asList(codeLoader.getValue("0001")));
+        assertEquals("Man", registry.getValue("0001").getName("01", Locale.ENGLISH));
+        assertNull(registry.getValue("0002"));
+    }
+
+    @Test
+    public void testLazyLoad() throws Exception {
+        CodeRegistry registry = createRegistry(false);
+        assertTrue(registry.getCodes().isEmpty());
+
+        Code code0001 = registry.getValue("0001");
+        assertEquals("Male", code0001.getName("01", Locale.ENGLISH));
+        assertSame(code0001, registry.getValue("0001"));
+        assertEquals(1, registry.getCodes().size());
+        assertNull(registry.getValue("0003"));
+
+        // ロードできなかったコードIDは、再ロードされるまで再度ロードしない
+        VariousDbTestHelper.setUpTable(
+                new CodePattern("0001", "01", "1", "0", "0", 1L),
+                new CodePattern("0001", "02", "1", "0", "0", 1L),
+                new CodePattern("0003", "01", "1", "0", "0", 1L)
+        );
+        VariousDbTestHelper.setUpTable(
+                new CodeName("0001", "01", "en", 1L, "Male", "M", "", "", 1L),
+                new CodeName("0001", "02", "en", 2L, "Female", "F", "", "", 1L),
+                new CodeName("0003", "01", "en", 1L, "Yes", "Y", "", "", 1L)
+        );
+        assertNull(registry.getValue("0003"));
+        registry.reload(Arrays.asList("0003"));
+        assertEquals("Yes", registry.getValue("0003").getName("01", Locale.ENGLISH));
+        assertSame(code0001, registry.getValue("0001"));
+        assertEquals(2, registry.getCodes().size());
+    }
+
+    @Test
+    public void testWarmUp() throws Exception {
+        // 設定したコードIDのみ初期化時にロードする
+        CodeRegistry registry = new CodeRegistry();
+        registry.setLoader(codeLoader);
+        registry.setLoadOnStartup(false);
+        registry.setWarmUpCodeIds(Arrays.asList("0002", "0003"));
+        registry.initialize();
+        assertEquals(1, registry.getCodes().size());
+        assertEquals("Waiting For Batch Start", registry.getCodes().get("0002").getName("02", Locale.ENGLISH));
+
+        // 参照されたコードIDを記録し、次回の初期化時にロードする
+        File file = new File(temporaryFolder.getRoot(), "warm-up/code-ids.txt");
+        registry = new CodeRegistry();
+        registry.setLoader(codeLoader);
+        registry.setLoadOnStartup(false);
+        registry.setWarmUpFilePath(file.getPath());
+        registry.initialize();
+        assertTrue(registry.getCodes().isEmpty());
+        registry.getValue("0001");
+        registry.saveWarmUpFile();
+        assertEquals("0001\n", readFile(file));
+
+        registry = new CodeRegistry();
+        registry.setLoader(codeLoader);
+        registry.setLoadOnStartup(false);
+        registry.setWarmUpFilePath(file.getPath());
+        registry.initialize();
+        assertEquals(1, registry.getCodes().size());
+        assertEquals("Male", registry.getCodes().get("0001").getName("01", Locale.ENGLISH));
+
+        try {
+            createRegistry(false).saveWarmUpFile();
+            fail("例外が発生するはず。");
+        } catch (IllegalStateException e) {
+            assertEquals("warmUpFilePath was not set. set file path to warmUpFilePath.", e.getMessage());
+        }
+    }
+
+    private static String readFile(File file) throws Exception {
+        FileInputStream in = new FileInputStream(file);
+        try {
+            byte[] bytes = new byte[(int) file.length()];
+            int offset = 0;
+            while (offset < bytes.length) {
+                offset += in.read(bytes, offset, bytes.length - offset);
+            }
+            return new String(bytes, "UTF-8");
+        } finally {
+            in.close();
+        }
+    }
+
+    @Test
+    public void testInvalidSettings() throws Exception {
+        try {
+            new CodeRegistry().initialize();
+            fail("例外が発生するはず。");
+        } catch (IllegalStateException e) {
+            assertEquals("loader was not set. set StaticDataLoader to loader.", e.getMessage());
+        }
+        try {
+            createRegistry(true).getValues("unknown", "key");
+            fail("例外が発生するはず。");
+        } catch (IllegalArgumentException e) {
+            assertEquals("index was not found. index name = unknown", e.getMessage());
+        }
+    }
+
+    /**
+     * 再ロード中に複数のスレッドから参照しても、常に同一時点の状態を参照できること。
+     */
+    @Test
+    public void testConcurrentReadWhileReloading() throws Exception {
+        final CodeRegistry registry = createRegistry(true);
+        final List<Code> oldCodes = codeLoader.loadAll();
+        setUpNames("Man", "Waiting");
+        final List<Code> newCodes = codeLoader.loadAll();
+
+        final AtomicBoolean running = new AtomicBoolean(true);
+        int readerCount = 4;
+        ExecutorService executor = Executors.newFixedThreadPool(readerCount + 1);
+        try {
+            List<Future<Integer>> readers = new ArrayList<Future<Integer>>();
+            for (int i = 0; i < readerCount; i++) {
+                readers.add(executor.submit(new Callable<Integer>() {
+                    public Integer call() {
+                        int reads = 0;
+                        while (running.get()) {
+                            Map<String, Code> codes = registry.getCodes();
+                            String name0001 = codes.get("0001").getName("01", Locale.ENGLISH);
+                            String name0002 = codes.get("0002").getName("02", Locale.ENGLISH);
+                            // 同一時点の状態では、両方のコードが更新前または更新後のいずれかで一致する
+                            if ("Male".equals(name0001) != "Waiting For Batch Start".equals(name0002)) {
+                                throw new IllegalStateException("inconsistent snapshot. "
+                                        + name0001 + ", " + name0002);
+                            }
+                            assertNotNull(registry.getValue("0001"));
+                            reads++;
+                        }
+                        return reads;
+                    }
+                }));
+            }
+            Future<?> writer = executor.submit(new Callable<Void>() {
+                public Void call() {
+                    for (int i = 0; i < 2000; i++) {
+                        if (i % 2 == 0) {
+                            registry.codesReloaded(newCodes);
+                        } else {
+                            registry.codesChanged(oldCodes);
+                        }
+                    }
+                    return null;
+                }
+            });
+            writer.get(30, TimeUnit.SECONDS);
+            running.set(false);
+            for (Future<Integer> reader : readers) {
+                assertTrue(reader.get(30, TimeUnit.SECONDS) > 0);
+            }
+        } finally {
+            running.set(false);
+            executor.shutdownNow();
+        }
+        assertEquals("Male", registry.getValue("0001").getName("01", Locale.ENGLISH));
+    }
+
+    /**
+     * 参照時のロード中に全件の再ロードが公開された場合、ロードした古いコードが公開されないこと。
+     */
+    @Test
+    public void testLazyLoadWhileRefreshing() throws Exception {
+        final Code oldCode = codeLoader.getValue("0001");
+        setUpNames("Man", "Waiting");
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            // 再ロードの公開後に、ロードを開始した時点の古いコードを返す
+            final CountDownLatch loading = new CountDownLatch(1);
+            final CountDownLatch refreshed = new CountDownLatch(1);
+            final CodeRegistry registry = createRegistry(new StaleCodeLoader(oldCode) {
+                @Override
+                void beforeReturn() throws InterruptedException {
+                    loading.countDown();
+                    refreshed.await();
+                }
+            });
+            Future<Code> lazyLoad = executor.submit(new Callable<Code>() {
+                public Code call() {
+                    return registry.getValue("0001");
+                }
+            });
+            loading.await();
+            registry.refresh();
+            refreshed.countDown();
+            assertSame(oldCode, lazyLoad.get(30, TimeUnit.SECONDS));
+            assertEquals("Man", registry.getValue("0001").getName("01", Locale.ENGLISH));
+
+            // 参照時のロードと全件の再ロードを並行して繰り返しても、再ロードしたコードが残る
+            for (int i = 0; i < 500; i++) {
+                final CodeRegistry racing = createRegistry(new StaleCodeLoader(oldCode));
+                Future<Code> racingLoad = executor.submit(new Callable<Code>() {
+                    public Code call() {
+                        return racing.getValue("0001");
+                    }
+                });
+                racing.refresh();
+                racingLoad.get(30, TimeUnit.SECONDS);
+                assertEquals("Man", racing.getValue("0001").getName("01", Locale.ENGLISH));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private CodeRegistry createRegistry(StaticDataLoader<Code> loader) {
+        CodeRegistry registry = new CodeRegistry();
+        registry.setLoader(loader);
+        registry.setLoadOnStartup(false);
+        registry.initialize();
+        return registry;
+    }
+
+    /**
+     * 1件のロードでは常に古いコードを返し、それ以外は{@link BasicCodeLoader}に委譲するローダ。
+     */
+    private class StaleCodeLoader implements StaticDataLoader<Code> {
+
+        private final Code staleCode;
+
+        StaleCodeLoader(Code staleCode) {
+            this.staleCode = staleCode;
+        }
+
+        void beforeReturn() throws InterruptedException {
+            Thread.yield();
+        }
+
+        @Override
+        public Code getValue(Object id) {
+            try {
+                beforeReturn();
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+            return staleCode;
+        }
+
+        @Override
+        public List<Code> getValues(String indexName, Object key) {
+            return codeLoader.getValues(indexName, key);
+        }
+
+        @Override
+        public List<Code> loadAll() {
+            return codeLoader.loadAll();
+        }
+
+        @Override
+        public List<String> getIndexNames() {
+            return codeLoader.getIndexNames();
+        }
+
+        @Override
+        public Object getId(Code value) {
+            return codeLoader.getId(value);
+        }
+
+        @Override
+        public Object generateIndexKey(String indexName, Code value) {
+            return codeLoader.generateIndexKey(indexName, value);
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package nablarch.common.code;
+
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.sql.Timestamp;
+
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * {@link CodeVersion}のテスト。
+ */
+public class CodeVersionTest {
+
+    /**
+     * 整数は型によらずLongに正規化され、比較できること。
+     */
+    @Test
+    public void testNormalizeInteger() throws Exception {
+        assertNull(CodeVersion.normalize(null));
+        assertEquals(3L, CodeVersion.normalize(3));
+        assertEquals(3L, CodeVersion.normalize((short) 3));
+        assertEquals(3L, CodeVersion.normalize(BigInteger.valueOf(3)));
+        assertEquals(3L, CodeVersion.normalize(new BigDecimal("3.00")));
+        assertEquals(0L, CodeVersion.normalize(new BigDecimal("0.0")));
+
+        // カラム毎に型が異なっても比較できる
+        assertTrue(CodeVersion.compare(CodeVersion.normalize(2), CodeVersion.normalize(3L)) < 0);
+        assertEquals(3L, CodeVersion.max(CodeVersion.normalize(3), CodeVersion.normalize(new BigDecimal("2"))));
+    }
+
+    /**
+     * 小数と日時は、比較可能な型に正規化されること。
+     */
+    @Test
+    public void testNormalizeOthers() throws Exception {
+        assertEquals(new BigDecimal("1.5"), CodeVersion.normalize(new BigDecimal("1.50")));
+        assertTrue(CodeVersion.compare(new BigDecimal("1.5"), 2L) < 0);
+
+        Timestamp timestamp = (Timestamp) CodeVersion.normalize(java.sql.Date.valueOf("2024-01-02"));
+        assertEquals(java.sql.Date.valueOf("2024-01-02").getTime(), timestamp.getTime());
+        assertTrue(CodeVersion.compare(timestamp, Timestamp.valueOf("2024-01-02 00:00:01")) < 0);
+
+        try {
+            CodeVersion.normalize(new byte[] {1});
+            fail("例外が発生するはず。");
+        } catch (IllegalStateException e) {
+            assertThat(e.getMessage(), containsString("unsupported version column type."));
+        }
+        try {
+            CodeVersion.compare(1L, timestamp);
+            fail("例外が発生するはず。");
+        } catch (IllegalStateException e) {
+            assertThat(e.getMessage(), containsString("version column types do not match."));
+        }
+    }
+
+    /**
+     * 差分ロードの基準には整数のみ使用できること。
+     */
+    @Test
+    public void testCheckCommitOrdered() throws Exception {
+        CodeVersion.checkCommitOrdered(null);
+        CodeVersion.checkCommitOrdered(1L);
+        try {
+            CodeVersion.checkCommitOrdered(Timestamp.valueOf("2024-01-02 00:00:00"));
+            fail("例外が発生するはず。");
+        } catch (IllegalStateException e) {
+            assertThat(e.getMessage(), containsString("must be an integer that increases in commit order."));
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package nablarch.common.code;
+
+import nablarch.test.support.log.app.OnMemoryLogWriter;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+/**
+ * {@link LoggingCodeLoaderMetricsListener}のテスト。
+ */
+public class LoggingCodeLoaderMetricsListenerTest {
+
+    @Before
+    public void setUp() throws Exception {
+        OnMemoryLogWriter.clear();
+    }
+
+    /**
+     * 複数のコードのロードはINFOレベル、1つのコードのロードはDEBUGレベルで出力されること。
+     */
+    @Test
+    public void testLoaded() throws Exception {
+        LoggingCodeLoaderMetricsListener listener = new LoggingCodeLoaderMetricsListener();
+        listener.loadCompleted(new CodeLoadMetrics.Collector("loadAll").toMetrics(3));
+        listener.valueLoaded("0001", TimeUnit.MICROSECONDS.toNanos(25), true);
+
+        List<String> messages = getMessages();
+        assertEquals(2, messages.size());
+        assertThat(messages.get(0), containsString("-INFO-"));
+        assertThat(messages.get(0), containsString("codes were loaded. operation = loadAll"));
+        assertThat(messages.get(1), containsString("-DEBUG-"));
+        assertThat(messages.get(1), containsString("code was loaded. code id = 0001, found = true, elapsed = 25us"));
+    }
+
+    /**
+     * 処理時間が閾値以上の場合は、WARNレベルで出力されること。
+     */
+    @Test
+    public void testSlow() throws Exception {
+        LoggingCodeLoaderMetricsListener listener = new LoggingCodeLoaderMetricsListener();
+        listener.setSlowThresholdMillis(10);
+        listener.valueLoaded("0001", TimeUnit.MILLISECONDS.toNanos(9), true);
+        listener.valueLoaded("0002", TimeUnit.MILLISECONDS.toNanos(10), false);
+
+        List<String> messages = getMessages();
+        assertEquals(2, messages.size());
+        assertThat(messages.get(0), containsString("-DEBUG-"));
+        assertThat(messages.get(0), containsString("code was loaded. code id = 0001, found = true, elapsed = 9000us"));
+        assertThat(messages.get(1), containsString("-WARN-"));
+        assertThat(messages.get(1), containsString("code loading was slow. code id = 0002, found = false, elapsed = 10ms"));
+
+        try {
+            listener.setSlowThresholdMillis(0);
+            fail("例外が発生するはず。");
+        } catch (IllegalArgumentException e) {
+            assertEquals("slowThresholdMillis must be greater than 0. slowThresholdMillis = 0", e.getMessage());
+        }
+    }
+
+    /**
+     * 本クラスが出力したログを取得する。
+     *
+     * @return ログ
+     */
+    private static List<String> getMessages() {
+        List<String> messages = new ArrayList<String>();
+        for (String message : OnMemoryLogWriter.getMessages("writer.memory")) {
+            if (message.contains(LoggingCodeLoaderMetricsListener.class.getName())) {
+                messages.add(message);
+            }
+        }
+        return messages;
+    }
+}